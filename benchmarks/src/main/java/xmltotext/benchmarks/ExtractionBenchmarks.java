@@ -0,0 +1,120 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.w3c.dom.Document;
+import org.xml.sax.SAXException;
+
+import xmltotext.TextExtraction;
+import xmltotext.conversion.NodeConverter;
+import xmltotext.conversion.SkippingFilter;
+import xmltotext.conversion.text.TextProcessor;
+import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenBuffer;
+import xmltotext.util.DtdCatalog;
+import xmltotext.util.XmlHelper;
+
+/**
+ * Benchmarks the steps that turn an XML file into a token sequence:
+ * parsing, extraction from the DOM and text processing.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractionBenchmarks {
+	
+	@Param({ "TEI", "XHTML" })
+	public Fixture fixture;
+	
+	private byte[] pBytes;
+	private Document pDocument;
+	private NodeConverter pConverter;
+	private ArrayList<String> pTexts;
+	private final TokenBuffer pTokenBuffer = new TokenBuffer();
+	
+	@Setup
+	public void setup() {
+		pBytes = fixture.readBytes();
+		pDocument = fixture.loadDocument();
+		pConverter = fixture.getConverter();
+		pTexts = fixture.collectTexts();
+	}
+	
+	/**
+	 * {@link XmlHelper#load(java.io.InputStream, org.xml.sax.XMLFilter, DtdCatalog)}
+	 * with a {@link SkippingFilter} for the converter for the document type:
+	 * parsing the document into a DOM as the DOM engine does.
+	 */
+	@Benchmark
+	public Document load() throws SAXException, IOException {
+		return XmlHelper.load(new ByteArrayInputStream(pBytes), new SkippingFilter(rootElementName -> pConverter), DtdCatalog.CACHING);
+	}
+	
+	/**
+	 * {@link TextExtraction#extractTokenSequence(Document, NodeConverter)}
+	 * with the converter for the document type.
+	 */
+	@Benchmark
+	public ArrayList<Token> extractTokenSequence() {
+		return TextExtraction.extractTokenSequence(pDocument, pConverter);
+	}
+	
+	/**
+	 * {@link TextExtraction#extractTokenSequence(org.w3c.dom.Node, NodeConverter, java.util.function.Consumer)}
+	 * into a reused {@link TokenBuffer}
+	 * instead of a list of {@link Token} objects.
+	 */
+	@Benchmark
+	public TokenBuffer extractIntoTokenBuffer() {
+		pTokenBuffer.clear();
+		TextExtraction.extractTokenSequence(pDocument.getDocumentElement(), pConverter, pTokenBuffer);
+		return pTokenBuffer;
+	}
+	
+	/**
+	 * {@link TextProcessor#processText(String, xmltotext.conversion.text.CodePointProcessor, java.util.function.Consumer)}
+	 * with the code point processing of the converter
+	 * for the document type, for all text nodes of the document.
+	 */
+	@Benchmark
+	public void processText(final Blackhole blackhole) {
+		for (final String text : pTexts)
+			pConverter.textAction(text, blackhole::consume);
+	}
+	
+	/**
+	 * {@link TextProcessor#processText(String, xmltotext.conversion.text.CodePointProcessor, java.util.function.Consumer)}
+	 * with a code point processor that only copies the text,
+	 * for all text nodes of the document
+	 * (the overhead of the code point iteration and NFC normalization).
+	 */
+	@Benchmark
+	public void processTextCopyOnly(final Blackhole blackhole) {
+		for (final String text : pTexts)
+			TextProcessor.processText(text, (t, start, end, codePoint, textBuilder, tokenConsumer) -> textBuilder.appendCodePoint(codePoint), blackhole::consume);
+	}
+	
+}
@@ -0,0 +1,132 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import xmltotext.TeiNodeConverter;
+import xmltotext.XhtmlNodeConverter;
+import xmltotext.conversion.NodeConverter;
+import xmltotext.conversion.SkippingFilter;
+import xmltotext.util.DtdCatalog;
+import xmltotext.util.XmlHelper;
+
+/**
+ * The input documents the benchmarks are run with:
+ * a TEI document in the style of the Deutsches Textarchiv
+ * (long s, hyphenation with U+00AC NOT SIGN, line and page breaks,
+ * running headers, footnotes, figures)
+ * and an XHTML document in the style of Projekt Gutenberg
+ * (block elements, page references, footnotes, tables, images),
+ * both with the same (German) text.
+ */
+public enum Fixture {
+	
+	TEI("tei.xml", new TeiNodeConverter()),
+	
+	XHTML("xhtml.xml", new XhtmlNodeConverter());
+	
+	private final String pResourceName;
+	private final NodeConverter pConverter;
+	
+	private Fixture(final String resourceName, final NodeConverter converter) {
+		pResourceName = resourceName;
+		pConverter = converter;
+	}
+	
+	/**
+	 * Returns the {@link NodeConverter} for the document.
+	 * 
+	 * @return
+	 * the {@link NodeConverter} for the document;
+	 * not {@code null}
+	 */
+	public NodeConverter getConverter() {
+		return pConverter;
+	}
+	
+	/**
+	 * Reads the XML document.
+	 * 
+	 * @return
+	 * the bytes of the XML document;
+	 * not {@code null}
+	 */
+	public byte[] readBytes() {
+		try (final InputStream inputStream = Fixture.class.getResourceAsStream(pResourceName)) {
+			final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[8192];
+			int n;
+			while ((n = inputStream.read(buffer)) >= 0)
+				outputStream.write(buffer, 0, n);
+			return outputStream.toByteArray();
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Loads the XML document into a DOM {@link Document}
+	 * as the DOM engine does,
+	 * that is, without the content of the elements
+	 * whose trees the converter skips
+	 * (see {@link SkippingFilter}).
+	 * 
+	 * @return
+	 * the {@link Document};
+	 * not {@code null}
+	 */
+	public Document loadDocument() {
+		try {
+			return XmlHelper.load(new ByteArrayInputStream(readBytes()), new SkippingFilter(rootElementName -> pConverter), DtdCatalog.CACHING);
+		} catch (final SAXException e) {
+			throw new RuntimeException(e);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Collects the values of all text nodes in the loaded document
+	 * (including those the converter skips
+	 * without skipping the whole element), in document order.
+	 * 
+	 * @return
+	 * the text node values;
+	 * not {@code null}
+	 */
+	public ArrayList<String> collectTexts() {
+		final ArrayList<String> texts = new ArrayList<>();
+		collectTexts(loadDocument().getDocumentElement(), texts);
+		return texts;
+	}
+	
+	private static void collectTexts(final Node node, final ArrayList<String> texts) {
+		for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+			switch (child.getNodeType()) {
+				case Node.TEXT_NODE:
+				case Node.CDATA_SECTION_NODE:
+					texts.add(child.getNodeValue());
+					break;
+				case Node.ELEMENT_NODE:
+					collectTexts(child, texts);
+					break;
+				default:
+					break;
+			}
+		}
+	}
+	
+}
@@ -0,0 +1,119 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.benchmarks;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import xmltotext.Normalization;
+import xmltotext.TextExtraction;
+import xmltotext.normalization.EllipsisCharacterNormalizer;
+import xmltotext.normalization.ExplicitHyphensNormalizer;
+import xmltotext.normalization.ImplicitHyphensNormalizer;
+import xmltotext.normalization.TokenSequenceNormalization;
+import xmltotext.normalization.TokenSequenceNormalizer;
+import xmltotext.tokens.ConversionTypeFilter;
+import xmltotext.tokens.ConversionTypes;
+import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenCollector;
+
+/**
+ * Benchmarks the steps that turn a token sequence into text:
+ * collapsing, each {@link TokenSequenceNormalizer} on its own,
+ * the complete normalization and serialization.
+ * <p>
+ * The token sequences are extracted from the fixtures
+ * and filtered for {@link ConversionTypes#TOOLS}.
+ * The normalizers are given collapsed sequences,
+ * as in the complete normalization.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class NormalizationBenchmarks {
+	
+	@Param({ "TEI", "XHTML" })
+	public Fixture fixture;
+	
+	private ArrayList<Token> pTokens;
+	private ArrayList<Token> pCollapsedTokens;
+	private ArrayList<Token> pNormalizedTokens;
+	
+	private final ExplicitHyphensNormalizer pExplicitHyphensNormalizer = new ExplicitHyphensNormalizer();
+	private final ImplicitHyphensNormalizer pImplicitHyphensNormalizer = new ImplicitHyphensNormalizer(false);
+	private final EllipsisCharacterNormalizer pEllipsisCharacterNormalizer = new EllipsisCharacterNormalizer();
+	
+	@Setup
+	public void setup() {
+		final TokenCollector collector = new TokenCollector();
+		TextExtraction.extractTokenSequence(fixture.loadDocument().getDocumentElement(), fixture.getConverter(), new ConversionTypeFilter(ConversionTypes.TOOLS, collector));
+		pTokens = collector.getTokens();
+		pCollapsedTokens = TokenSequenceNormalization.collapseTokenSequence(pTokens);
+		pNormalizedTokens = Normalization.normalize(pTokens);
+	}
+	
+	@Benchmark
+	public ArrayList<Token> collapseTokenSequence() {
+		return TokenSequenceNormalization.collapseTokenSequence(pTokens);
+	}
+	
+	@Benchmark
+	public ArrayList<Token> explicitHyphensNormalizer() {
+		return pExplicitHyphensNormalizer.normalizeTokenSequence(pCollapsedTokens);
+	}
+	
+	@Benchmark
+	public ArrayList<Token> implicitHyphensNormalizer() {
+		return pImplicitHyphensNormalizer.normalizeTokenSequence(pCollapsedTokens);
+	}
+	
+	@Benchmark
+	public ArrayList<Token> ellipsisCharacterNormalizer() {
+		return pEllipsisCharacterNormalizer.normalizeTokenSequence(pCollapsedTokens);
+	}
+	
+	/**
+	 * {@link Normalization#normalize(ArrayList)}:
+	 * the complete normalization in a single fused stage.
+	 */
+	@Benchmark
+	public ArrayList<Token> normalize() {
+		return Normalization.normalize(pTokens);
+	}
+	
+	/**
+	 * {@link Normalization#createReferenceStage(boolean, xmltotext.tokens.TokenSink)}:
+	 * all normalizers with collapsing in between.
+	 */
+	@Benchmark
+	public ArrayList<Token> normalizeReference() {
+		final TokenCollector collector = new TokenCollector(pTokens.size());
+		Normalization.createReferenceStage(Normalization.containsExplicitHyphens(pTokens), collector).acceptSequence(pTokens);
+		return collector.getTokens();
+	}
+	
+	@Benchmark
+	public String tokenSequenceToString() {
+		return TokenSequenceNormalization.tokenSequenceToString(pNormalizedTokens);
+	}
+	
+}
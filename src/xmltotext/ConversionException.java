@@ -0,0 +1,39 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+/**
+ * Thrown if an input document cannot be converted,
+ * because it is not well-formed XML
+ * (the cause is the exception of the XML parser)
+ * or because it is not a TEI or XHTML document
+ * (see {@link UnsupportedDocumentException}).
+ */
+public class ConversionException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param message
+	 * the detail message
+	 */
+	public ConversionException(final String message) {
+		super(message);
+	}
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param cause
+	 * the exception of the XML parser
+	 */
+	public ConversionException(final Throwable cause) {
+		super(cause);
+	}
+	
+}
@@ -0,0 +1,153 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs conversions requested on standard input
+ * ({@code --server [--threads N]}),
+ * so that a client converting many small batches
+ * does not pay for starting a JVM and warming it up for every batch.
+ * <p>
+ * The input files of all conversions are converted by one shared pool of threads,
+ * whose per-thread parsers, token buffers and output writers
+ * are kept between conversions
+ * (as is the code compiled by the JIT).
+ * Up to as many conversions as there are threads run concurrently;
+ * further requests wait until one of them has finished.
+ * Concurrent conversions must not write to the same output.
+ * </p>
+ * <p>
+ * The protocol is line-based (UTF-8).
+ * When the server is ready, it writes the line {@code READY}.
+ * Every request is one line of tab-separated fields:
+ * a job ID chosen by the client, followed by the arguments
+ * of a conversion as on the command line
+ * (input, output, conversion types and options other than {@code --threads}).
+ * When the conversion has finished, the server writes one reply line,
+ * either {@code ID<tab>OK<tab>FILES<tab>MILLIS}
+ * with the number of input files and the time the conversion took,
+ * or {@code ID<tab>ERROR<tab>MESSAGE}.
+ * Replies are written in the order in which the conversions finish.
+ * Empty lines are ignored.
+ * At the end of the input, the server waits for all conversions
+ * to finish and exits.
+ * </p>
+ * <p>
+ * Details of errors are written to standard error
+ * as in a conversion run from the command line.
+ * </p>
+ */
+final class ConversionServer {
+	
+	private final ExecutorService pConversionExecutor;
+	private final ExecutorService pJobExecutor;
+	private final int pThreads;
+	private final PrintWriter pOutput;
+	
+	private ConversionServer(final int threads) {
+		pConversionExecutor = Executors.newFixedThreadPool(threads);
+		pJobExecutor = Executors.newFixedThreadPool(threads);
+		pThreads = threads;
+		pOutput = new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+	}
+	
+	/**
+	 * Implements {@code --server [--threads N]}.
+	 */
+	static void run(final String[] args) {
+		int threads = Runtime.getRuntime().availableProcessors();
+		if ((args.length == 3) && args[1].equals("--threads")) {
+			try {
+				threads = XmlToText.parseThreads(args[2]);
+			} catch (final UsageException e) {
+				System.err.println(e.getMessage());
+				System.exit(1);
+				return;
+			}
+		} else if (args.length != 1) {
+			System.err.println("expecting only --threads N after --server");
+			System.exit(1);
+			return;
+		}
+		
+		final ConversionServer server = new ConversionServer(threads);
+		try {
+			server.serve(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)));
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			server.pConversionExecutor.shutdownNow();
+		}
+	}
+	
+	private void serve(final BufferedReader input) throws IOException {
+		reply("READY");
+		String line;
+		while ((line = input.readLine()) != null) {
+			if (line.isEmpty())
+				continue;
+			final String[] fields = line.split("\t", -1);
+			final String id = fields[0];
+			final List<String> jobArgs = Arrays.asList(fields).subList(1, fields.length);
+			pJobExecutor.execute(() -> runJob(id, new ArrayList<>(jobArgs)));
+		}
+		pJobExecutor.shutdown();
+		try {
+			while (!pJobExecutor.awaitTermination(1, TimeUnit.HOURS)) {
+				// wait for the remaining conversions
+			}
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	private void runJob(final String id, final List<String> jobArgs) {
+		final long startTime = System.nanoTime();
+		try {
+			final int fileCount = XmlToText.convert(jobArgs, pConversionExecutor, pThreads);
+			reply(id + "\tOK\t" + fileCount + "\t" + (System.nanoTime() - startTime) / 1000000);
+		} catch (final Throwable e) {
+			// even an Error (such as a StackOverflowError on a deeply nested document)
+			// must not leave the client waiting for the reply
+			reply(id + "\tERROR\t" + describe(e));
+		}
+	}
+	
+	/**
+	 * Describes an exception (or error) in one line,
+	 * looking through the {@link RuntimeException}s
+	 * that only wrap a parser exception.
+	 */
+	private static String describe(final Throwable e) {
+		Throwable reported = e;
+		if ((e.getClass() == RuntimeException.class) && (e.getCause() != null))
+			reported = e.getCause();
+		final String description = reported instanceof UsageException || reported instanceof UnsupportedDocumentException ? reported.getMessage() : reported.toString();
+		return description.replace('\t', ' ').replace('\r', ' ').replace('\n', ' ');
+	}
+	
+	private void reply(final String line) {
+		synchronized (pOutput) {
+			pOutput.println(line);
+			pOutput.flush();
+		}
+	}
+	
+}
@@ -0,0 +1,847 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+import xmltotext.conversion.NodeConverter;
+import xmltotext.conversion.SkippingFilter;
+import xmltotext.normalization.TokenSequenceNormalization;
+import xmltotext.stats.FileStatistics;
+import xmltotext.stats.Stage;
+import xmltotext.tokens.ConversionTypes;
+import xmltotext.tokens.TokenBuffer;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenType;
+import xmltotext.util.ChannelWriter;
+import xmltotext.util.DtdCatalog;
+import xmltotext.util.HyphenPrescan;
+import xmltotext.util.InputBuffer;
+import xmltotext.util.XmlHelper;
+import xmltotext.util.XmlUtil;
+
+/**
+ * Converts single TEI or XHTML documents to plain text,
+ * for applications that convert documents in-process
+ * instead of running {@link XmlToText}.
+ * <p>
+ * The output is the same as that of {@link XmlToText}
+ * for the same document and conversion type.
+ * Failures are reported by exceptions only;
+ * nothing is written to {@link System#err}.
+ * </p>
+ * <p>
+ * Instances of this class are thread-safe and may be shared.
+ * The parsers, the token buffer and the output buffers
+ * are kept per thread and reused for every conversion in that thread.
+ * </p>
+ */
+public class KolimoConverter {
+	
+	private static final TeiNodeConverter TEI_CONVERTER = new TeiNodeConverter();
+	private static final XhtmlNodeConverter XHTML_CONVERTER = new XhtmlNodeConverter();
+	
+	private static final int OUTPUT_BUFFER_SIZE = 1 << 16;
+	private static final ThreadLocal<TokenBuffer> TOKEN_BUFFER = ThreadLocal.withInitial(TokenBuffer::new);
+	private static final ThreadLocal<ChannelWriter> OUTPUT_WRITER = ThreadLocal.withInitial(() -> new ChannelWriter(StandardCharsets.UTF_8, OUTPUT_BUFFER_SIZE));
+	private static final ThreadLocal<OutputStreamChannel> OUTPUT_CHANNEL = ThreadLocal.withInitial(OutputStreamChannel::new);
+	private static final ThreadLocal<TokenBuffer> FILTERED_TOKENS = ThreadLocal.withInitial(TokenBuffer::new);
+	private static final ThreadLocal<TokenBuffer> NORMALIZED_TOKENS = ThreadLocal.withInitial(TokenBuffer::new);
+	private static final ThreadLocal<TimedChannel> TIMED_CHANNEL = ThreadLocal.withInitial(TimedChannel::new);
+	private static final ThreadLocal<TokenBuffer> FRAME_TOKENS = ThreadLocal.withInitial(TokenBuffer::new);
+	private static final ThreadLocal<ChannelWriter[]> CHAPTER_WRITERS = ThreadLocal.withInitial(() -> new ChannelWriter[0]);
+	
+	/**
+	 * A {@link WritableByteChannel} writing to an {@link OutputStream}
+	 * through a reused transfer array
+	 * (the buffer of the {@link ChannelWriter} is a direct buffer).
+	 */
+	private static class OutputStreamChannel implements WritableByteChannel {
+		
+		private final byte[] pTransfer = new byte[1 << 13];
+		OutputStream pOutputStream = null;
+		
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final int n = src.remaining();
+			while (src.hasRemaining()) {
+				final int length = Math.min(src.remaining(), pTransfer.length);
+				src.get(pTransfer, 0, length);
+				pOutputStream.write(pTransfer, 0, length);
+			}
+			return n;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() {
+			// the stream is closed by its owner
+		}
+		
+	}
+	
+	/**
+	 * A {@link WritableByteChannel} passing the bytes on to another channel
+	 * and recording the time spent writing and the number of bytes.
+	 */
+	private static class TimedChannel implements WritableByteChannel {
+		
+		WritableByteChannel pChannel = null;
+		long pNanos = 0;
+		long pBytes = 0;
+		
+		void open(final WritableByteChannel channel) {
+			pChannel = channel;
+			pNanos = 0;
+			pBytes = 0;
+		}
+		
+		@Override
+		public int write(final ByteBuffer src) throws IOException {
+			final long start = System.nanoTime();
+			final int n = pChannel.write(src);
+			pNanos += System.nanoTime() - start;
+			pBytes += n;
+			return n;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return pChannel.isOpen();
+		}
+		
+		@Override
+		public void close() {
+			// the channel is closed by its owner
+		}
+		
+	}
+	
+	private final boolean pStreaming;
+	private final DtdCatalog pCatalog;
+	
+	/**
+	 * Initializes a new instance of this class
+	 * that builds a DOM tree of each document
+	 * (like {@code --engine dom}).
+	 */
+	public KolimoConverter() {
+		this(false);
+	}
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param streaming
+	 * whether the text is extracted while parsing,
+	 * without building a DOM tree
+	 * (like {@code --engine stax});
+	 * the output is the same either way
+	 */
+	public KolimoConverter(final boolean streaming) {
+		this(streaming, false);
+	}
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * <p>
+	 * External DTDs are resolved by a {@link DtdCatalog},
+	 * which knows the DTDs of TEI and XHTML
+	 * and the HTML entity sets;
+	 * other external entities are read once and kept in memory,
+	 * unless they are ignored.
+	 * </p>
+	 * 
+	 * @param streaming
+	 * whether the text is extracted while parsing,
+	 * without building a DOM tree
+	 * (like {@code --engine stax});
+	 * the output is the same either way
+	 * 
+	 * @param ignoreUnknownDtds
+	 * whether external DTDs (and other external entities)
+	 * missing from the {@link DtdCatalog} are ignored
+	 * instead of read
+	 * (like {@code --offline-dtds})
+	 */
+	public KolimoConverter(final boolean streaming, final boolean ignoreUnknownDtds) {
+		pStreaming = streaming;
+		pCatalog = ignoreUnknownDtds ? DtdCatalog.OFFLINE : DtdCatalog.CACHING;
+	}
+	
+	/**
+	 * Converts an XML file and writes the text to an {@link OutputStream},
+	 * encoded in UTF-8.
+	 * 
+	 * @param input
+	 * (a {@link Path} locating) the XML file;
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link OutputStream} to write to,
+	 * which is neither flushed nor closed;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the file is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final Path input, final OutputStream output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		try (final InputBuffer inputBuffer = InputBuffer.read(input)) {
+			final boolean mayContainExplicitHyphens = HyphenPrescan.mayContainNotSign(inputBuffer.getBuffer());
+			writeText(extractTokens(inputBuffer.newInputStream(), pStreaming, pCatalog), mayContainExplicitHyphens, conversionType, output);
+		}
+	}
+	
+	/**
+	 * Converts an XML file and writes the text to a {@link Writer}.
+	 * 
+	 * @param input
+	 * (a {@link Path} locating) the XML file;
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link Writer} to write to,
+	 * which is neither flushed nor closed
+	 * (the text is written in many small pieces,
+	 * so the writer should be buffered);
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the file is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final Path input, final Writer output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		try (final InputBuffer inputBuffer = InputBuffer.read(input)) {
+			final boolean mayContainExplicitHyphens = HyphenPrescan.mayContainNotSign(inputBuffer.getBuffer());
+			writeText(extractTokens(inputBuffer.newInputStream(), pStreaming, pCatalog), mayContainExplicitHyphens, conversionType, output);
+		}
+	}
+	
+	/**
+	 * Converts XML read from an {@link InputStream}
+	 * and writes the text to an {@link OutputStream},
+	 * encoded in UTF-8.
+	 * The encoding of the input is detected by the XML parser.
+	 * 
+	 * @param input
+	 * the {@link InputStream} to read from,
+	 * which the caller closes (the XML parser may close it earlier);
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link OutputStream} to write to,
+	 * which is neither flushed nor closed;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the input is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final InputStream input, final OutputStream output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		writeText(extractTokens(input, pStreaming, pCatalog), true, conversionType, output);
+	}
+	
+	/**
+	 * Converts XML read from an {@link InputStream}
+	 * and writes the text to a {@link Writer}.
+	 * The encoding of the input is detected by the XML parser.
+	 * 
+	 * @param input
+	 * the {@link InputStream} to read from,
+	 * which the caller closes (the XML parser may close it earlier);
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link Writer} to write to,
+	 * which is neither flushed nor closed
+	 * (the text is written in many small pieces,
+	 * so the writer should be buffered);
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the input is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final InputStream input, final Writer output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		writeText(extractTokens(input, pStreaming, pCatalog), true, conversionType, output);
+	}
+	
+	/**
+	 * Converts XML read from a {@link Reader}
+	 * and writes the text to an {@link OutputStream},
+	 * encoded in UTF-8.
+	 * Any encoding given in the XML declaration is ignored.
+	 * 
+	 * @param input
+	 * the {@link Reader} to read from,
+	 * which the caller closes (the XML parser may close it earlier);
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link OutputStream} to write to,
+	 * which is neither flushed nor closed;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the input is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final Reader input, final OutputStream output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		writeText(extractTokens(input, pStreaming, pCatalog), true, conversionType, output);
+	}
+	
+	/**
+	 * Converts XML read from a {@link Reader}
+	 * and writes the text to a {@link Writer}.
+	 * Any encoding given in the XML declaration is ignored.
+	 * 
+	 * @param input
+	 * the {@link Reader} to read from,
+	 * which the caller closes (the XML parser may close it earlier);
+	 * not {@code null}
+	 * 
+	 * @param output
+	 * the {@link Writer} to write to,
+	 * which is neither flushed nor closed
+	 * (the text is written in many small pieces,
+	 * so the writer should be buffered);
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * {@link ConversionTypes#TOOLS} or {@link ConversionTypes#HUMAN}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws ConversionException
+	 * if the input is not well-formed XML
+	 * or not a TEI or XHTML document
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the conversion type is invalid
+	 */
+	public void convert(final Reader input, final Writer output, final int conversionType) throws IOException, ConversionException {
+		checkConversionType(conversionType);
+		writeText(extractTokens(input, pStreaming, pCatalog), true, conversionType, output);
+	}
+	
+	private static void checkConversionType(final int conversionType) {
+		if ((conversionType != ConversionTypes.TOOLS) && (conversionType != ConversionTypes.HUMAN))
+			throw new IllegalArgumentException("invalid conversion type: " + conversionType);
+	}
+	
+	/**
+	 * Extracts the tokens of a document
+	 * (for all conversion types)
+	 * into the {@link TokenBuffer} of the current thread.
+	 * 
+	 * @param catalog
+	 * the {@link DtdCatalog} to resolve external DTDs with
+	 * 
+	 * @return
+	 * the {@link TokenBuffer} of the current thread,
+	 * valid until the next call of this method in the same thread
+	 */
+	static TokenBuffer extractTokens(final InputStream inputStream, final boolean streaming, final DtdCatalog catalog) throws IOException, ConversionException {
+		return extractTokens(inputStream, streaming, catalog, null, null);
+	}
+	
+	/**
+	 * Extracts the tokens of a document
+	 * in the same way as {@link #extractTokens(InputStream, boolean, DtdCatalog)},
+	 * recording the time spent parsing and extracting,
+	 * and extracting the chapters of a TEI document concurrently
+	 * (see {@link #extractChapters(Document, TokenBuffer, ForkJoinPool)})
+	 * if a pool is given.
+	 * 
+	 * @param chapterPool
+	 * the {@link ForkJoinPool} to extract the chapters in,
+	 * or {@code null} to extract them in the current thread;
+	 * ignored if {@code streaming} is {@code true}
+	 * 
+	 * @param statistics
+	 * the {@link FileStatistics} to record the time in,
+	 * or {@code null}
+	 */
+	static TokenBuffer extractTokens(final InputStream inputStream, final boolean streaming, final DtdCatalog catalog, final ForkJoinPool chapterPool, final FileStatistics statistics) throws IOException, ConversionException {
+		final TokenBuffer tokens = TOKEN_BUFFER.get();
+		tokens.clear();
+		try {
+			if (streaming) {
+				final long start = System.nanoTime();
+				streamTokens(XmlHelper.createStreamReader(inputStream, catalog), tokens);
+				if (statistics != null)
+					statistics.addTime(Stage.EXTRACT, System.nanoTime() - start);
+			} else {
+				final long start = System.nanoTime();
+				final Document document = load(inputStream, catalog);
+				final long parsed = System.nanoTime();
+				if (chapterPool == null)
+					extractTokens(document, tokens);
+				else
+					extractChapters(document, tokens, chapterPool);
+				if (statistics != null) {
+					statistics.addTime(Stage.PARSE, parsed - start);
+					statistics.addTime(Stage.EXTRACT, System.nanoTime() - parsed);
+				}
+			}
+		} catch (final SAXException | XMLStreamException e) {
+			throw new ConversionException(e);
+		} catch (final UncheckedIOException e) {
+			// an external entity that could not be read by the StAX parser
+			// (see DtdCatalog)
+			throw e.getCause();
+		}
+		if (statistics != null)
+			statistics.addTokens(Stage.EXTRACT, 0, tokens.size());
+		return tokens;
+	}
+	
+	/**
+	 * Parses a document into a DOM tree
+	 * (for {@link #writeChapters(Document, boolean, int[], WritableByteChannel[], FileStatistics)}),
+	 * recording the time spent parsing.
+	 * 
+	 * @param statistics
+	 * the {@link FileStatistics} to record the time in,
+	 * or {@code null}
+	 */
+	static Document parse(final InputStream inputStream, final DtdCatalog catalog, final FileStatistics statistics) throws IOException, ConversionException {
+		final long start = System.nanoTime();
+		final Document document;
+		try {
+			document = load(inputStream, catalog);
+		} catch (final SAXException e) {
+			throw new ConversionException(e);
+		}
+		if (statistics != null)
+			statistics.addTime(Stage.PARSE, System.nanoTime() - start);
+		return document;
+	}
+	
+	/**
+	 * Extracts the tokens of a document read from a {@link Reader}
+	 * in the same way as {@link #extractTokens(InputStream, boolean, DtdCatalog)}.
+	 */
+	static TokenBuffer extractTokens(final Reader reader, final boolean streaming, final DtdCatalog catalog) throws IOException, ConversionException {
+		final TokenBuffer tokens = TOKEN_BUFFER.get();
+		tokens.clear();
+		try {
+			if (streaming)
+				streamTokens(XmlHelper.createStreamReader(reader, catalog), tokens);
+			else
+				extractTokens(load(reader, catalog), tokens);
+		} catch (final SAXException | XMLStreamException e) {
+			throw new ConversionException(e);
+		} catch (final UncheckedIOException e) {
+			// an external entity that could not be read by the StAX parser
+			// (see DtdCatalog)
+			throw e.getCause();
+		}
+		return tokens;
+	}
+	
+	private static void extractTokens(final Document document, final TokenSink tokenSink) throws UnsupportedDocumentException {
+		final Element documentElement = document.getDocumentElement();
+		TextExtraction.extractTokenSequence(documentElement, selectConverter(documentElement.getNodeName()), tokenSink);
+	}
+	
+	/**
+	 * Extracts the tokens of a document into a {@link TokenBuffer},
+	 * extracting the chapters of a TEI document
+	 * (see {@link TeiSplitter}) concurrently in a {@link ForkJoinPool},
+	 * each into a buffer of its own,
+	 * while the current thread extracts the rest of the document.
+	 * The tokens of the chapters are then copied
+	 * to where they belong in the token sequence,
+	 * so the tokens are the same as those extracted in one thread,
+	 * in the same order.
+	 * <p>
+	 * The chapters are read concurrently,
+	 * so the document must allow concurrent reads of disjoint subtrees
+	 * (see {@link #load(InputStream, DtdCatalog)}).
+	 * Documents with fewer than two chapters
+	 * (such as XHTML documents)
+	 * are extracted in the current thread.
+	 * </p>
+	 */
+	private static void extractChapters(final Document document, final TokenBuffer tokens, final ForkJoinPool chapterPool) throws UnsupportedDocumentException {
+		final Element documentElement = document.getDocumentElement();
+		final NodeConverter converter = selectConverter(documentElement.getNodeName());
+		final ArrayList<TeiSplit> splits = TeiSplitter.split(document);
+		if (splits.size() < 2) {
+			TextExtraction.extractTokenSequence(documentElement, converter, tokens);
+			return;
+		}
+		final Set<Node> chapterRoots = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (final TeiSplit split : splits)
+			chapterRoots.add(split.getSubtreeRoot());
+		
+		// the tokens outside the chapters,
+		// and where the tokens of each chapter belong among them
+		final TokenBuffer frame = FRAME_TOKENS.get();
+		frame.clear();
+		final ArrayList<ForkJoinTask<TokenBuffer>> chapters = new ArrayList<>(splits.size());
+		final int[] chapterPositions = new int[splits.size()];
+		try {
+			TextExtraction.extractTokenSequence(documentElement, converter, frame, chapterRoots, chapterRoot -> {
+				chapterPositions[chapters.size()] = frame.size();
+				chapters.add(chapterPool.submit(() -> {
+					final TokenBuffer chapterTokens = new TokenBuffer();
+					TextExtraction.extractTokenSequence(chapterRoot, converter, chapterTokens);
+					return chapterTokens;
+				}));
+			});
+			int framePosition = 0;
+			for (int i = 0; i < chapters.size(); i++) {
+				tokens.addAll(frame, framePosition, chapterPositions[i]);
+				framePosition = chapterPositions[i];
+				final TokenBuffer chapterTokens = chapters.get(i).join();
+				tokens.addAll(chapterTokens, 0, chapterTokens.size());
+			}
+			tokens.addAll(frame, framePosition, frame.size());
+		} finally {
+			for (final ForkJoinTask<TokenBuffer> chapter : chapters)
+				chapter.cancel(false);
+		}
+	}
+	
+	private static void streamTokens(final XMLStreamReader reader, final TokenSink tokenSink) throws XMLStreamException, UnsupportedDocumentException {
+		try {
+			while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+				// skip prolog
+			}
+			StreamTextExtraction.extractTokenSequence(reader, selectConverter(XmlUtil.qualifiedName(reader)), tokenSink);
+		} finally {
+			reader.close();
+		}
+	}
+	
+	private static NodeConverter selectConverter(final String rootElementName) throws UnsupportedDocumentException {
+		final NodeConverter converter = findConverter(rootElementName);
+		if (converter == null)
+			throw new UnsupportedDocumentException(rootElementName);
+		return converter;
+	}
+	
+	private static NodeConverter findConverter(final String rootElementName) {
+		switch (rootElementName) {
+			case "TEI":
+				return TEI_CONVERTER;
+			case "html":
+				return XHTML_CONVERTER;
+			default:
+				return null;
+		}
+	}
+	
+	/**
+	 * Parses a document into a DOM tree
+	 * without the content of the elements
+	 * that the converter for the document skips
+	 * (see {@link SkippingFilter}).
+	 * The tokens extracted from the tree are the same as those
+	 * extracted from the complete tree.
+	 * All nodes are created while parsing,
+	 * so the tree also allows concurrent reads of disjoint subtrees.
+	 */
+	private static Document load(final InputStream inputStream, final DtdCatalog catalog) throws SAXException, IOException {
+		return XmlHelper.load(inputStream, new SkippingFilter(KolimoConverter::findConverter), catalog);
+	}
+	
+	/**
+	 * Parses a document read from a {@link Reader}
+	 * like {@link #load(InputStream, DtdCatalog)}.
+	 */
+	private static Document load(final Reader reader, final DtdCatalog catalog) throws SAXException, IOException {
+		return XmlHelper.load(reader, new SkippingFilter(KolimoConverter::findConverter), catalog);
+	}
+	
+	/**
+	 * Normalizes the tokens of one conversion type
+	 * and writes them to a channel.
+	 * The tokens are only searched for explicit hyphens
+	 * if the prescan of the input found any.
+	 * 
+	 * @param normalizationPool
+	 * the {@link ForkJoinPool} to normalize chunks of large token sequences in
+	 * (see {@link Normalization#normalize(TokenBuffer, int, boolean, TokenSink, ForkJoinPool)}),
+	 * or {@code null} to normalize in the current thread
+	 */
+	static void writeText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final WritableByteChannel channel, final ForkJoinPool normalizationPool) throws IOException {
+		final ChannelWriter writer = OUTPUT_WRITER.get();
+		writer.open(channel);
+		writeText(tokens, mayContainExplicitHyphens, conversionType, (Writer) writer, normalizationPool);
+		writer.finish();
+	}
+	
+	/**
+	 * Normalizes the tokens of one conversion type
+	 * and writes them to a channel
+	 * in the same way as {@link #writeText(TokenBuffer, boolean, int, WritableByteChannel, ForkJoinPool)},
+	 * recording the time, tokens and bytes of each stage.
+	 * <p>
+	 * To time the stages separately,
+	 * the filtered and the normalized tokens are collected
+	 * in buffers (of the current thread)
+	 * instead of being pushed through the stages one by one,
+	 * and the channel is wrapped to time the writes.
+	 * The output is the same.
+	 * </p>
+	 * 
+	 * @param statistics
+	 * the {@link FileStatistics} to record the stages in,
+	 * or {@code null} to write without recording
+	 */
+	static void writeText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final WritableByteChannel channel, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException {
+		if (statistics == null) {
+			writeText(tokens, mayContainExplicitHyphens, conversionType, channel, normalizationPool);
+			return;
+		}
+		
+		final long start = System.nanoTime();
+		final TokenBuffer filteredTokens = FILTERED_TOKENS.get();
+		filteredTokens.clear();
+		tokens.replay(conversionType, filteredTokens);
+		final boolean explicitHyphens = mayContainExplicitHyphens && filteredTokens.contains(TokenType.HYPHENATION, conversionType);
+		final long filtered = System.nanoTime();
+		statistics.addTime(Stage.FILTER, filtered - start);
+		statistics.addTokens(Stage.FILTER, tokens.size(), filteredTokens.size());
+		
+		final TokenBuffer normalizedTokens = NORMALIZED_TOKENS.get();
+		normalizedTokens.clear();
+		Normalization.normalize(filteredTokens, conversionType, explicitHyphens, normalizedTokens, normalizationPool);
+		final long normalized = System.nanoTime();
+		statistics.addTime(Stage.NORMALIZE, normalized - filtered);
+		statistics.addTokens(Stage.NORMALIZE, filteredTokens.size(), normalizedTokens.size());
+		
+		final TimedChannel timedChannel = TIMED_CHANNEL.get();
+		timedChannel.open(channel);
+		final ChannelWriter writer = OUTPUT_WRITER.get();
+		writer.open(timedChannel);
+		try {
+			normalizedTokens.replay(TokenSequenceNormalization.createSerializer(writer));
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+		writer.finish();
+		statistics.addTime(Stage.SERIALIZE, System.nanoTime() - normalized - timedChannel.pNanos);
+		statistics.addTokens(Stage.SERIALIZE, normalizedTokens.size(), 0);
+		statistics.addBytes(Stage.SERIALIZE, 0, timedChannel.pBytes);
+		statistics.addTime(Stage.WRITE, timedChannel.pNanos);
+		statistics.addBytes(Stage.WRITE, timedChannel.pBytes, timedChannel.pBytes);
+		timedChannel.pChannel = null;
+	}
+	
+	private static void writeText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final OutputStream outputStream) throws IOException {
+		final OutputStreamChannel channel = OUTPUT_CHANNEL.get();
+		channel.pOutputStream = outputStream;
+		try {
+			writeText(tokens, mayContainExplicitHyphens, conversionType, channel, null);
+		} finally {
+			channel.pOutputStream = null;
+		}
+	}
+	
+	private static void writeText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final Writer writer) throws IOException {
+		writeText(tokens, mayContainExplicitHyphens, conversionType, writer, null);
+	}
+	
+	private static void writeText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final Writer writer, final ForkJoinPool normalizationPool) throws IOException {
+		final boolean explicitHyphens = mayContainExplicitHyphens && tokens.contains(TokenType.HYPHENATION, conversionType);
+		try {
+			Normalization.normalize(tokens, conversionType, explicitHyphens, TokenSequenceNormalization.createSerializer(writer), normalizationPool);
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+	
+	/**
+	 * Extracts, normalizes and writes the text of a document
+	 * for several conversion types one chapter at a time
+	 * (see {@link TeiSplitter}),
+	 * so that the {@link TokenBuffer} of the current thread
+	 * only has to hold the tokens of the largest chapter
+	 * instead of those of the whole document.
+	 * <p>
+	 * The tokens of a chapter are pushed on into one normalization
+	 * pipeline per conversion type,
+	 * which is only ended after the last chapter,
+	 * so whitespace and hyphenation at the joins between chapters
+	 * are normalized as if the document were processed as a whole,
+	 * and the output is the same.
+	 * Since the normalization of each conversion type
+	 * depends on whether its tokens contain any
+	 * {@link TokenType#HYPHENATION} token anywhere in the document,
+	 * the tokens are extracted twice if the prescan of the input
+	 * found possible explicit hyphens:
+	 * first chapter by chapter only to make this decision,
+	 * then for the output.
+	 * Documents without chapters (such as XHTML documents)
+	 * are processed as a single chapter.
+	 * </p>
+	 * 
+	 * @param channels
+	 * the {@link WritableByteChannel}s to write the text
+	 * of each conversion type to (in the same order);
+	 * not {@code null}
+	 * 
+	 * @param statistics
+	 * the {@link FileStatistics} to record the time spent extracting in,
+	 * or {@code null}
+	 */
+	static void writeChapters(final Document document, final boolean mayContainExplicitHyphens, final int[] conversionTypes, final WritableByteChannel[] channels, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		final Element documentElement = document.getDocumentElement();
+		final NodeConverter converter = selectConverter(documentElement.getNodeName());
+		final Set<Node> chapterRoots = Collections.newSetFromMap(new IdentityHashMap<>());
+		for (final TeiSplit split : TeiSplitter.split(document))
+			chapterRoots.add(split.getSubtreeRoot());
+		final TokenBuffer tokens = TOKEN_BUFFER.get();
+		final long start = System.nanoTime();
+		
+		final boolean[] explicitHyphens = new boolean[conversionTypes.length];
+		if (mayContainExplicitHyphens) {
+			final Runnable checkChapter = () -> {
+				for (int i = 0; i < conversionTypes.length; i++)
+					explicitHyphens[i] |= tokens.contains(TokenType.HYPHENATION, conversionTypes[i]);
+				tokens.clear();
+			};
+			tokens.clear();
+			TextExtraction.extractTokenSequence(documentElement, converter, tokens, chapterRoots, checkChapter);
+			checkChapter.run();
+		}
+		
+		final ChannelWriter[] writers = chapterWriters(conversionTypes.length);
+		final TokenSink[] stages = new TokenSink[conversionTypes.length];
+		for (int i = 0; i < conversionTypes.length; i++) {
+			writers[i].open(channels[i]);
+			stages[i] = Normalization.createStage(explicitHyphens[i], TokenSequenceNormalization.createSerializer(writers[i]));
+		}
+		final long[] pushNanos = new long[1];
+		final Runnable pushChapter = () -> {
+			final long pushStart = System.nanoTime();
+			for (int i = 0; i < conversionTypes.length; i++)
+				tokens.push(conversionTypes[i], stages[i]);
+			if (statistics != null)
+				statistics.addTokens(Stage.EXTRACT, 0, tokens.size());
+			tokens.clear();
+			pushNanos[0] += System.nanoTime() - pushStart;
+		};
+		tokens.clear();
+		try {
+			TextExtraction.extractTokenSequence(documentElement, converter, tokens, chapterRoots, pushChapter);
+			pushChapter.run();
+			for (final TokenSink stage : stages)
+				stage.end();
+		} catch (final UncheckedIOException e) {
+			throw e.getCause();
+		}
+		for (int i = 0; i < conversionTypes.length; i++)
+			writers[i].finish();
+		// normalizing and writing are interleaved with extracting,
+		// so only the time spent extracting is recorded
+		if (statistics != null)
+			statistics.addTime(Stage.EXTRACT, System.nanoTime() - start - pushNanos[0]);
+	}
+	
+	/**
+	 * Returns at least the given number of {@link ChannelWriter}s
+	 * of the current thread.
+	 */
+	private static ChannelWriter[] chapterWriters(final int count) {
+		ChannelWriter[] writers = CHAPTER_WRITERS.get();
+		if (writers.length < count) {
+			writers = Arrays.copyOf(writers, count);
+			for (int i = 0; i < count; i++) {
+				if (writers[i] == null)
+					writers[i] = new ChannelWriter(StandardCharsets.UTF_8, OUTPUT_BUFFER_SIZE);
+			}
+			CHAPTER_WRITERS.set(writers);
+		}
+		return writers;
+	}
+	
+}
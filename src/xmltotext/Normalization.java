@@ -6,13 +6,18 @@
 package xmltotext;
 
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
 
 import xmltotext.normalization.EllipsisCharacterNormalizer;
 import xmltotext.normalization.ExplicitHyphensNormalizer;
+import xmltotext.normalization.FusedNormalization;
 import xmltotext.normalization.ImplicitHyphensNormalizer;
 import xmltotext.normalization.TokenSequenceNormalization;
 import xmltotext.normalization.TokenSequenceNormalizer;
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenBuffer;
+import xmltotext.tokens.TokenCollector;
+import xmltotext.tokens.TokenSink;
 import xmltotext.tokens.TokenType;
 
 /**
@@ -62,9 +67,29 @@ import xmltotext.tokens.TokenType;
  * are applied (in this order).
  * </li>
  * </ul>
+ * <p>
+ * The normalization is carried out by a {@link FusedNormalization}
+ * stage, which looks at every token only once.
+ * The chain of {@link TokenSequenceNormalizer} stages
+ * and collapsing stages
+ * (see {@link TokenSequenceNormalization#createStage(Iterable, TokenSink)})
+ * that it replaces is still available as a reference implementation
+ * (see {@link #createReferenceStage(boolean, TokenSink)}).
+ * </p>
  */
 public class Normalization {
 	
+	/**
+	 * The minimum number of tokens of a sequence
+	 * to be normalized in chunks.
+	 */
+	public static final int PARALLEL_THRESHOLD = 1 << 16;
+	
+	/**
+	 * The minimum number of tokens of a chunk.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 14;
+	
 	private static final ArrayList<TokenSequenceNormalizer> NORMALIZERS_IF_EXPLICIT_HYPHENS;
 	private static final ArrayList<TokenSequenceNormalizer> NORMALIZERS_IF_NO_EXPLICIT_HYPHENS;
 	
@@ -97,17 +122,139 @@ public class Normalization {
 	 * not {@code null}, and no element in it will be {@code null}
 	 */
 	public static ArrayList<Token> normalize(final ArrayList<Token> tokenSequence) {
-		final ArrayList<TokenSequenceNormalizer> normalizers;
-		if (containsExplicitHyphens(tokenSequence))
-			normalizers = NORMALIZERS_IF_EXPLICIT_HYPHENS;
-		else
-			normalizers = NORMALIZERS_IF_NO_EXPLICIT_HYPHENS;
-		
-		return TokenSequenceNormalization.normalizeTokenSequence(tokenSequence, normalizers);
+		final TokenCollector collector = new TokenCollector(tokenSequence.size());
+		createStage(containsExplicitHyphens(tokenSequence), collector).acceptSequence(tokenSequence);
+		return collector.getTokens();
+	}
+	
+	/**
+	 * Creates a pipeline stage that normalizes the token sequence
+	 * pushed into it according to the normalization logic
+	 * implemented by this class
+	 * and passes the normalized sequence on to another
+	 * {@link TokenSink}.
+	 * <p>
+	 * Since the stage cannot look ahead at the whole sequence,
+	 * the caller has to decide whether the sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token (see {@link #containsExplicitHyphens(Iterable)}).
+	 * </p>
+	 * 
+	 * @param explicitHyphens
+	 * {@code true} if the token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token;
+	 * otherwise {@code false}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink} for a single token sequence;
+	 * not {@code null}
+	 */
+	public static TokenSink createStage(final boolean explicitHyphens, final TokenSink next) {
+		return FusedNormalization.createStage(explicitHyphens, next);
 	}
 	
-	private static boolean containsExplicitHyphens(final ArrayList<Token> tokens) {
-		return tokens.stream().map(Token::getType).filter(t -> t == TokenType.HYPHENATION).findAny().isPresent();
+	/**
+	 * Normalizes those tokens stored in a {@link TokenBuffer}
+	 * that are supposed to appear in the output of a conversion type
+	 * according to the normalization logic
+	 * implemented by this class
+	 * and passes the normalized sequence on to another
+	 * {@link TokenSink}
+	 * (followed by the end of the sequence).
+	 * <p>
+	 * If a {@link ForkJoinPool} is given
+	 * and the buffer holds at least {@value #PARALLEL_THRESHOLD} tokens,
+	 * the sequence is cut into chunks at paragraph boundaries,
+	 * which are normalized concurrently
+	 * (see {@link TokenSequenceNormalization#normalizeInChunks(TokenBuffer, int, java.util.function.Function, TokenSink, ForkJoinPool, int)}).
+	 * The result is the same as with a stage created by
+	 * {@link #createStage(boolean, TokenSink)}.
+	 * </p>
+	 * 
+	 * @param tokenSequence
+	 * the {@link TokenBuffer} with the token sequence to be normalized;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link xmltotext.tokens.ConversionTypes})
+	 * 
+	 * @param explicitHyphens
+	 * {@code true} if the token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token;
+	 * otherwise {@code false}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @param pool
+	 * the {@link ForkJoinPool} to normalize chunks of the sequence in,
+	 * or {@code null} to normalize it in the current thread
+	 */
+	public static void normalize(final TokenBuffer tokenSequence, final int conversionType, final boolean explicitHyphens, final TokenSink next, final ForkJoinPool pool) {
+		if ((pool == null) || (tokenSequence.size() < PARALLEL_THRESHOLD)) {
+			tokenSequence.replay(conversionType, createStage(explicitHyphens, next));
+			return;
+		}
+		TokenSequenceNormalization.normalizeInChunks(tokenSequence, conversionType, stageNext -> createStage(explicitHyphens, stageNext), next, pool, MIN_CHUNK_SIZE);
+	}
+	
+	/**
+	 * Creates a pipeline stage that normalizes the token sequence
+	 * pushed into it
+	 * like {@link #createStage(boolean, TokenSink)},
+	 * but with a chain of
+	 * {@link TokenSequenceNormalizer}
+	 * stages and collapsing stages.
+	 * The output of both stages is the same;
+	 * this one is slower and serves as a reference.
+	 * 
+	 * @param explicitHyphens
+	 * {@code true} if the token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token;
+	 * otherwise {@code false}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink} for a single token sequence;
+	 * not {@code null}
+	 */
+	public static TokenSink createReferenceStage(final boolean explicitHyphens, final TokenSink next) {
+		return TokenSequenceNormalization.createStage(explicitHyphens ? NORMALIZERS_IF_EXPLICIT_HYPHENS : NORMALIZERS_IF_NO_EXPLICIT_HYPHENS, next);
+	}
+	
+	/**
+	 * Checks whether a token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token, which determines the normalizers to apply.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence to check;
+	 * neither this {@link Iterable}
+	 * nor any element in it may be {@code null}
+	 * 
+	 * @return
+	 * {@code true} if the token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token;
+	 * otherwise {@code false}
+	 */
+	public static boolean containsExplicitHyphens(final Iterable<Token> tokenSequence) {
+		for (final Token token : tokenSequence)
+			if (token.getType() == TokenType.HYPHENATION)
+				return true;
+		return false;
 	}
 	
 }
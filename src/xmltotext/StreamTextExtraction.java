@@ -0,0 +1,196 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import xmltotext.conversion.ActionType;
+import xmltotext.conversion.AttributeSource;
+import xmltotext.conversion.NodeAction;
+import xmltotext.conversion.NodeConverter;
+import xmltotext.tokens.Token;
+import xmltotext.util.XmlUtil;
+
+/**
+ * Implements the process of extracting text from XML files
+ * without building a DOM:
+ * converting the events of an {@link XMLStreamReader}
+ * into a {@link Token} sequence.
+ * <p>
+ * The resulting token sequence is the same as the one
+ * {@link TextExtraction} creates from the DOM of the same XML file.
+ * To this end, consecutive character events are merged
+ * into one text node (in the same way as the DOM merges them),
+ * while CDATA sections are passed on as separate text nodes.
+ * The latter requires an {@link XMLStreamReader} that reports
+ * CDATA sections as
+ * {@link XMLStreamConstants#CDATA CDATA}
+ * events (see {@link xmltotext.util.XmlHelper}).
+ * </p>
+ */
+public class StreamTextExtraction {
+	
+	/**
+	 * Converts the XML element at the current position of an
+	 * {@link XMLStreamReader} and the tree below it
+	 * into a {@link Token} sequence
+	 * using the specified {@link NodeConverter}.
+	 * <p>
+	 * The {@link NodeConverter} is called in the same order
+	 * as by
+	 * {@link TextExtraction#extractTokenSequence(org.w3c.dom.Node, NodeConverter)}:
+	 * {@link NodeConverter#elementAction(String, AttributeSource, Consumer)}
+	 * for elements and
+	 * {@link NodeConverter#textAction(String, Consumer)}
+	 * for text nodes.
+	 * If an element is skipped
+	 * ({@link ActionType#SKIP}),
+	 * the reader is fast-forwarded to the end of the element
+	 * without looking at the events in between.
+	 * Postponed tokens
+	 * (see {@link NodeAction#getPostponedToken()})
+	 * of elements that are not skipped are kept on a stack
+	 * and appended when the end of the element is reached.
+	 * </p>
+	 * 
+	 * @param reader
+	 * the {@link XMLStreamReader},
+	 * positioned at the start element of the tree to be converted;
+	 * when this method returns normally,
+	 * it is positioned at the corresponding end element;
+	 * not {@code null}
+	 * 
+	 * @param nodeConverter
+	 * the {@link NodeConverter} to be used for processing nodes;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link ArrayList} of {@link Token} instances;
+	 * not {@code null};
+	 * unless the {@link NodeConverter} generates
+	 * a {@link Token} that is {@code null},
+	 * no element of the list will be {@code null}.
+	 * 
+	 * @throws XMLStreamException
+	 * if any parse error occurs
+	 */
+	public static ArrayList<Token> extractTokenSequence(final XMLStreamReader reader, final NodeConverter nodeConverter) throws XMLStreamException {
+		final ArrayList<Token> tokens = new ArrayList<>();
+		extractTokenSequence(reader, nodeConverter, tokens::add);
+		return tokens;
+	}
+	
+	/**
+	 * Converts the XML element at the current position of an
+	 * {@link XMLStreamReader} and the tree below it
+	 * into a {@link Token} sequence
+	 * using the specified {@link NodeConverter},
+	 * passing the tokens to a {@link Consumer}
+	 * (such as a {@link xmltotext.tokens.TokenSink})
+	 * instead of collecting them in a list.
+	 * <p>
+	 * The tokens are the same as those returned by
+	 * {@link #extractTokenSequence(XMLStreamReader, NodeConverter)},
+	 * in the same order.
+	 * </p>
+	 * 
+	 * @param reader
+	 * the {@link XMLStreamReader},
+	 * positioned at the start element of the tree to be converted;
+	 * when this method returns normally,
+	 * it is positioned at the corresponding end element;
+	 * not {@code null}
+	 * 
+	 * @param nodeConverter
+	 * the {@link NodeConverter} to be used for processing nodes;
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * the {@link Consumer} to consume the tokens;
+	 * not {@code null}
+	 * 
+	 * @throws XMLStreamException
+	 * if any parse error occurs
+	 */
+	public static void extractTokenSequence(final XMLStreamReader reader, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer) throws XMLStreamException {
+		// postponed tokens of the open elements; null if there is none
+		final ArrayList<Token> postponedTokens = new ArrayList<>();
+		final StringBuilder text = new StringBuilder();
+		
+		int event = reader.getEventType();
+		while (true) {
+			switch (event) {
+				case XMLStreamConstants.START_ELEMENT:
+					flushText(text, nodeConverter, tokenConsumer);
+					final NodeAction action = nodeConverter.elementAction(XmlUtil.qualifiedName(reader), XmlUtil.attributes(reader), tokenConsumer);
+					final Token postponedToken = action.getPostponedToken();
+					switch (action.getType()) {
+						case SKIP:
+							skipElement(reader);
+							if (postponedToken != null)
+								tokenConsumer.accept(postponedToken);
+							if (postponedTokens.isEmpty())
+								return;
+							break;
+						case RECURSE:
+							postponedTokens.add(postponedToken);
+							break;
+					}
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					flushText(text, nodeConverter, tokenConsumer);
+					final Token endToken = postponedTokens.remove(postponedTokens.size() - 1);
+					if (endToken != null)
+						tokenConsumer.accept(endToken);
+					if (postponedTokens.isEmpty())
+						return;
+					break;
+				case XMLStreamConstants.CHARACTERS:
+				case XMLStreamConstants.SPACE:
+					text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+					break;
+				case XMLStreamConstants.CDATA:
+					flushText(text, nodeConverter, tokenConsumer);
+					nodeConverter.textAction(reader.getText(), tokenConsumer);
+					break;
+				default:
+					// comments and processing instructions separate text nodes
+					flushText(text, nodeConverter, tokenConsumer);
+					break;
+			}
+			event = reader.next();
+		}
+	}
+	
+	private static void flushText(final StringBuilder text, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer) {
+		if (text.length() == 0)
+			return;
+		nodeConverter.textAction(text.toString(), tokenConsumer);
+		text.setLength(0);
+	}
+	
+	private static void skipElement(final XMLStreamReader reader) throws XMLStreamException {
+		int depth = 1;
+		while (depth > 0) {
+			switch (reader.next()) {
+				case XMLStreamConstants.START_ELEMENT:
+					depth++;
+					break;
+				case XMLStreamConstants.END_ELEMENT:
+					depth--;
+					break;
+				default:
+					break;
+			}
+		}
+	}
+	
+}
@@ -8,12 +8,13 @@ package xmltotext;
 import java.util.HashSet;
 import java.util.function.Consumer;
 
-import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
 import xmltotext.conversion.ActionType;
+import xmltotext.conversion.AttributeSource;
 import xmltotext.conversion.NodeAction;
 import xmltotext.conversion.NodeConverter;
+import xmltotext.conversion.text.CharacterMapping;
 import xmltotext.conversion.text.TextProcessor;
 import xmltotext.tokens.ConversionTypes;
 import xmltotext.tokens.Token;
@@ -63,10 +64,10 @@ public class TeiNodeConverter implements NodeConverter {
 	public NodeAction action(final Node node, final Consumer<? super Token> tokenConsumer) {
 		switch (node.getNodeType()) {
 			case Node.ELEMENT_NODE:
-				return processElement(node, node.getNodeName(), tokenConsumer);
+				return elementAction(node.getNodeName(), XmlUtil.attributes(node), tokenConsumer);
 			case Node.CDATA_SECTION_NODE:
 			case Node.TEXT_NODE:
-				TextProcessor.processText(node.getNodeValue(), TeiNodeConverter::processCodePoint, tokenConsumer);
+				textAction(node.getNodeValue(), tokenConsumer);
 				return NodeAction.SKIP; // no child nodes anyway
 			default:
 				// this case never occurred in our data
@@ -74,7 +75,13 @@ public class TeiNodeConverter implements NodeConverter {
 		}
 	}
 
-	private NodeAction processElement(final Node node, final String nodeName, final Consumer<? super Token> tokenConsumer) {
+	@Override
+	public void textAction(final String text, final Consumer<? super Token> tokenConsumer) {
+		TextProcessor.processText(text, CHARACTER_MAPPING, tokenConsumer);
+	}
+	
+	@Override
+	public NodeAction elementAction(final String nodeName, final AttributeSource attributes, final Consumer<? super Token> tokenConsumer) {
 		if (TAGS_TO_SKIP_SET.contains(nodeName))
 			return NodeAction.SKIP;
 		switch (nodeName) {
@@ -93,7 +100,7 @@ public class TeiNodeConverter implements NodeConverter {
 				tokenConsumer.accept(Token.EXPLICIT_LINE_BREAK);
 				return new NodeAction(ActionType.RECURSE, Token.EXPLICIT_LINE_BREAK);
 			case "div":
-				if (XmlUtil.hasAttribute(node, "type", "contents"))
+				if (XmlUtil.hasAttribute(attributes, "type", "contents"))
 					return NodeAction.SKIP;
 			case "p":
 			case "list":
@@ -108,7 +115,7 @@ public class TeiNodeConverter implements NodeConverter {
 				tokenConsumer.accept(new Token(TokenType.WHITESPACE, "\t"));
 				return NodeAction.SIMPLY_RECURSE;
 			case "note":
-				return processNote(node, tokenConsumer);
+				return processNote(attributes, tokenConsumer);
 			case "gap":
 				tokenConsumer.accept(new Token(TokenType.TEXT, "[\u2026]", ConversionTypes.HUMAN));
 				return NodeAction.SKIP;
@@ -124,63 +131,25 @@ public class TeiNodeConverter implements NodeConverter {
 		}
 	}
 
-	private NodeAction processNote(final Node node, final Consumer<? super Token> tokenConsumer) {
-		final NamedNodeMap attributes = node.getAttributes();
-		if (attributes == null)
-			// should not happen for proper Element nodes
-			return NodeAction.SIMPLY_RECURSE;
-		final Node placeAttribute = attributes.getNamedItem("place");
-		if (placeAttribute == null)
+	private NodeAction processNote(final AttributeSource attributes, final Consumer<? super Token> tokenConsumer) {
+		final String place = attributes.getAttributeValue("place");
+		if (place == null)
 			return NodeAction.SIMPLY_RECURSE;
-		final String place = placeAttribute.getNodeValue();
 		if ("foot".equals(place))
 			return ConversionUtil.putFootnote(tokenConsumer);
 		// this case never occurred in our data
 		return NodeAction.SKIP;
 	}
 	
-	private static void processCodePoint(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
-		switch (codePoint) {
-			case 0xA:
-			case 0xD:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.IMPLICIT_LINE_BREAK, text.substring(start, end)));
-				break;
-			case 0x17F: // ſ
-				textBuilder.appendCodePoint('s');
-				break;
-			case 0xAC: // ¬
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.HYPHENATION, "\u00AC"));
-				break;
-			case 0x2D: // -
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.POSSIBLE_HYPHENATION, "-"));
-				break;
-			default:
-				processOtherCodePoint(text, start, end, codePoint, textBuilder, tokenConsumer);
-				break;
-		}
-	}
-	
-	private static void processOtherCodePoint(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
-		switch (Character.getType(codePoint)) {
-			case Character.LINE_SEPARATOR:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.IMPLICIT_LINE_BREAK, text.substring(start, end)));
-				break;
-			case Character.PARAGRAPH_SEPARATOR:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.PARAGRAPH_BOUNDARY, text.substring(start, end)));
-				break;
-			case Character.SPACE_SEPARATOR:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.WHITESPACE, text.substring(start, end)));
-				break;
-			default:
-				textBuilder.appendCodePoint(codePoint);
-				break;
-		}
-	}
+	private static final CharacterMapping CHARACTER_MAPPING = new CharacterMapping.Builder()
+			.emit(0xA, TokenType.IMPLICIT_LINE_BREAK, null)
+			.emit(0xD, TokenType.IMPLICIT_LINE_BREAK, null)
+			.replace(0x17F, 's') // ſ
+			.emit(0xAC, TokenType.HYPHENATION, "\u00AC") // ¬
+			.emit(0x2D, TokenType.POSSIBLE_HYPHENATION, "-")
+			.emitForCategory(Character.LINE_SEPARATOR, TokenType.IMPLICIT_LINE_BREAK)
+			.emitForCategory(Character.PARAGRAPH_SEPARATOR, TokenType.PARAGRAPH_BOUNDARY)
+			.emitForCategory(Character.SPACE_SEPARATOR, TokenType.WHITESPACE)
+			.build();
 	
 }
@@ -7,6 +7,7 @@ package xmltotext;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Set;
 import java.util.function.Consumer;
 
 import org.w3c.dom.Document;
@@ -101,19 +102,139 @@ public class TextExtraction {
 	 * a {@link Token} that is {@code null},
 	 * no element of the list will be {@code null}.
 	 */
-	public static ArrayList<Token> extractTokenSequence(Node subtreeRoot, final NodeConverter nodeConverter) {
+	public static ArrayList<Token> extractTokenSequence(final Node subtreeRoot, final NodeConverter nodeConverter) {
 		final ArrayList<Token> tokens = new ArrayList<>();
-		final Consumer<Token> tokenConsumer = tokens::add;
-		
+		extractTokenSequence(subtreeRoot, nodeConverter, tokens::add);
+		return tokens;
+	}
+	
+	/**
+	 * Converts an XML {@link Node} and the tree below it
+	 * into a {@link Token} sequence
+	 * using the specified {@link NodeConverter},
+	 * passing the tokens to a {@link Consumer}
+	 * (such as a {@link xmltotext.tokens.TokenSink})
+	 * instead of collecting them in a list.
+	 * <p>
+	 * The tokens are the same as those returned by
+	 * {@link #extractTokenSequence(Node, NodeConverter)},
+	 * in the same order.
+	 * </p>
+	 * 
+	 * @param subtreeRoot
+	 * the root of the XML tree to be converted;
+	 * if {@code null}, no tokens are generated
+	 * 
+	 * @param nodeConverter
+	 * the {@link NodeConverter} to be used for processing nodes;
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * the {@link Consumer} to consume the tokens;
+	 * not {@code null}
+	 */
+	public static void extractTokenSequence(final Node subtreeRoot, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer) {
+		extractTokenSequence(subtreeRoot, nodeConverter, tokenConsumer, null, null, true);
+	}
+	
+	/**
+	 * Converts an XML {@link Node} and the tree below it
+	 * into a {@link Token} sequence
+	 * like {@link #extractTokenSequence(Node, NodeConverter, Consumer)},
+	 * calling a callback whenever one of the given section roots
+	 * is about to be converted.
+	 * <p>
+	 * When the callback is called,
+	 * all tokens before the section have been passed to the {@link Consumer},
+	 * so that a large document can be processed section by section
+	 * (see {@link TeiSplitter}).
+	 * The tokens are the same as without sections, in the same order.
+	 * </p>
+	 * 
+	 * @param subtreeRoot
+	 * the root of the XML tree to be converted;
+	 * if {@code null}, no tokens are generated
+	 * 
+	 * @param nodeConverter
+	 * the {@link NodeConverter} to be used for processing nodes;
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * the {@link Consumer} to consume the tokens;
+	 * not {@code null}
+	 * 
+	 * @param sectionRoots
+	 * the roots of the sections
+	 * (a {@link Set} comparing nodes by identity),
+	 * or {@code null} if there are no sections
+	 * 
+	 * @param sectionStart
+	 * the callback to call before each section;
+	 * not {@code null} if there are sections
+	 */
+	public static void extractTokenSequence(final Node subtreeRoot, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer, final Set<Node> sectionRoots, final Runnable sectionStart) {
+		extractTokenSequence(subtreeRoot, nodeConverter, tokenConsumer, sectionRoots, sectionRoot -> sectionStart.run(), true);
+	}
+	
+	/**
+	 * Converts an XML {@link Node} and the tree below it
+	 * into a {@link Token} sequence
+	 * like {@link #extractTokenSequence(Node, NodeConverter, Consumer)},
+	 * except for the given sections,
+	 * which are passed to a handler instead of being converted.
+	 * <p>
+	 * The handler is called for the sections in document order.
+	 * When it is called for a section,
+	 * all tokens before the section have been passed to the {@link Consumer};
+	 * the tokens of the section itself
+	 * (which a call to {@link #extractTokenSequence(Node, NodeConverter, Consumer)}
+	 * with the section root generates)
+	 * belong between those and the tokens passed to the {@link Consumer} next.
+	 * This allows the sections of a large document
+	 * to be converted separately, for example concurrently
+	 * (see {@link TeiSplitter}).
+	 * </p>
+	 * 
+	 * @param subtreeRoot
+	 * the root of the XML tree to be converted;
+	 * if {@code null}, no tokens are generated
+	 * 
+	 * @param nodeConverter
+	 * the {@link NodeConverter} to be used for processing nodes;
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * the {@link Consumer} to consume the tokens outside the sections;
+	 * not {@code null}
+	 * 
+	 * @param sectionRoots
+	 * the roots of the sections
+	 * (a {@link Set} comparing nodes by identity);
+	 * not {@code null}
+	 * 
+	 * @param sectionHandler
+	 * the handler to pass the section roots to;
+	 * not {@code null}
+	 */
+	public static void extractTokenSequence(final Node subtreeRoot, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer, final Set<Node> sectionRoots, final Consumer<Node> sectionHandler) {
+		extractTokenSequence(subtreeRoot, nodeConverter, tokenConsumer, sectionRoots, sectionHandler, false);
+	}
+	
+	private static void extractTokenSequence(Node subtreeRoot, final NodeConverter nodeConverter, final Consumer<? super Token> tokenConsumer, final Set<Node> sectionRoots, final Consumer<Node> sectionHandler, final boolean convertSections) {
 		final ArrayDeque<Stackframe> stack = new ArrayDeque<>();
 		while (true) {
+			if ((subtreeRoot != null) && (sectionRoots != null) && sectionRoots.contains(subtreeRoot)) {
+				sectionHandler.accept(subtreeRoot);
+				if (!convertSections)
+					subtreeRoot = null;
+			}
 			if (subtreeRoot != null) {
 				final NodeAction action = nodeConverter.action(subtreeRoot, tokenConsumer);
 				final Token postponedToken = action.getPostponedToken();
 				switch (action.getType()) {
 					case SKIP:
 						if (postponedToken != null)
-							tokens.add(postponedToken);
+							tokenConsumer.accept(postponedToken);
 						break;
 					case RECURSE:
 						if (postponedToken != null)
@@ -132,10 +253,8 @@ public class TextExtraction {
 			final Stackframe next = stack.pop();
 			subtreeRoot = next.node;
 			if (next.postponedToken != null)
-				tokens.add(next.postponedToken);
+				tokenConsumer.accept(next.postponedToken);
 		}
-		
-		return tokens;
 	}
 	
 	private static class Stackframe {
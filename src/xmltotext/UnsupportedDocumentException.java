@@ -0,0 +1,55 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+/**
+ * Thrown if an input document cannot be converted
+ * because there is no converter for its root element
+ * (only {@code TEI} and {@code html} are supported).
+ */
+public class UnsupportedDocumentException extends ConversionException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final String pRootElementName;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param rootElementName
+	 * the name of the root element of the document
+	 */
+	public UnsupportedDocumentException(final String rootElementName) {
+		super("No converter for root element \"" + rootElementName + "\"");
+		pRootElementName = rootElementName;
+	}
+	
+	/**
+	 * Initializes a new instance of this class
+	 * for a named document.
+	 * 
+	 * @param name
+	 * the name of the document
+	 * 
+	 * @param rootElementName
+	 * the name of its root element
+	 */
+	public UnsupportedDocumentException(final String name, final String rootElementName) {
+		super("No converter for root element \"" + rootElementName + "\" of " + name);
+		pRootElementName = rootElementName;
+	}
+	
+	/**
+	 * Returns the name of the root element of the document.
+	 * 
+	 * @return
+	 * the name of the root element
+	 */
+	public String getRootElementName() {
+		return pRootElementName;
+	}
+	
+}
@@ -0,0 +1,37 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+/**
+ * Thrown if the arguments of a conversion are invalid.
+ * On the command line, the message is printed and the JVM exits;
+ * in {@link ConversionServer server mode}, the message is the reply to the job.
+ */
+class UsageException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	private final boolean pShowUsage;
+	
+	UsageException(final String message) {
+		this(message, false);
+	}
+	
+	/**
+	 * @param showUsage
+	 * whether a description of the arguments
+	 * should be printed after the message
+	 */
+	UsageException(final String message, final boolean showUsage) {
+		super(message);
+		pShowUsage = showUsage;
+	}
+	
+	boolean isShowUsage() {
+		return pShowUsage;
+	}
+	
+}
@@ -0,0 +1,29 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext;
+
+/**
+ * Identifies the version of the conversion logic.
+ * <p>
+ * Results of earlier conversions (such as outputs recorded
+ * in a manifest for incremental conversion
+ * or stored in a result cache) are only reused
+ * if they were created with the same version of the conversion logic.
+ * </p>
+ */
+public class Version {
+	
+	/**
+	 * Version stamp of the conversion logic
+	 * (node converters, text extraction and normalization).
+	 * <p>
+	 * This number must be increased with every change
+	 * that may change the output for some input.
+	 * </p>
+	 */
+	public static final int CONVERTER_VERSION = 2;
+	
+}
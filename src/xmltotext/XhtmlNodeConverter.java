@@ -11,8 +11,10 @@ import java.util.function.Consumer;
 import org.w3c.dom.Node;
 
 import xmltotext.conversion.ActionType;
+import xmltotext.conversion.AttributeSource;
 import xmltotext.conversion.NodeAction;
 import xmltotext.conversion.NodeConverter;
+import xmltotext.conversion.text.CharacterMapping;
 import xmltotext.conversion.text.TextProcessor;
 import xmltotext.tokens.Token;
 import xmltotext.tokens.TokenType;
@@ -73,10 +75,10 @@ public class XhtmlNodeConverter implements NodeConverter {
 	public NodeAction action(final Node node, final Consumer<? super Token> tokenConsumer) {
 		switch (node.getNodeType()) {
 			case Node.ELEMENT_NODE:
-				return processElement(node, node.getNodeName(), tokenConsumer);
+				return elementAction(node.getNodeName(), XmlUtil.attributes(node), tokenConsumer);
 			case Node.CDATA_SECTION_NODE:
 			case Node.TEXT_NODE:
-				TextProcessor.processText(node.getNodeValue(), XhtmlNodeConverter::processCodePoint, tokenConsumer);
+				textAction(node.getNodeValue(), tokenConsumer);
 				return NodeAction.SKIP; // no child nodes anyway
 			case Node.COMMENT_NODE:
 				return NodeAction.SKIP;
@@ -86,7 +88,13 @@ public class XhtmlNodeConverter implements NodeConverter {
 		}
 	}
 	
-	private NodeAction processElement(final Node node, final String nodeName, final Consumer<? super Token> tokenConsumer) {
+	@Override
+	public void textAction(final String text, final Consumer<? super Token> tokenConsumer) {
+		TextProcessor.processText(text, CHARACTER_MAPPING, tokenConsumer);
+	}
+	
+	@Override
+	public NodeAction elementAction(final String nodeName, final AttributeSource attributes, final Consumer<? super Token> tokenConsumer) {
 		if (TAGS_TO_SKIP_SET.contains(nodeName))
 			return NodeAction.SKIP;
 		switch (nodeName) {
@@ -98,17 +106,17 @@ public class XhtmlNodeConverter implements NodeConverter {
 				ConversionUtil.putSkipNotification("[Bild]", tokenConsumer);
 				return NodeAction.SKIP;
 			case "a":
-				if (XmlUtil.hasAttribute(node, "class", "pageref"))
+				if (XmlUtil.hasAttribute(attributes, "class", "pageref"))
 					return NodeAction.SKIP;
 				return NodeAction.SIMPLY_RECURSE;
 			case "div":
 			case "table":
-				if (XmlUtil.hasAttribute(node, "class", "toc"))
+				if (XmlUtil.hasAttribute(attributes, "class", "toc"))
 					return NodeAction.SKIP;
 				tokenConsumer.accept(Token.PARAGRAPH_BOUNDARY);
 				return NodeAction.RECURSE_PARAGRAPH;
 			case "span":
-				if (XmlUtil.hasAttribute(node, "class", "footnote"))
+				if (XmlUtil.hasAttribute(attributes, "class", "footnote"))
 					return ConversionUtil.putFootnote(tokenConsumer);
 				return NodeAction.SIMPLY_RECURSE;
 			case "td":
@@ -129,49 +137,18 @@ public class XhtmlNodeConverter implements NodeConverter {
 		}
 	}
 	
-	private static void processCodePoint(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
-		switch (codePoint) {
-			case 0xA:
-			case 0xD:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.WHITESPACE, text.substring(start, end)));
-				break;
-			case 0x17F: // ſ
-				textBuilder.appendCodePoint('s');
-				break;
-			case 0xA4: // ¤
-				textBuilder.appendCodePoint(0xF1);
-				break;
-			case 0x303: // ̃
-				textBuilder.appendCodePoint(0x342);
-				break;
-			case 0x2CD: // ˍ
-			case 0xA6: // ¦
-			case 0xBF: // ¿
-				break;
-			case 0x2D: // -
-				if (end == text.length()) {
-					TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-					tokenConsumer.accept(new Token(TokenType.POSSIBLE_HYPHENATION, "-"));
-					break;
-				}
-			default:
-				processOtherCodePoint(text, start, end, codePoint, textBuilder, tokenConsumer);
-				break;
-		}
-	}
-	
-	private static void processOtherCodePoint(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
-		switch (Character.getType(codePoint)) {
-			case Character.SPACE_SEPARATOR:
-			case Character.CONTROL:
-				TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
-				tokenConsumer.accept(new Token(TokenType.WHITESPACE, text.substring(start, end)));
-				break;
-			default:
-				textBuilder.appendCodePoint(codePoint);
-				break;
-		}
-	}
+	private static final CharacterMapping CHARACTER_MAPPING = new CharacterMapping.Builder()
+			.emit(0xA, TokenType.WHITESPACE, null)
+			.emit(0xD, TokenType.WHITESPACE, null)
+			.replace(0x17F, 's') // ſ
+			.replace(0xA4, 0xF1) // ¤
+			.replace(0x303, 0x342) // ̃
+			.drop(0x2CD) // ˍ
+			.drop(0xA6) // ¦
+			.drop(0xBF) // ¿
+			.emitIfLast(0x2D, TokenType.POSSIBLE_HYPHENATION, "-")
+			.emitForCategory(Character.SPACE_SEPARATOR, TokenType.WHITESPACE)
+			.emitForCategory(Character.CONTROL, TokenType.WHITESPACE)
+			.build();
 	
 }
@@ -5,126 +5,1014 @@
  */
 package xmltotext;
 
-import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.UncheckedIOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.DirectoryStream;
 import java.nio.file.FileSystem;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.xml.sax.SAXException;
 
-import xmltotext.normalization.TokenSequenceNormalization;
+import xmltotext.cache.ResultCache;
+import xmltotext.container.ContainerFormat;
+import xmltotext.container.ContainerReader;
+import xmltotext.container.ContainerWriter;
+import xmltotext.incremental.ConversionManifest;
+import xmltotext.sharding.Shard;
+import xmltotext.sharding.ShardMerge;
+import xmltotext.sharding.ShardSummary;
+import xmltotext.stats.FileStatistics;
+import xmltotext.stats.RunStatistics;
+import xmltotext.stats.Stage;
 import xmltotext.tokens.ConversionTypes;
-import xmltotext.tokens.Token;
-import xmltotext.util.XmlHelper;
+import xmltotext.tokens.TokenBuffer;
+import xmltotext.util.ContentHash;
+import xmltotext.util.DtdCatalog;
+import xmltotext.util.HyphenPrescan;
+import xmltotext.util.InputBuffer;
 
 public class XmlToText {
 	
-	private static final TeiNodeConverter TEI_CONVERTER = new TeiNodeConverter();
-	private static final XhtmlNodeConverter XHTML_CONVERTER = new XhtmlNodeConverter();
+	/**
+	 * The default size limit of the result cache in bytes.
+	 */
+	private static final long DEFAULT_CACHE_SIZE = 1L << 30;
+	
+	/**
+	 * One of the conversion types requested on the command line,
+	 * with the directory its output is written to
+	 * or, if the output is written to a container,
+	 * the prefix of the names of its files in the container.
+	 */
+	private static class OutputMode {
+		
+		final int pConversionType;
+		final Path pOutputDir;
+		final String pEntryPrefix;
+		ConversionManifest pManifest = null;
+		
+		OutputMode(final int conversionType, final Path outputDir, final String entryPrefix) {
+			pConversionType = conversionType;
+			pOutputDir = outputDir;
+			pEntryPrefix = entryPrefix;
+		}
+		
+	}
+	
+	/**
+	 * The result of converting one input file:
+	 * its name and size and, if the output is written to a container,
+	 * the output for all output modes,
+	 * kept in memory until it is written to the container.
+	 */
+	private static class ConvertedFile {
+		
+		final String pName;
+		final int pSize;
+		final OutputBytes[] pContents;
+		final FileStatistics pStatistics;
+		
+		ConvertedFile(final String name, final int size, final OutputBytes[] contents, final FileStatistics statistics) {
+			pName = name;
+			pSize = size;
+			pContents = contents;
+			pStatistics = statistics;
+		}
+		
+	}
+	
+	/**
+	 * A {@link WritableByteChannel} collecting the bytes written to it
+	 * in a growing array.
+	 */
+	private static class OutputBytes implements WritableByteChannel {
+		
+		byte[] pBytes;
+		int pLength;
+		
+		OutputBytes() {
+			pBytes = new byte[1 << 12];
+			pLength = 0;
+		}
+		
+		OutputBytes(final byte[] bytes) {
+			pBytes = bytes;
+			pLength = bytes.length;
+		}
+		
+		@Override
+		public int write(final ByteBuffer src) {
+			final int n = src.remaining();
+			if (pLength + n > pBytes.length)
+				pBytes = Arrays.copyOf(pBytes, Math.max(2 * pBytes.length, pLength + n));
+			src.get(pBytes, pLength, n);
+			pLength += n;
+			return n;
+		}
+		
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+		
+		@Override
+		public void close() {
+			// nothing to release
+		}
+		
+	}
 	
 	public static void main(final String[] args) {
-		if (args.length != 3) {
-			System.err.println("expecting three arguments:");
-			System.err.println("input directory");
-			System.err.println("output directory");
-			System.err.println("conversion type (\"tools\" or \"human\")");
+		if ((args.length > 0) && args[0].equals("--merge-shards")) {
+			mergeShards(args);
+			return;
+		}
+		if ((args.length > 0) && args[0].equals("--server")) {
+			ConversionServer.run(args);
+			return;
+		}
+		
+		final ArrayList<String> jobArgs = new ArrayList<>();
+		int threads = Runtime.getRuntime().availableProcessors();
+		final ExecutorService executor;
+		try {
+			for (int i = 0; i < args.length; i++) {
+				if (args[i].equals("--threads")) {
+					if (++i == args.length)
+						throw new UsageException("missing number of threads after --threads");
+					threads = parseThreads(args[i]);
+				} else {
+					jobArgs.add(args[i]);
+				}
+			}
+			executor = Executors.newFixedThreadPool(threads);
+		} catch (final UsageException e) {
+			printUsageError(e);
 			System.exit(1);
 			return;
 		}
 		
-		final int conversionType;
-		switch (args[2]) {
+		try {
+			convert(jobArgs, executor, threads);
+		} catch (final UsageException e) {
+			printUsageError(e);
+			System.exit(1);
+		} catch (final UnsupportedDocumentException e) {
+			// reported by selectConverter
+			System.exit(2);
+		} catch (final IOException e) {
+			throw new UncheckedIOException(e);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	private static void printUsageError(final UsageException e) {
+		if (!e.isShowUsage()) {
+			System.err.println(e.getMessage());
+			return;
+		}
+		System.err.print(e.getMessage());
+		System.err.println(':');
+		System.err.println("input directory");
+		System.err.println("output directory");
+		System.err.println("conversion type (\"tools\" or \"human\", or both separated by a comma)");
+		System.err.println("optionally followed by");
+		System.err.println("--threads N (default: number of available processors)");
+		System.err.println("--engine dom|stax (default: dom)");
+		System.err.println("--incremental");
+		System.err.println("--chapters (process TEI documents one chapter at a time)");
+		System.err.println("--parallel-chapters (extract the chapters of TEI documents concurrently)");
+		System.err.println("--parallel-normalization (normalize the text of large documents concurrently)");
+		System.err.println("--offline-dtds (ignore external DTDs missing from the built-in catalog)");
+		System.err.println("--cache DIR (reuse results from, and add them to, a result cache directory)");
+		System.err.println("--cache-size SIZE (size limit of the result cache, e.g. 500M or 20G; default: 1G)");
+		System.err.println("--cache-link (hard-link cached results instead of copying them)");
+		System.err.println("--shard I/N (convert only shard I of N, counting from 0)");
+		System.err.println("--stats FILE (write the time spent in each stage as JSON)");
+		System.err.println("The input and output directory may also be");
+		System.err.println("a .zip, .tar, .tar.gz or .gz file.");
+		System.err.println("Shard summaries are checked with");
+		System.err.println("--merge-shards INPUT SUMMARY...");
+		System.err.println("A server accepting conversions on standard input is started with");
+		System.err.println("--server [--threads N]");
+	}
+	
+	/**
+	 * Runs one conversion,
+	 * as given by the command-line arguments except {@code --threads}.
+	 * The input files are converted by the given executor,
+	 * which may be shared by concurrent conversions
+	 * (in {@link ConversionServer server mode}).
+	 * 
+	 * @param args
+	 * the arguments: input, output, conversion types and options
+	 * 
+	 * @param executor
+	 * the {@link ExecutorService} converting the input files
+	 * 
+	 * @param threads
+	 * the number of threads of the executor,
+	 * which bounds the number of files read ahead
+	 * 
+	 * @return
+	 * the number of input files converted
+	 * (or found to be up to date)
+	 * 
+	 * @throws UsageException
+	 * if the arguments are invalid
+	 * 
+	 * @throws UnsupportedDocumentException
+	 * if an input file has an unsupported root element
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	static int convert(final List<String> args, final ExecutorService executor, final int threads) throws UsageException, IOException, UnsupportedDocumentException {
+		final ArrayList<String> positionalArgs = new ArrayList<>();
+		boolean streaming = false;
+		boolean incremental = false;
+		boolean chapters = false;
+		boolean parallelChapters = false;
+		boolean parallelNormalization = false;
+		boolean offlineDtds = false;
+		String cacheDirName = null;
+		long cacheSize = 0; // not given
+		boolean cacheLink = false;
+		Shard shard = null;
+		String statsFileName = null;
+		for (int i = 0; i < args.size(); i++) {
+			switch (args.get(i)) {
+				case "--threads":
+					throw new UsageException("--threads cannot be given for a single conversion");
+				case "--engine":
+					if (++i == args.size())
+						throw new UsageException("missing extraction engine after --engine");
+					streaming = parseEngine(args.get(i));
+					break;
+				case "--incremental":
+					incremental = true;
+					break;
+				case "--chapters":
+					chapters = true;
+					break;
+				case "--parallel-chapters":
+					parallelChapters = true;
+					break;
+				case "--parallel-normalization":
+					parallelNormalization = true;
+					break;
+				case "--offline-dtds":
+					offlineDtds = true;
+					break;
+				case "--cache":
+					if (++i == args.size())
+						throw new UsageException("missing directory after --cache");
+					cacheDirName = args.get(i);
+					break;
+				case "--cache-size":
+					if (++i == args.size())
+						throw new UsageException("missing size after --cache-size");
+					cacheSize = parseSize(args.get(i));
+					break;
+				case "--cache-link":
+					cacheLink = true;
+					break;
+				case "--shard":
+					if (++i == args.size())
+						throw new UsageException("missing shard after --shard");
+					shard = parseShard(args.get(i));
+					break;
+				case "--stats":
+					if (++i == args.size())
+						throw new UsageException("missing file after --stats");
+					statsFileName = args.get(i);
+					break;
+				default:
+					positionalArgs.add(args.get(i));
+					break;
+			}
+		}
+		
+		if (positionalArgs.size() != 3)
+			throw new UsageException("expecting three arguments", true);
+		
+		final String[] conversionTypeNames = positionalArgs.get(2).split(",", -1);
+		final int[] conversionTypes = new int[conversionTypeNames.length];
+		int allConversionTypes = 0;
+		for (int i = 0; i < conversionTypeNames.length; i++) {
+			conversionTypes[i] = parseConversionType(conversionTypeNames[i]);
+			if ((allConversionTypes & conversionTypes[i]) != 0)
+				throw new UsageException("Duplicate conversion type: " + conversionTypeNames[i]);
+			allConversionTypes |= conversionTypes[i];
+		}
+		
+		final FileSystem fs = FileSystems.getDefault();
+		final Path inputDir = makePath(fs, positionalArgs.get(0));
+		final Path outputDir = makePath(fs, positionalArgs.get(1));
+		
+		final ContainerFormat inputFormat = Files.isDirectory(inputDir) ? null : ContainerFormat.of(inputDir);
+		final ContainerFormat outputFormat = Files.isDirectory(outputDir) ? null : ContainerFormat.of(outputDir);
+		
+		// with more than one conversion type, every type gets a subdirectory
+		// (or a directory in the output container)
+		final OutputMode[] modes = new OutputMode[conversionTypes.length];
+		for (int i = 0; i < modes.length; i++) {
+			if (outputFormat != null)
+				modes[i] = new OutputMode(conversionTypes[i], null, modes.length == 1 ? "" : conversionTypeNames[i] + "/");
+			else
+				modes[i] = new OutputMode(conversionTypes[i], modes.length == 1 ? outputDir : outputDir.resolve(conversionTypeNames[i]), null);
+		}
+		
+		if (chapters && streaming)
+			throw new UsageException("--chapters requires --engine dom");
+		if (parallelChapters && streaming)
+			throw new UsageException("--parallel-chapters requires --engine dom");
+		if (parallelChapters && chapters)
+			throw new UsageException("--chapters and --parallel-chapters cannot be combined");
+		if (parallelNormalization && chapters)
+			throw new UsageException("--chapters and --parallel-normalization cannot be combined");
+		if ((cacheDirName == null) && ((cacheSize != 0) || cacheLink))
+			throw new UsageException("--cache-size and --cache-link require --cache");
+		if ((outputFormat == ContainerFormat.GZ) && (modes.length > 1))
+			throw new UsageException("a .gz output container can only hold a single file, so it requires a single conversion type");
+		if (incremental) {
+			if (outputFormat != null)
+				throw new UsageException("--incremental requires an output directory");
+			for (final OutputMode mode : modes) {
+				if (inputDir.equals(mode.pOutputDir))
+					throw new UsageException("--incremental requires different input and output directories");
+			}
+		}
+		
+		final long startTime = System.nanoTime();
+		final ShardSummary summary = shard == null ? null : new ShardSummary(shard);
+		final RunStatistics statistics = statsFileName == null ? null : new RunStatistics();
+		// results converted with --offline-dtds are kept apart,
+		// since unknown DTDs may declare entities
+		final ResultCache cache = cacheDirName == null ? null : ResultCache.open(makePath(fs, cacheDirName), cacheSize != 0 ? cacheSize : DEFAULT_CACHE_SIZE, cacheLink, offlineDtds ? "offline-dtds" : "");
+		// the threads converting files wait while the chapters are extracted
+		// or the chunks are normalized,
+		// so the pool has as many threads as the executor
+		final ForkJoinPool documentPool = parallelChapters || parallelNormalization ? new ForkJoinPool(threads) : null;
+		final int fileCount;
+		try {
+			fileCount = convertFiles(inputDir, inputFormat, outputDir, outputFormat, modes, executor, threads, streaming, offlineDtds ? DtdCatalog.OFFLINE : DtdCatalog.CACHING, incremental, cache, chapters, parallelChapters ? documentPool : null, parallelNormalization ? documentPool : null, summary, statistics);
+		} catch (final UsageException e) {
+			// a .gz output container with more than one input file
+			// must not be left behind incomplete
+			Files.deleteIfExists(outputDir);
+			throw e;
+		} finally {
+			if (documentPool != null)
+				documentPool.shutdownNow();
+		}
+		if (statistics != null)
+			statistics.write(makePath(fs, statsFileName), System.nanoTime() - startTime);
+		if (summary != null) {
+			summary.setMillis((System.nanoTime() - startTime) / 1000000);
+			// next to an output container, or in the output directory
+			summary.write(outputFormat != null ? outputDir.resolveSibling(outputDir.getFileName() + ShardSummary.fileName(shard)) : outputDir.resolve(ShardSummary.fileName(shard)));
+		}
+		return fileCount;
+	}
+	
+	/**
+	 * Converts all input files (of the shard, if any)
+	 * for all output modes.
+	 * If a conversion fails,
+	 * the conversions not yet started are cancelled.
+	 * 
+	 * @return
+	 * the number of input files converted
+	 * 
+	 * @throws UsageException
+	 * if the output container is a {@code .gz} file
+	 * and there is more than one input file
+	 */
+	private static int convertFiles(final Path inputDir, final ContainerFormat inputFormat, final Path outputDir, final ContainerFormat outputFormat, final OutputMode[] modes, final ExecutorService executor, final int threads, final boolean streaming, final DtdCatalog catalog, final boolean incremental, final ResultCache cache, final boolean chapters, final ForkJoinPool chapterPool, final ForkJoinPool normalizationPool, final ShardSummary summary, final RunStatistics runStatistics) throws UsageException, IOException, UnsupportedDocumentException {
+		final Shard shard = summary == null ? null : summary.getShard();
+		// the conversions are awaited in the order of the input files
+		// (which is the order of the files in the output container),
+		// and only a limited number of them may be pending,
+		// which bounds the memory used by files read from
+		// the input container or to be written to the output container
+		final ArrayDeque<Future<ConvertedFile>> conversions = new ArrayDeque<>();
+		final int maxPendingConversions = 4 * threads;
+		int fileCount = 0;
+		try (final ContainerWriter outputContainer = outputFormat == null ? null : outputFormat.createWriter(outputDir)) {
+			for (final OutputMode mode : modes) {
+				if ((modes.length > 1) && (mode.pOutputDir != null))
+					Files.createDirectories(mode.pOutputDir);
+				if (incremental)
+					mode.pManifest = ConversionManifest.open(mode.pOutputDir);
+			}
+			if (inputFormat == null) {
+				try (final DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+					for (final Path file : files) {
+						// with the same input and output directory,
+						// the subdirectories of the modes are not input files
+						if (isModeOutputDir(file, modes))
+							continue;
+						final String name = file.getFileName().toString();
+						if ((shard != null) && !shard.contains(name))
+							continue;
+						checkSingleOutputFile(outputFormat, fileCount);
+						conversions.add(executor.submit(() -> {
+							final long readStart = System.nanoTime();
+							try (final InputBuffer input = readInput(file)) {
+								final FileStatistics statistics = startStatistics(runStatistics, name, System.nanoTime() - readStart, input.size());
+								return convertFile(name, input, modes, streaming, catalog, incremental, cache, chapters, chapterPool, normalizationPool, statistics);
+							}
+						}));
+						fileCount++;
+						if (conversions.size() > maxPendingConversions)
+							finishConversion(awaitConversion(conversions.poll()), modes, outputContainer, summary, runStatistics);
+					}
+				}
+			} else {
+				try (final ContainerReader inputContainer = inputFormat.openReader(inputDir)) {
+					String name;
+					while ((name = nextInputEntry(inputContainer, inputDir)) != null) {
+						if ((shard != null) && !shard.contains(name))
+							continue;
+						checkSingleOutputFile(outputFormat, fileCount);
+						final String entryName = name;
+						final long readStart = System.nanoTime();
+						final byte[] content = readInputEntry(inputContainer, entryName);
+						final long readNanos = System.nanoTime() - readStart;
+						conversions.add(executor.submit(() -> {
+							final FileStatistics statistics = startStatistics(runStatistics, entryName, readNanos, content.length);
+							try (final InputBuffer input = InputBuffer.wrap(content)) {
+								return convertFile(entryName, input, modes, streaming, catalog, incremental, cache, chapters, chapterPool, normalizationPool, statistics);
+							}
+						}));
+						fileCount++;
+						if (conversions.size() > maxPendingConversions)
+							finishConversion(awaitConversion(conversions.poll()), modes, outputContainer, summary, runStatistics);
+					}
+				}
+			}
+			while (!conversions.isEmpty())
+				finishConversion(awaitConversion(conversions.poll()), modes, outputContainer, summary, runStatistics);
+		} finally {
+			for (final Future<ConvertedFile> conversion : conversions)
+				conversion.cancel(false);
+			// keeps the records of the files converted so far
+			for (final OutputMode mode : modes) {
+				if (mode.pManifest != null)
+					mode.pManifest.close();
+			}
+		}
+		return fileCount;
+	}
+	
+	private static boolean isModeOutputDir(final Path file, final OutputMode[] modes) {
+		if (modes.length == 1)
+			return false;
+		for (final OutputMode mode : modes) {
+			if (file.equals(mode.pOutputDir))
+				return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Checks that another input file may be converted
+	 * into the output container,
+	 * which is not the case for a {@code .gz} file
+	 * that already holds (or is to hold) a file.
+	 */
+	private static void checkSingleOutputFile(final ContainerFormat outputFormat, final int fileCount) throws UsageException {
+		if ((outputFormat == ContainerFormat.GZ) && (fileCount > 0))
+			throw new UsageException("a .gz output container can only hold a single file, but there is more than one input file");
+	}
+	
+	private static int parseConversionType(final String conversionTypeString) throws UsageException {
+		switch (conversionTypeString) {
 			case "tools":
-				conversionType = ConversionTypes.TOOLS;
-				break;
+				return ConversionTypes.TOOLS;
 			case "human":
-				conversionType = ConversionTypes.HUMAN;
-				break;
+				return ConversionTypes.HUMAN;
 			default:
-				System.err.print("Unsupported conversion type: ");
-				System.err.println(args[2]);
-				System.exit(1);
-				return;
+				throw new UsageException("Unsupported conversion type: " + conversionTypeString);
+		}
+	}
+	
+	private static Shard parseShard(final String shardString) throws UsageException {
+		try {
+			return Shard.parse(shardString);
+		} catch (final IllegalArgumentException e) {
+			throw new UsageException("Invalid shard: " + shardString);
+		}
+	}
+	
+	/**
+	 * Implements {@code --merge-shards INPUT SUMMARY...}:
+	 * prints the totals of the shard summaries
+	 * and checks that they cover every file in the input directory
+	 * (or container) exactly once.
+	 */
+	private static void mergeShards(final String[] args) {
+		if (args.length < 3) {
+			System.err.println("expecting the input directory and the shard summaries after --merge-shards");
+			System.exit(1);
+			return;
 		}
-		
 		final FileSystem fs = FileSystems.getDefault();
-		final Path inputDir = makePath(fs, args[0]);
-		final Path outputDir = makePath(fs, args[1]);
-		
-		try (final DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
-			for (final Path file : files)
-				exportText(extractText(file, conversionType), outputDir.resolve(file.getFileName()));
+		final Path inputDir = makePath(fs, args[1]);
+		try {
+			final ArrayList<ShardSummary> summaries = new ArrayList<>();
+			for (int i = 2; i < args.length; i++)
+				summaries.add(ShardSummary.read(makePath(fs, args[i])));
+			final ArrayList<String> inputNames = new ArrayList<>();
+			final ContainerFormat inputFormat = Files.isDirectory(inputDir) ? null : ContainerFormat.of(inputDir);
+			if (inputFormat == null) {
+				try (final DirectoryStream<Path> files = Files.newDirectoryStream(inputDir)) {
+					for (final Path file : files)
+						inputNames.add(file.getFileName().toString());
+				}
+			} else {
+				try (final ContainerReader inputContainer = inputFormat.openReader(inputDir)) {
+					String name;
+					while ((name = inputContainer.nextEntry()) != null)
+						inputNames.add(name);
+				}
+			}
+			final ShardMerge merge = new ShardMerge(summaries, inputNames);
+			merge.print(System.out);
+			if (!merge.isComplete())
+				System.exit(3);
 		} catch (final IOException e) {
 			throw new UncheckedIOException(e);
 		}
 	}
 	
+	static int parseThreads(final String threadsString) throws UsageException {
+		try {
+			final int threads = Integer.parseInt(threadsString);
+			if (threads > 0)
+				return threads;
+		} catch (final NumberFormatException e) {
+			// reported below
+		}
+		throw new UsageException("Invalid number of threads: " + threadsString);
+	}
+	
+	/**
+	 * Parses a size in bytes,
+	 * optionally followed by {@code K}, {@code M}, {@code G} or {@code T}
+	 * (for units of 1024, 1024², 1024³ or 1024⁴ bytes).
+	 */
+	private static long parseSize(final String sizeString) throws UsageException {
+		final int unitIndex = "KMGT".indexOf(sizeString.isEmpty() ? 0 : Character.toUpperCase(sizeString.charAt(sizeString.length() - 1)));
+		final String number = unitIndex < 0 ? sizeString : sizeString.substring(0, sizeString.length() - 1);
+		try {
+			final long size = Long.parseLong(number);
+			final int shift = 10 * (unitIndex + 1);
+			if ((size > 0) && (size <= (Long.MAX_VALUE >> shift)))
+				return size << shift;
+		} catch (final NumberFormatException e) {
+			// reported below
+		}
+		throw new UsageException("Invalid size: " + sizeString);
+	}
+	
+	private static boolean parseEngine(final String engineString) throws UsageException {
+		switch (engineString) {
+			case "dom":
+				return false;
+			case "stax":
+				return true;
+			default:
+				throw new UsageException("Unsupported extraction engine: " + engineString);
+		}
+	}
+	
+	private static <T> T awaitConversion(final Future<T> conversion) throws IOException, UnsupportedDocumentException {
+		try {
+			return conversion.get();
+		} catch (final InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (final ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof UnsupportedDocumentException)
+				throw (UnsupportedDocumentException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new RuntimeException(cause);
+		}
+	}
+	
 	private static Path makePath(final FileSystem fs, final String pathString) {
 		return fs.getPath(pathString).toAbsolutePath().normalize();
 	}
 	
-	private static String extractText(final Path xmlFile, final int conversionType) throws IOException {
-		final Document document = loadDocument(xmlFile);
-		final Element documentElement = document.getDocumentElement();
+	/**
+	 * Converts one input file for all output modes.
+	 * The input file is read into memory only once
+	 * (for prescanning it for explicit hyphens,
+	 * for computing its hash in incremental mode or for the result cache
+	 * and for parsing it)
+	 * and parsed only once,
+	 * and the extracted tokens are passed on to each mode.
+	 * In incremental mode, the input file is not parsed at all
+	 * if the manifests show
+	 * that the existing output files of all modes are up to date;
+	 * likewise, it is not parsed at all
+	 * if the result cache holds the output of all modes.
+	 * 
+	 * @param name
+	 * the name of the input file,
+	 * which is also the name of the output files
+	 * (a relative path for a file read from a container)
+	 * 
+	 * @return
+	 * the {@link ConvertedFile},
+	 * with the output if it is written to a container;
+	 * not {@code null}
+	 */
+	private static ConvertedFile convertFile(final String name, final InputBuffer input, final OutputMode[] modes, final boolean streaming, final DtdCatalog catalog, final boolean incremental, final ResultCache cache, final boolean chapters, final ForkJoinPool chapterPool, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		final boolean mayContainExplicitHyphens = HyphenPrescan.mayContainNotSign(input.getBuffer());
+		if (!incremental && (cache == null))
+			return new ConvertedFile(name, input.size(), exportFile(name, input, modes, mayContainExplicitHyphens, streaming, catalog, chapters, chapterPool, normalizationPool, statistics), statistics);
 		
-		final ArrayList<Token> tokens;
-		switch (documentElement.getNodeName()) {
-			case "TEI":
-				tokens = TextExtraction.extractTokenSequence(documentElement, TEI_CONVERTER);
-				break;
-			case "html":
-				tokens = TextExtraction.extractTokenSequence(documentElement, XHTML_CONVERTER);
-				break;
-			default:
-				System.err.print("Cannot convert ");
-				System.err.println(xmlFile.getFileName().toString());
-				System.err.print("No converter for root element \"");
-				System.err.print(documentElement.getNodeName());
-				System.err.println('"');
-				System.exit(2);
-				return null;
+		final byte[] hash = ContentHash.of(input.getBuffer());
+		if (!incremental)
+			return new ConvertedFile(name, input.size(), exportFile(name, input, modes, hash, cache, mayContainExplicitHyphens, streaming, catalog, chapters, chapterPool, normalizationPool, statistics), statistics);
+		
+		final ArrayList<OutputMode> outdatedModes = new ArrayList<>(modes.length);
+		for (final OutputMode mode : modes) {
+			if (!mode.pManifest.isUpToDate(name, hash, mode.pConversionType, catalog.ignoresUnknown()) || !Files.isRegularFile(mode.pOutputDir.resolve(name)))
+				outdatedModes.add(mode);
+		}
+		if (outdatedModes.isEmpty())
+			return new ConvertedFile(name, input.size(), null, statistics);
+		
+		exportFile(name, input, outdatedModes.toArray(new OutputMode[outdatedModes.size()]), hash, cache, mayContainExplicitHyphens, streaming, catalog, chapters, chapterPool, normalizationPool, statistics);
+		for (final OutputMode mode : outdatedModes)
+			mode.pManifest.record(name, hash, mode.pConversionType, catalog.ignoresUnknown());
+		return new ConvertedFile(name, input.size(), null, statistics);
+	}
+	
+	/**
+	 * Writes the text of an input file for the given output modes
+	 * like {@link #exportFile(String, InputBuffer, OutputMode[], boolean, boolean, DtdCatalog, boolean, ForkJoinPool, ForkJoinPool, FileStatistics)},
+	 * but takes the output of each mode from the result cache, if it is there.
+	 * The input file is only converted for the other modes,
+	 * whose output is then added to the result cache.
+	 * 
+	 * @param cache
+	 * the {@link ResultCache},
+	 * or {@code null} to convert the input file for all modes
+	 */
+	private static OutputBytes[] exportFile(final String name, final InputBuffer input, final OutputMode[] modes, final byte[] hash, final ResultCache cache, final boolean mayContainExplicitHyphens, final boolean streaming, final DtdCatalog catalog, final boolean chapters, final ForkJoinPool chapterPool, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		if (cache == null)
+			return exportFile(name, input, modes, mayContainExplicitHyphens, streaming, catalog, chapters, chapterPool, normalizationPool, statistics);
+		
+		final boolean toContainer = modes[0].pOutputDir == null;
+		final OutputBytes[] contents = toContainer ? new OutputBytes[modes.length] : null;
+		final ArrayList<OutputMode> uncachedModes = new ArrayList<>(modes.length);
+		for (int i = 0; i < modes.length; i++) {
+			final OutputMode mode = modes[i];
+			try {
+				if (toContainer) {
+					final byte[] cached = cache.read(hash, mode.pConversionType);
+					if (cached != null)
+						contents[i] = new OutputBytes(cached);
+					else
+						uncachedModes.add(mode);
+				} else if (!cache.copyTo(hash, mode.pConversionType, outputFile(mode, name))) {
+					uncachedModes.add(mode);
+				}
+			} catch (final IOException e) {
+				throw reportOutputError(name, e);
+			}
 		}
+		if (uncachedModes.isEmpty())
+			return contents;
 		
-		filter(tokens, conversionType);
-		return TokenSequenceNormalization.tokenSequenceToString(Normalization.normalize(tokens));
+		final OutputMode[] convertedModes = uncachedModes.toArray(new OutputMode[uncachedModes.size()]);
+		final OutputBytes[] convertedContents = exportFile(name, input, convertedModes, mayContainExplicitHyphens, streaming, catalog, chapters, chapterPool, normalizationPool, statistics);
+		int contentIndex = 0;
+		for (int i = 0; i < convertedModes.length; i++) {
+			final int conversionType = convertedModes[i].pConversionType;
+			try {
+				if (toContainer) {
+					while (contents[contentIndex] != null)
+						contentIndex++;
+					contents[contentIndex] = convertedContents[i];
+					cache.put(hash, conversionType, convertedContents[i].pBytes, convertedContents[i].pLength);
+				} else {
+					cache.put(hash, conversionType, outputFile(convertedModes[i], name));
+				}
+			} catch (final IOException e) {
+				throw reportCacheError(name, e);
+			}
+		}
+		return contents;
+	}
+	
+	/**
+	 * Extracts the tokens of an input file
+	 * and writes the text for the given output modes
+	 * to the output files or, if the output is written to a container,
+	 * to memory.
+	 * 
+	 * @return
+	 * the output of each mode if the output is written to a container,
+	 * otherwise {@code null}
+	 */
+	private static OutputBytes[] exportFile(final String name, final InputBuffer input, final OutputMode[] modes, final boolean mayContainExplicitHyphens, final boolean streaming, final DtdCatalog catalog, final boolean chapters, final ForkJoinPool chapterPool, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		if (chapters)
+			return exportChapters(name, input, modes, mayContainExplicitHyphens, catalog, statistics);
+		final TokenBuffer tokens = extractTokens(name, input, streaming, catalog, chapterPool, statistics);
+		if (modes[0].pOutputDir == null) {
+			final OutputBytes[] contents = new OutputBytes[modes.length];
+			for (int i = 0; i < modes.length; i++)
+				contents[i] = exportText(tokens, mayContainExplicitHyphens, modes[i].pConversionType, modes[i].pEntryPrefix + name, normalizationPool, statistics);
+			return contents;
+		}
+		for (final OutputMode mode : modes)
+			exportText(tokens, mayContainExplicitHyphens, mode.pConversionType, outputFile(mode, name), normalizationPool, statistics);
+		return null;
 	}
 	
-	private static Document loadDocument(final Path xmlFile) throws IOException {
+	/**
+	 * Writes the text of an input file for the given output modes
+	 * one chapter at a time
+	 * (see {@link KolimoConverter#writeChapters(Document, boolean, int[], WritableByteChannel[], FileStatistics)}),
+	 * with the output files of all modes open at the same time.
+	 * 
+	 * @return
+	 * the output of each mode if the output is written to a container,
+	 * otherwise {@code null}
+	 */
+	private static OutputBytes[] exportChapters(final String name, final InputBuffer input, final OutputMode[] modes, final boolean mayContainExplicitHyphens, final DtdCatalog catalog, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		final Document document = parseDocument(name, input, catalog, statistics);
+		final int[] conversionTypes = new int[modes.length];
+		final WritableByteChannel[] channels = new WritableByteChannel[modes.length];
+		final boolean toContainer = modes[0].pOutputDir == null;
+		String outputName = name;
 		try {
-			return XmlHelper.load(xmlFile);
-		} catch (final SAXException e) {
-			System.err.print("XML exception processing file ");
-			System.err.println(xmlFile.getFileName().toString());
-			throw new RuntimeException(e);
+			for (int i = 0; i < modes.length; i++) {
+				conversionTypes[i] = modes[i].pConversionType;
+				if (toContainer) {
+					channels[i] = new OutputBytes();
+				} else {
+					final Path outputFile = outputFile(modes[i], name);
+					outputName = outputFile.getFileName().toString();
+					channels[i] = openOutputFile(outputFile);
+				}
+			}
+			KolimoConverter.writeChapters(document, mayContainExplicitHyphens, conversionTypes, channels, statistics);
+			for (final WritableByteChannel channel : channels)
+				channel.close();
+		} catch (final IOException | UnsupportedDocumentException e) {
+			for (final WritableByteChannel channel : channels) {
+				if (channel == null)
+					continue;
+				try {
+					channel.close();
+				} catch (final IOException suppressed) {
+					e.addSuppressed(suppressed);
+				}
+			}
+			if (e instanceof UnsupportedDocumentException)
+				throw reportUnsupportedDocument(name, (UnsupportedDocumentException) e);
+			throw reportOutputError(outputName, (IOException) e);
+		}
+		if (!toContainer)
+			return null;
+		return Arrays.copyOf(channels, channels.length, OutputBytes[].class);
+	}
+	
+	/**
+	 * Resolves the name of an output file against the output directory of a mode,
+	 * creating the parent directories of the file
+	 * if the name is a path (as for files read from a container).
+	 */
+	private static Path outputFile(final OutputMode mode, final String name) throws IOException {
+		final Path outputFile = mode.pOutputDir.resolve(name);
+		if (name.indexOf('/') >= 0)
+			Files.createDirectories(outputFile.getParent());
+		return outputFile;
+	}
+	
+	/**
+	 * Opens an output file for writing.
+	 * An existing output file is replaced rather than truncated,
+	 * since it may be hard-linked to an entry of a result cache
+	 * (see {@link ResultCache}).
+	 */
+	private static FileChannel openOutputFile(final Path outputFile) throws IOException {
+		Files.deleteIfExists(outputFile);
+		return FileChannel.open(outputFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+	}
+	
+	/**
+	 * Writes the output of one input file to the output container
+	 * (in the order of the output modes), if any,
+	 * and records the file in the shard summary and the statistics, if any.
+	 */
+	private static void finishConversion(final ConvertedFile output, final OutputMode[] modes, final ContainerWriter outputContainer, final ShardSummary summary, final RunStatistics runStatistics) throws IOException {
+		if (summary != null)
+			summary.addFile(output.pName, output.pSize);
+		if (output.pContents != null) {
+			final long writeStart = System.nanoTime();
+			for (int i = 0; i < modes.length; i++) {
+				final String name = modes[i].pEntryPrefix + output.pName;
+				try {
+					outputContainer.writeEntry(name, output.pContents[i].pBytes, output.pContents[i].pLength);
+				} catch (final IOException e) {
+					synchronized (System.err) {
+						System.err.print("IO exception writing file ");
+						System.err.println(name);
+					}
+					throw e;
+				}
+			}
+			if (output.pStatistics != null)
+				output.pStatistics.addTime(Stage.WRITE, System.nanoTime() - writeStart);
+		}
+		if (runStatistics != null)
+			runStatistics.add(output.pStatistics);
+	}
+	
+	/**
+	 * Creates the {@link FileStatistics} of an input file
+	 * that has just been read,
+	 * or returns {@code null} if no statistics are collected.
+	 */
+	private static FileStatistics startStatistics(final RunStatistics runStatistics, final String name, final long readNanos, final int size) {
+		if (runStatistics == null)
+			return null;
+		final FileStatistics statistics = new FileStatistics(name);
+		statistics.addTime(Stage.READ, readNanos);
+		statistics.addBytes(Stage.READ, size, size);
+		return statistics;
+	}
+	
+	/**
+	 * Reads an input file completely,
+	 * so that reading it is separate from parsing it
+	 * (see {@link InputBuffer}).
+	 */
+	private static InputBuffer readInput(final Path xmlFile) throws IOException {
+		try {
+			return InputBuffer.read(xmlFile);
+		} catch (final IOException e) {
+			reportInputError(xmlFile.getFileName().toString());
+			throw e;
+		}
+	}
+	
+	private static String nextInputEntry(final ContainerReader inputContainer, final Path inputContainerFile) throws IOException {
+		try {
+			return inputContainer.nextEntry();
 		} catch (final IOException e) {
+			reportInputError(inputContainerFile.getFileName().toString());
+			throw e;
+		}
+	}
+	
+	private static byte[] readInputEntry(final ContainerReader inputContainer, final String name) throws IOException {
+		try {
+			return inputContainer.readEntry();
+		} catch (final IOException e) {
+			reportInputError(name);
+			throw e;
+		}
+	}
+	
+	private static void reportInputError(final String name) {
+		synchronized (System.err) {
 			System.err.print("IO exception processing file ");
-			System.err.println(xmlFile.getFileName().toString());
+			System.err.println(name);
+		}
+	}
+	
+	/**
+	 * Extracts the tokens of an input file
+	 * (for all conversion types)
+	 * into the {@link TokenBuffer} of the current thread
+	 * (see {@link KolimoConverter#extractTokens(InputStream, boolean, DtdCatalog, ForkJoinPool, FileStatistics)}),
+	 * reporting failures on {@link System#err}.
+	 */
+	private static TokenBuffer extractTokens(final String name, final InputBuffer input, final boolean streaming, final DtdCatalog catalog, final ForkJoinPool chapterPool, final FileStatistics statistics) throws IOException, UnsupportedDocumentException {
+		if (statistics != null)
+			statistics.addBytes(streaming ? Stage.EXTRACT : Stage.PARSE, input.size(), 0);
+		try {
+			return KolimoConverter.extractTokens(input.newInputStream(), streaming, catalog, chapterPool, statistics);
+		} catch (final UnsupportedDocumentException e) {
+			throw reportUnsupportedDocument(name, e);
+		} catch (final ConversionException e) {
+			throw reportXmlError(name, e);
+		} catch (final IOException e) {
+			reportInputError(name);
+			throw e;
+		}
+	}
+	
+	/**
+	 * Parses an input file into a DOM tree
+	 * (see {@link KolimoConverter#parse(InputStream, DtdCatalog, FileStatistics)}),
+	 * reporting failures on {@link System#err}.
+	 */
+	private static Document parseDocument(final String name, final InputBuffer input, final DtdCatalog catalog, final FileStatistics statistics) throws IOException {
+		if (statistics != null)
+			statistics.addBytes(Stage.PARSE, input.size(), 0);
+		try {
+			return KolimoConverter.parse(input.newInputStream(), catalog, statistics);
+		} catch (final ConversionException e) {
+			throw reportXmlError(name, e);
+		} catch (final IOException e) {
+			reportInputError(name);
 			throw e;
 		}
 	}
 	
-	private static void filter(final ArrayList<Token> tokens, final int conversionType) {
-		tokens.removeIf(token -> (token.getConversions() & conversionType) == 0);
+	private static UnsupportedDocumentException reportUnsupportedDocument(final String name, final UnsupportedDocumentException e) {
+		synchronized (System.err) {
+			System.err.print("Cannot convert ");
+			System.err.println(name);
+			System.err.print("No converter for root element \"");
+			System.err.print(e.getRootElementName());
+			System.err.println('"');
+		}
+		return new UnsupportedDocumentException(name, e.getRootElementName());
 	}
 	
-	private static void exportText(final String text, final Path outputFile) throws IOException {
-		try (final BufferedWriter writer = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
-			writer.write(text);
-			writer.flush();
+	private static RuntimeException reportXmlError(final String name, final ConversionException e) {
+		synchronized (System.err) {
+			System.err.print("XML exception processing file ");
+			System.err.println(name);
+		}
+		return new RuntimeException(e.getCause());
+	}
+	
+	/**
+	 * Normalizes the tokens of one conversion type and writes them to a file.
+	 * The tokens are only searched for explicit hyphens
+	 * if the prescan of the input file found any.
+	 */
+	private static void exportText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final Path outputFile, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException {
+		try (final FileChannel channel = openOutputFile(outputFile)) {
+			KolimoConverter.writeText(tokens, mayContainExplicitHyphens, conversionType, channel, normalizationPool, statistics);
 		} catch (final IOException e) {
+			throw reportOutputError(outputFile.getFileName().toString(), e);
+		}
+	}
+	
+	/**
+	 * Normalizes the tokens of one conversion type
+	 * and writes them to memory.
+	 */
+	private static OutputBytes exportText(final TokenBuffer tokens, final boolean mayContainExplicitHyphens, final int conversionType, final String outputName, final ForkJoinPool normalizationPool, final FileStatistics statistics) throws IOException {
+		final OutputBytes output = new OutputBytes();
+		try {
+			KolimoConverter.writeText(tokens, mayContainExplicitHyphens, conversionType, output, normalizationPool, statistics);
+		} catch (final IOException e) {
+			throw reportOutputError(outputName, e);
+		}
+		return output;
+	}
+	
+	private static IOException reportCacheError(final String name, final IOException e) {
+		synchronized (System.err) {
+			System.err.print("IO exception adding file to the result cache: ");
+			System.err.println(name);
+		}
+		return e;
+	}
+	
+	private static IOException reportOutputError(final String outputName, final IOException e) {
+		synchronized (System.err) {
 			System.err.print("IO exception writing file ");
-			System.err.println(outputFile.getFileName().toString());
-			throw e;
+			System.err.println(outputName);
 		}
+		return e;
 	}
 	
 }
@@ -0,0 +1,404 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.cache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import xmltotext.Version;
+import xmltotext.util.ContentHash;
+
+/**
+ * A directory of conversion results
+ * that can be shared by conversions into different output directories
+ * (and by several processes at the same time),
+ * so that an input file converted once need not be converted again.
+ * <p>
+ * Every entry holds the output of one input file for one conversion type.
+ * It is identified by the {@link ContentHash hash} of the content
+ * of the input file, the conversion type
+ * and the {@link Version#CONVERTER_VERSION version}
+ * of the conversion logic,
+ * so entries of other versions are never used
+ * (and are evicted eventually).
+ * An entry is stored in a file named after these
+ * in a subdirectory named after the first two hex digits of the hash.
+ * </p>
+ * <p>
+ * Entries are written to a temporary file first,
+ * which is then moved to the name of the entry atomically
+ * (where supported), so that no process ever sees an incomplete entry.
+ * When the total size of the entries exceeds the size limit,
+ * the entries used least recently
+ * (according to their modification time,
+ * which is updated whenever an entry is used)
+ * are deleted until the total size is below
+ * {@value #LOW_WATER_PERCENT} percent of the limit.
+ * Entries deleted while another process uses them
+ * are simply missing for that process.
+ * </p>
+ * <p>
+ * Cached results are copied to their destination,
+ * or hard-linked if requested
+ * (and supported by the file system).
+ * A hard-linked output file is the same file as the cache entry,
+ * so it must be replaced rather than modified in place
+ * (as {@link xmltotext.XmlToText} does).
+ * </p>
+ * <p>
+ * All methods of this class may be called concurrently.
+ * </p>
+ */
+public class ResultCache {
+	
+	private static final String TEMP_SUFFIX = ".tmp";
+	
+	/**
+	 * The age in milliseconds after which temporary files
+	 * (left behind by processes killed while inserting)
+	 * are deleted.
+	 */
+	private static final long TEMP_FILE_MAX_AGE = 60 * 60 * 1000;
+	
+	/**
+	 * The percentage of the size limit that the total size
+	 * of the entries is reduced to by evicting entries.
+	 */
+	private static final int LOW_WATER_PERCENT = 90;
+	
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+	
+	private static class EntryFile {
+		
+		final Path pPath;
+		final long pSize;
+		final long pLastUsed;
+		
+		EntryFile(final Path path, final long size, final long lastUsed) {
+			pPath = path;
+			pSize = size;
+			pLastUsed = lastUsed;
+		}
+		
+	}
+	
+	private final Path pDirectory;
+	private final long pMaxSize;
+	private final boolean pLink;
+	private final String pVariant;
+	
+	/**
+	 * The total size of the entries,
+	 * as of the last scan of the directory
+	 * plus the entries inserted by this instance since.
+	 */
+	private final AtomicLong pSize;
+	
+	private ResultCache(final Path directory, final long maxSize, final boolean link, final String variant, final long size) {
+		pDirectory = directory;
+		pMaxSize = maxSize;
+		pLink = link;
+		pVariant = variant;
+		pSize = new AtomicLong(size);
+	}
+	
+	/**
+	 * Opens a result cache directory,
+	 * creating it if it does not exist yet.
+	 * 
+	 * @param directory
+	 * the cache directory;
+	 * not {@code null}
+	 * 
+	 * @param maxSize
+	 * the size limit in bytes;
+	 * positive
+	 * 
+	 * @param link
+	 * whether cached results are hard-linked to their destination
+	 * instead of copied
+	 * 
+	 * @param variant
+	 * a name for the settings that affect the output
+	 * but are not part of the key of an entry
+	 * (entries of different variants are kept apart),
+	 * or the empty {@link String};
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the {@link ResultCache};
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static ResultCache open(final Path directory, final long maxSize, final boolean link, final String variant) throws IOException {
+		if (maxSize <= 0)
+			throw new IllegalArgumentException("invalid cache size: " + maxSize);
+		Files.createDirectories(directory);
+		long size = 0;
+		for (final EntryFile entry : scan(directory))
+			size += entry.pSize;
+		return new ResultCache(directory, maxSize, link, variant, size);
+	}
+	
+	/**
+	 * Copies (or hard-links) the cached output of an input file
+	 * for a conversion type to a file, replacing the file if it exists,
+	 * and marks the entry as used.
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the content of the input file;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @param target
+	 * the file to copy the output to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * {@code true} if the output has been copied,
+	 * {@code false} if it is not in the cache
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public boolean copyTo(final byte[] hash, final int conversionType, final Path target) throws IOException {
+		final Path entry = entryPath(hash, conversionType);
+		try {
+			if (!pLink || !link(target, entry))
+				Files.copy(entry, target, StandardCopyOption.REPLACE_EXISTING);
+		} catch (final NoSuchFileException e) {
+			if (Files.exists(entry))
+				throw e;
+			return false;
+		}
+		touch(entry);
+		return true;
+	}
+	
+	/**
+	 * Reads the cached output of an input file for a conversion type
+	 * and marks the entry as used.
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the content of the input file;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @return
+	 * the output,
+	 * or {@code null} if it is not in the cache
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public byte[] read(final byte[] hash, final int conversionType) throws IOException {
+		final Path entry = entryPath(hash, conversionType);
+		final byte[] content;
+		try {
+			content = Files.readAllBytes(entry);
+		} catch (final NoSuchFileException e) {
+			return null;
+		}
+		touch(entry);
+		return content;
+	}
+	
+	/**
+	 * Adds the output of an input file for a conversion type
+	 * to the cache by copying (or hard-linking) a file,
+	 * replacing any entry with the same key.
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the content of the input file;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @param source
+	 * the file containing the complete output;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public void put(final byte[] hash, final int conversionType, final Path source) throws IOException {
+		final Path entry = entryPath(hash, conversionType);
+		final Path tempFile = tempPath(entry);
+		if (!pLink || !link(tempFile, source))
+			Files.copy(source, tempFile);
+		insert(tempFile, entry);
+	}
+	
+	/**
+	 * Adds the output of an input file for a conversion type
+	 * to the cache,
+	 * replacing any entry with the same key.
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the content of the input file;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @param content
+	 * an array containing the output;
+	 * not {@code null}
+	 * 
+	 * @param length
+	 * the length of the output at the start of the array
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public void put(final byte[] hash, final int conversionType, final byte[] content, final int length) throws IOException {
+		final Path entry = entryPath(hash, conversionType);
+		final Path tempFile = tempPath(entry);
+		try (final OutputStream output = Files.newOutputStream(tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+			output.write(content, 0, length);
+		}
+		insert(tempFile, entry);
+	}
+	
+	private Path entryPath(final byte[] hash, final int conversionType) {
+		final StringBuilder sb = new StringBuilder(2 * hash.length + 16);
+		for (final byte b : hash)
+			sb.append(HEX_DIGITS[(b >> 4) & 0xF]).append(HEX_DIGITS[b & 0xF]);
+		final String subdirectory = sb.substring(0, 2);
+		sb.append('-').append(conversionType).append("-v").append(Version.CONVERTER_VERSION);
+		if (!pVariant.isEmpty())
+			sb.append('-').append(pVariant);
+		return pDirectory.resolve(subdirectory).resolve(sb.toString());
+	}
+	
+	private static Path tempPath(final Path entry) throws IOException {
+		Files.createDirectories(entry.getParent());
+		return entry.resolveSibling(entry.getFileName() + "." + Long.toHexString(ThreadLocalRandom.current().nextLong()) + TEMP_SUFFIX);
+	}
+	
+	/**
+	 * Hard-links a file,
+	 * replacing the link if it exists.
+	 * 
+	 * @return
+	 * {@code true} if the file has been linked,
+	 * {@code false} if the file system does not support
+	 * linking the file there
+	 */
+	private static boolean link(final Path link, final Path existing) throws IOException {
+		// the file must be replaced rather than truncated,
+		// since it may be linked to an entry
+		Files.deleteIfExists(link);
+		try {
+			Files.createLink(link, existing);
+			return true;
+		} catch (final NoSuchFileException | FileAlreadyExistsException e) {
+			throw e;
+		} catch (final UnsupportedOperationException | FileSystemException e) {
+			// for example, across file systems
+			return false;
+		}
+	}
+	
+	private void insert(final Path tempFile, final Path entry) throws IOException {
+		final long size = Files.size(tempFile);
+		try {
+			Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, entry, StandardCopyOption.REPLACE_EXISTING);
+		}
+		// an entry replaced by one with the same key is counted twice
+		// until the next scan, which only evicts earlier
+		if (pSize.addAndGet(size) > pMaxSize)
+			evict();
+	}
+	
+	private static void touch(final Path entry) throws IOException {
+		try {
+			Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+		} catch (final NoSuchFileException e) {
+			// evicted in the meantime
+		}
+	}
+	
+	/**
+	 * Deletes the entries used least recently
+	 * until the total size is below the low-water mark.
+	 * The directory is scanned first,
+	 * since other processes may have added or deleted entries.
+	 */
+	private synchronized void evict() throws IOException {
+		final ArrayList<EntryFile> entries = scan(pDirectory);
+		long size = 0;
+		for (final EntryFile entry : entries)
+			size += entry.pSize;
+		if (size > pMaxSize) {
+			entries.sort((entry1, entry2) -> Long.compare(entry1.pLastUsed, entry2.pLastUsed));
+			final long lowWater = pMaxSize / 100 * LOW_WATER_PERCENT;
+			for (final EntryFile entry : entries) {
+				if (size <= lowWater)
+					break;
+				Files.deleteIfExists(entry.pPath);
+				size -= entry.pSize;
+			}
+		}
+		pSize.set(size);
+	}
+	
+	/**
+	 * Lists the entries of a cache directory,
+	 * deleting outdated temporary files.
+	 */
+	private static ArrayList<EntryFile> scan(final Path directory) throws IOException {
+		final ArrayList<EntryFile> entries = new ArrayList<>();
+		final long now = System.currentTimeMillis();
+		try (final DirectoryStream<Path> subdirectories = Files.newDirectoryStream(directory, Files::isDirectory)) {
+			for (final Path subdirectory : subdirectories) {
+				try (final DirectoryStream<Path> files = Files.newDirectoryStream(subdirectory)) {
+					for (final Path file : files) {
+						final BasicFileAttributes attributes;
+						try {
+							attributes = Files.readAttributes(file, BasicFileAttributes.class);
+						} catch (final NoSuchFileException e) {
+							// deleted in the meantime
+							continue;
+						}
+						final long lastUsed = attributes.lastModifiedTime().toMillis();
+						if (!file.getFileName().toString().endsWith(TEMP_SUFFIX))
+							entries.add(new EntryFile(file, attributes.size(), lastUsed));
+						else if (now - lastUsed > TEMP_FILE_MAX_AGE)
+							Files.deleteIfExists(file);
+					}
+				} catch (final NoSuchFileException e) {
+					// deleted in the meantime
+				}
+			}
+		}
+		return entries;
+	}
+	
+}
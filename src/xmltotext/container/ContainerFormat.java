@@ -0,0 +1,209 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The formats of files that can be used instead of a directory
+ * to read input files from or to write output files to.
+ * <p>
+ * The format of a file is recognized by its extension
+ * (see {@link #of(Path)}).
+ * </p>
+ */
+public enum ContainerFormat {
+	
+	/**
+	 * A ZIP archive ({@code .zip}).
+	 */
+	ZIP(".zip"),
+	
+	/**
+	 * A tar archive in the POSIX ustar or pax format,
+	 * compressed with gzip ({@code .tar.gz} or {@code .tgz}).
+	 * GNU tar archives can be read, too.
+	 */
+	TAR_GZ(".tar.gz", ".tgz"),
+	
+	/**
+	 * An uncompressed tar archive ({@code .tar}),
+	 * see {@link #TAR_GZ}.
+	 */
+	TAR(".tar"),
+	
+	/**
+	 * A single file compressed with gzip ({@code .gz}).
+	 * The name of the file is the name of the container
+	 * without the extension;
+	 * a container of this format can hold only one file.
+	 */
+	GZ(".gz");
+	
+	private final String[] pExtensions;
+	
+	private ContainerFormat(final String... extensions) {
+		pExtensions = extensions;
+	}
+	
+	/**
+	 * Determines the format of a container file by its extension
+	 * (ignoring case).
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file,
+	 * which need not exist;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the {@link ContainerFormat} of the file,
+	 * or {@code null} if the extension does not belong to any format
+	 */
+	public static ContainerFormat of(final Path file) {
+		final String name = baseName(file);
+		for (final ContainerFormat format : values()) {
+			if (format.extensionLength(name) > 0)
+				return format;
+		}
+		return null;
+	}
+	
+	/**
+	 * Opens a container file of this format for reading.
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link ContainerReader};
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public ContainerReader openReader(final Path file) throws IOException {
+		switch (this) {
+			case ZIP:
+				return new ZipContainerReader(file);
+			case TAR_GZ:
+				return TarContainerReader.open(file, true);
+			case TAR:
+				return TarContainerReader.open(file, false);
+			case GZ:
+				final String name = baseName(file);
+				return new GzipContainerReader(file, name.substring(0, name.length() - extensionLength(name)));
+			default:
+				throw new IllegalStateException();
+		}
+	}
+	
+	/**
+	 * Creates a container file of this format,
+	 * replacing the file if it exists.
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link ContainerWriter};
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public ContainerWriter createWriter(final Path file) throws IOException {
+		switch (this) {
+			case ZIP:
+				return new ZipContainerWriter(file);
+			case TAR_GZ:
+				return TarContainerWriter.create(file, true);
+			case TAR:
+				return TarContainerWriter.create(file, false);
+			case GZ:
+				return new GzipContainerWriter(file);
+			default:
+				throw new IllegalStateException();
+		}
+	}
+	
+	private int extensionLength(final String name) {
+		final String lowerCaseName = name.toLowerCase(Locale.ROOT);
+		for (final String extension : pExtensions) {
+			if (lowerCaseName.endsWith(extension) && (lowerCaseName.length() > extension.length()))
+				return extension.length();
+		}
+		return 0;
+	}
+	
+	private static String baseName(final Path file) {
+		final Path fileName = file.getFileName();
+		return fileName == null ? "" : fileName.toString();
+	}
+	
+	/**
+	 * Checks that the name of an entry read from a container
+	 * is a relative path that stays inside the directory it is resolved against,
+	 * and normalizes its separators.
+	 * 
+	 * @return
+	 * the name with {@code /} as separator
+	 * and without empty or {@code .} segments
+	 * 
+	 * @throws IOException
+	 * if the name is empty, absolute or contains {@code ..} segments
+	 */
+	static String checkEntryName(final String name) throws IOException {
+		final StringBuilder sb = new StringBuilder(name.length());
+		for (final String segment : name.replace('\\', '/').split("/")) {
+			if (segment.isEmpty() || segment.equals("."))
+				continue;
+			if (segment.equals("..") || segment.indexOf(':') >= 0)
+				throw new IOException("invalid entry name in container: " + name);
+			if (sb.length() > 0)
+				sb.append('/');
+			sb.append(segment);
+		}
+		if ((sb.length() == 0) || name.startsWith("/") || name.startsWith("\\"))
+			throw new IOException("invalid entry name in container: " + name);
+		return sb.toString();
+	}
+	
+	/**
+	 * Reads the content of an entry completely.
+	 * 
+	 * @param size
+	 * the size of the content in bytes,
+	 * or a negative number if it is unknown
+	 */
+	static byte[] readEntry(final InputStream inputStream, final long size, final String name) throws IOException {
+		if (size > Integer.MAX_VALUE - 8)
+			throw new IOException("entry too large: " + name);
+		if (size < 0) {
+			final ByteArrayOutputStream content = new ByteArrayOutputStream();
+			final byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = inputStream.read(buffer)) >= 0)
+				content.write(buffer, 0, n);
+			return content.toByteArray();
+		}
+		final byte[] content = new byte[(int) size];
+		int offset = 0;
+		while (offset < content.length) {
+			final int n = inputStream.read(content, offset, content.length - offset);
+			if (n < 0)
+				throw new IOException("unexpected end of entry: " + name);
+			offset += n;
+		}
+		return content;
+	}
+	
+}
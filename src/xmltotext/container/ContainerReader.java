@@ -0,0 +1,53 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Reads the files in a container (see {@link ContainerFormat})
+ * one after the other, in the order in which they are stored.
+ * Entries other than regular files (such as directories) are skipped.
+ * <p>
+ * Instances of this interface are not thread-safe.
+ * </p>
+ */
+public interface ContainerReader extends Closeable {
+	
+	/**
+	 * Advances to the next file in the container.
+	 * 
+	 * @return
+	 * the name of the file,
+	 * a relative path with {@code /} as separator
+	 * that does not contain {@code ..} segments;
+	 * or {@code null} if there are no more files
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs,
+	 * if the container is damaged
+	 * or if the name of the file is not a relative path
+	 */
+	String nextEntry() throws IOException;
+	
+	/**
+	 * Reads the content of the current file completely.
+	 * May only be called once per file,
+	 * after {@link #nextEntry()} has returned its name.
+	 * 
+	 * @return
+	 * the content of the file;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs,
+	 * if the container is damaged
+	 * or if the file is larger than 2 GiB
+	 */
+	byte[] readEntry() throws IOException;
+	
+}
@@ -0,0 +1,43 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Writes files into a container (see {@link ContainerFormat})
+ * one after the other.
+ * The container is complete only after {@link #close()} has been called.
+ * <p>
+ * Instances of this interface are not thread-safe.
+ * </p>
+ */
+public interface ContainerWriter extends Closeable {
+	
+	/**
+	 * Writes a file into the container.
+	 * 
+	 * @param name
+	 * the name of the file,
+	 * a relative path with {@code /} as separator;
+	 * not {@code null}
+	 * 
+	 * @param content
+	 * an array containing the content of the file,
+	 * starting at index 0;
+	 * not {@code null}
+	 * 
+	 * @param length
+	 * the length of the content in bytes
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * or if the container cannot hold another file
+	 */
+	void writeEntry(String name, byte[] content, int length) throws IOException;
+	
+}
@@ -0,0 +1,44 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the single file compressed in a gzip file.
+ */
+class GzipContainerReader implements ContainerReader {
+	
+	private final InputStream pInputStream;
+	private String pName;
+	
+	public GzipContainerReader(final Path file, final String name) throws IOException {
+		pInputStream = new GZIPInputStream(Files.newInputStream(file), 1 << 16);
+		pName = name;
+	}
+	
+	@Override
+	public String nextEntry() throws IOException {
+		final String name = pName;
+		pName = null;
+		return name == null ? null : ContainerFormat.checkEntryName(name);
+	}
+	
+	@Override
+	public byte[] readEntry() throws IOException {
+		return ContainerFormat.readEntry(pInputStream, -1, "");
+	}
+	
+	@Override
+	public void close() throws IOException {
+		pInputStream.close();
+	}
+	
+}
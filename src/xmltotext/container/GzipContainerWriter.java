@@ -0,0 +1,40 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses a single file into a gzip file.
+ * The name of the file is not stored.
+ */
+class GzipContainerWriter implements ContainerWriter {
+	
+	private final OutputStream pOutputStream;
+	private boolean pWritten = false;
+	
+	public GzipContainerWriter(final Path file) throws IOException {
+		pOutputStream = new GZIPOutputStream(Files.newOutputStream(file), 1 << 16);
+	}
+	
+	@Override
+	public void writeEntry(final String name, final byte[] content, final int length) throws IOException {
+		if (pWritten)
+			throw new IOException("a .gz file can only hold a single file");
+		pWritten = true;
+		pOutputStream.write(content, 0, length);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		pOutputStream.close();
+	}
+	
+}
@@ -0,0 +1,270 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the regular files in a (possibly gzip-compressed) tar archive.
+ * <p>
+ * The archive is read sequentially, so this works
+ * for compressed archives as well as for uncompressed ones.
+ * Besides the POSIX ustar format, this class understands
+ * the file names and sizes of pax extended headers
+ * and GNU long file names,
+ * which covers archives written by the usual tools.
+ * All other entries (directories, links etc.) and attributes are skipped.
+ * </p>
+ */
+class TarContainerReader implements ContainerReader {
+	
+	static final int BLOCK_SIZE = 512;
+	
+	private final InputStream pInputStream;
+	private final byte[] pHeader = new byte[BLOCK_SIZE];
+	
+	/**
+	 * The size of the content of the current file.
+	 */
+	private long pSize = 0;
+	
+	/**
+	 * The number of bytes to skip to get to the next header.
+	 */
+	private long pRemaining = 0;
+	
+	private TarContainerReader(final InputStream inputStream) {
+		pInputStream = inputStream;
+	}
+	
+	static TarContainerReader open(final Path file, final boolean gzip) throws IOException {
+		final InputStream inputStream = Files.newInputStream(file);
+		try {
+			return new TarContainerReader(gzip ? new GZIPInputStream(inputStream, 1 << 16) : new BufferedInputStream(inputStream, 1 << 16));
+		} catch (final IOException e) {
+			inputStream.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public String nextEntry() throws IOException {
+		skipFully(pRemaining);
+		pRemaining = 0;
+		String longName = null;
+		String paxPath = null;
+		long paxSize = -1;
+		while (true) {
+			if (!readHeader())
+				return null;
+			final long size = parseNumber(124, 12);
+			final byte typeFlag = pHeader[156];
+			switch (typeFlag) {
+				case 'L':
+					// GNU long name of the next entry
+					longName = trimNuls(new String(readData(size), StandardCharsets.UTF_8));
+					break;
+				case 'x':
+					// pax extended header of the next entry
+					final byte[] records = readData(size);
+					final String path = paxRecord(records, "path");
+					if (path != null)
+						paxPath = path;
+					final String sizeString = paxRecord(records, "size");
+					if (sizeString != null) {
+						try {
+							paxSize = Long.parseLong(sizeString);
+						} catch (final NumberFormatException e) {
+							throw new IOException("damaged tar archive: invalid size " + sizeString);
+						}
+					}
+					break;
+				case 'g':
+					// pax global header
+					readData(size);
+					break;
+				case '0':
+				case 0:
+				case '7':
+					// regular file
+					pSize = paxSize >= 0 ? paxSize : size;
+					pRemaining = padded(pSize);
+					final String name = paxPath != null ? paxPath : longName != null ? longName : headerName();
+					return ContainerFormat.checkEntryName(name);
+				default:
+					skipFully(padded(size));
+					longName = null;
+					paxPath = null;
+					paxSize = -1;
+					break;
+			}
+		}
+	}
+	
+	@Override
+	public byte[] readEntry() throws IOException {
+		final byte[] content = readData(pSize);
+		pRemaining = 0;
+		return content;
+	}
+	
+	@Override
+	public void close() throws IOException {
+		pInputStream.close();
+	}
+	
+	/**
+	 * Reads the next header block.
+	 * 
+	 * @return
+	 * {@code false} at the end of the archive
+	 */
+	private boolean readHeader() throws IOException {
+		int offset = 0;
+		while (offset < BLOCK_SIZE) {
+			final int n = pInputStream.read(pHeader, offset, BLOCK_SIZE - offset);
+			if (n < 0) {
+				if (offset == 0)
+					return false; // missing end-of-archive blocks
+				throw new EOFException("damaged tar archive: incomplete header");
+			}
+			offset += n;
+		}
+		long checksum = 0;
+		long signedChecksum = 0;
+		for (int i = 0; i < BLOCK_SIZE; i++) {
+			final byte b = (i >= 148) && (i < 156) ? (byte) ' ' : pHeader[i];
+			checksum += b & 0xFF;
+			signedChecksum += b;
+		}
+		if (checksum == 8 * ' ') {
+			// a block of zeros marks the end of the archive
+			return false;
+		}
+		final long storedChecksum = parseNumber(148, 8);
+		if ((storedChecksum != checksum) && (storedChecksum != signedChecksum))
+			throw new IOException("damaged tar archive or not a tar archive: checksum mismatch");
+		return true;
+	}
+	
+	/**
+	 * Returns the file name stored in the current header,
+	 * including the prefix of the ustar format.
+	 */
+	private String headerName() {
+		final String name = headerString(0, 100);
+		if ((pHeader[257] != 'u') || (pHeader[258] != 's') || (pHeader[259] != 't') || (pHeader[260] != 'a') || (pHeader[261] != 'r'))
+			return name;
+		final String prefix = headerString(345, 155);
+		return prefix.isEmpty() ? name : prefix + '/' + name;
+	}
+	
+	private String headerString(final int offset, final int length) {
+		int end = offset;
+		while ((end < offset + length) && (pHeader[end] != 0))
+			end++;
+		return new String(pHeader, offset, end - offset, StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Parses a numeric header field,
+	 * which is either an octal number (terminated by a blank or NUL)
+	 * or, if the high bit of the first byte is set,
+	 * a big-endian binary number (a GNU extension).
+	 */
+	private long parseNumber(final int offset, final int length) throws IOException {
+		if ((pHeader[offset] & 0x80) != 0) {
+			long value = pHeader[offset] & 0x7F;
+			for (int i = offset + 1; i < offset + length; i++) {
+				if (value > (Long.MAX_VALUE >> 8))
+					throw new IOException("damaged tar archive: number too large");
+				value = (value << 8) | (pHeader[i] & 0xFF);
+			}
+			return value;
+		}
+		int i = offset;
+		while ((i < offset + length) && (pHeader[i] == ' '))
+			i++;
+		long value = 0;
+		for (; i < offset + length; i++) {
+			final byte b = pHeader[i];
+			if ((b == 0) || (b == ' '))
+				break;
+			if ((b < '0') || (b > '7'))
+				throw new IOException("damaged tar archive or not a tar archive: invalid number");
+			value = (value << 3) | (b - '0');
+		}
+		return value;
+	}
+	
+	/**
+	 * Reads the data following a header,
+	 * including the padding to the next block.
+	 */
+	private byte[] readData(final long size) throws IOException {
+		final byte[] data = ContainerFormat.readEntry(pInputStream, size, "");
+		skipFully(padded(size) - size);
+		return data;
+	}
+	
+	private void skipFully(final long n) throws IOException {
+		long remaining = n;
+		while (remaining > 0) {
+			final long skipped = pInputStream.skip(remaining);
+			if (skipped > 0) {
+				remaining -= skipped;
+			} else {
+				if (pInputStream.read() < 0)
+					throw new EOFException("damaged tar archive: unexpected end");
+				remaining--;
+			}
+		}
+	}
+	
+	static long padded(final long size) {
+		return (size + BLOCK_SIZE - 1) / BLOCK_SIZE * BLOCK_SIZE;
+	}
+	
+	private static String trimNuls(final String s) {
+		int end = s.length();
+		while ((end > 0) && (s.charAt(end - 1) == 0))
+			end--;
+		return s.substring(0, end);
+	}
+	
+	/**
+	 * Returns the value of a record in a pax extended header,
+	 * or {@code null} if there is none.
+	 * Each record has the form {@code "length key=value\n"},
+	 * where the length is that of the whole record in bytes.
+	 */
+	private static String paxRecord(final byte[] bytes, final String key) throws IOException {
+		String value = null;
+		int offset = 0;
+		while ((offset < bytes.length) && (bytes[offset] != 0)) {
+			int i = offset;
+			int length = 0;
+			while ((i < bytes.length) && (bytes[i] >= '0') && (bytes[i] <= '9'))
+				length = length * 10 + (bytes[i++] - '0');
+			if ((i == bytes.length) || (bytes[i] != ' ') || (length <= i - offset) || (offset + length > bytes.length))
+				throw new IOException("damaged tar archive: invalid pax header");
+			final String record = new String(bytes, i + 1, offset + length - i - 2, StandardCharsets.UTF_8);
+			final int equals = record.indexOf('=');
+			if ((equals >= 0) && record.substring(0, equals).equals(key))
+				value = record.substring(equals + 1);
+			offset += length;
+		}
+		return value;
+	}
+	
+}
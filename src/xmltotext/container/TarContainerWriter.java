@@ -0,0 +1,165 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes files into a (possibly gzip-compressed) tar archive
+ * in the POSIX ustar format.
+ * File names that do not fit into a ustar header
+ * are stored in a pax extended header.
+ * All files get the permissions {@code rw-r--r--}
+ * and the current time as modification time.
+ */
+class TarContainerWriter implements ContainerWriter {
+	
+	private static final int BLOCK_SIZE = TarContainerReader.BLOCK_SIZE;
+	
+	/**
+	 * Archives are padded to a multiple of this size
+	 * (the default record size of tar implementations).
+	 */
+	private static final int RECORD_SIZE = 20 * BLOCK_SIZE;
+	
+	private static final byte[] PAX_HEADER_NAME = "././@PaxHeader".getBytes(StandardCharsets.US_ASCII);
+	
+	private static final byte[] ZEROS = new byte[BLOCK_SIZE];
+	
+	private final OutputStream pOutputStream;
+	private final byte[] pHeader = new byte[BLOCK_SIZE];
+	private final long pModificationTime = System.currentTimeMillis() / 1000;
+	private long pLength = 0;
+	
+	private TarContainerWriter(final OutputStream outputStream) {
+		pOutputStream = outputStream;
+	}
+	
+	static TarContainerWriter create(final Path file, final boolean gzip) throws IOException {
+		final OutputStream outputStream = Files.newOutputStream(file);
+		try {
+			return new TarContainerWriter(new BufferedOutputStream(gzip ? new GZIPOutputStream(outputStream, 1 << 16) : outputStream, 1 << 16));
+		} catch (final IOException e) {
+			outputStream.close();
+			throw e;
+		}
+	}
+	
+	@Override
+	public void writeEntry(final String name, final byte[] content, final int length) throws IOException {
+		final byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+		int split = -1;
+		if (nameBytes.length > 100) {
+			// try to split the name into prefix and name fields at a slash
+			for (int i = nameBytes.length - 1; i >= 0; i--) {
+				if ((nameBytes[i] == '/') && (i > 0) && (i <= 155) && (i < nameBytes.length - 1) && (nameBytes.length - i - 1 <= 100)) {
+					split = i;
+					break;
+				}
+			}
+			if (split < 0) {
+				final byte[] record = paxRecord("path", name);
+				writeHeader((byte) 'x', PAX_HEADER_NAME, -1, record.length);
+				writeData(record, record.length);
+			}
+		}
+		writeHeader((byte) '0', nameBytes, split, length);
+		writeData(content, length);
+	}
+	
+	@Override
+	public void close() throws IOException {
+		try {
+			// two blocks of zeros mark the end of the archive
+			final long end = pLength + 2 * BLOCK_SIZE;
+			final long padded = (end + RECORD_SIZE - 1) / RECORD_SIZE * RECORD_SIZE;
+			for (long i = pLength; i < padded; i += BLOCK_SIZE)
+				pOutputStream.write(ZEROS);
+		} finally {
+			pOutputStream.close();
+		}
+	}
+	
+	/**
+	 * Writes a header block.
+	 * 
+	 * @param nameBytes
+	 * the (UTF-8 encoded) file name;
+	 * the first 100 bytes are written if it is longer
+	 * 
+	 * @param split
+	 * the index of the slash at which the name is split
+	 * into the prefix and the name field,
+	 * or -1 to write the name into the name field only
+	 */
+	private void writeHeader(final byte type, final byte[] nameBytes, final int split, final long size) throws IOException {
+		Arrays.fill(pHeader, (byte) 0);
+		if (split < 0) {
+			System.arraycopy(nameBytes, 0, pHeader, 0, Math.min(nameBytes.length, 100));
+		} else {
+			System.arraycopy(nameBytes, split + 1, pHeader, 0, nameBytes.length - split - 1);
+			System.arraycopy(nameBytes, 0, pHeader, 345, split);
+		}
+		writeOctal(100, 8, 0644);
+		writeOctal(108, 8, 0);
+		writeOctal(116, 8, 0);
+		writeOctal(124, 12, size);
+		writeOctal(136, 12, pModificationTime);
+		pHeader[156] = type;
+		System.arraycopy("ustar\00000".getBytes(StandardCharsets.US_ASCII), 0, pHeader, 257, 8);
+		Arrays.fill(pHeader, 148, 156, (byte) ' ');
+		long checksum = 0;
+		for (final byte b : pHeader)
+			checksum += b & 0xFF;
+		writeOctal(148, 7, checksum);
+		pOutputStream.write(pHeader);
+		pLength += BLOCK_SIZE;
+	}
+	
+	/**
+	 * Writes a number as a NUL-terminated octal number
+	 * padded with leading zeros.
+	 */
+	private void writeOctal(final int offset, final int length, final long value) throws IOException {
+		final String digits = Long.toOctalString(value);
+		if (digits.length() > length - 1)
+			throw new IOException("file too large for a tar archive");
+		for (int i = 0; i < length - 1 - digits.length(); i++)
+			pHeader[offset + i] = '0';
+		for (int i = 0; i < digits.length(); i++)
+			pHeader[offset + length - 1 - digits.length() + i] = (byte) digits.charAt(i);
+		pHeader[offset + length - 1] = 0;
+	}
+	
+	private void writeData(final byte[] data, final int length) throws IOException {
+		pOutputStream.write(data, 0, length);
+		final int padding = (int) (TarContainerReader.padded(length) - length);
+		pOutputStream.write(ZEROS, 0, padding);
+		pLength += length + padding;
+	}
+	
+	/**
+	 * Encodes a record of a pax extended header,
+	 * {@code "length key=value\n"},
+	 * where the length is that of the whole record in bytes
+	 * (including the digits of the length itself).
+	 */
+	private static byte[] paxRecord(final String key, final String value) {
+		final int length = (" " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8).length;
+		int totalLength = length + Integer.toString(length).length();
+		if (Integer.toString(totalLength).length() > Integer.toString(length).length())
+			totalLength++;
+		return (totalLength + " " + key + "=" + value + "\n").getBytes(StandardCharsets.UTF_8);
+	}
+	
+}
@@ -0,0 +1,55 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads the files in a ZIP archive
+ * in the order of its central directory.
+ */
+class ZipContainerReader implements ContainerReader {
+	
+	private final ZipFile pZipFile;
+	private final Enumeration<? extends ZipEntry> pEntries;
+	private ZipEntry pEntry = null;
+	
+	public ZipContainerReader(final Path file) throws IOException {
+		pZipFile = new ZipFile(file.toFile());
+		pEntries = pZipFile.entries();
+	}
+	
+	@Override
+	public String nextEntry() throws IOException {
+		while (pEntries.hasMoreElements()) {
+			final ZipEntry entry = pEntries.nextElement();
+			if (!entry.isDirectory()) {
+				pEntry = entry;
+				return ContainerFormat.checkEntryName(entry.getName());
+			}
+		}
+		pEntry = null;
+		return null;
+	}
+	
+	@Override
+	public byte[] readEntry() throws IOException {
+		try (final InputStream inputStream = pZipFile.getInputStream(pEntry)) {
+			return ContainerFormat.readEntry(inputStream, pEntry.getSize(), pEntry.getName());
+		}
+	}
+	
+	@Override
+	public void close() throws IOException {
+		pZipFile.close();
+	}
+	
+}
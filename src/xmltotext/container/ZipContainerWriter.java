@@ -0,0 +1,38 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.container;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes files into a ZIP archive, compressing them with deflate.
+ */
+class ZipContainerWriter implements ContainerWriter {
+	
+	private final ZipOutputStream pOutputStream;
+	
+	public ZipContainerWriter(final Path file) throws IOException {
+		pOutputStream = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+	}
+	
+	@Override
+	public void writeEntry(final String name, final byte[] content, final int length) throws IOException {
+		pOutputStream.putNextEntry(new ZipEntry(name));
+		pOutputStream.write(content, 0, length);
+		pOutputStream.closeEntry();
+	}
+	
+	@Override
+	public void close() throws IOException {
+		pOutputStream.close();
+	}
+	
+}
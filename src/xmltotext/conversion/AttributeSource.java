@@ -0,0 +1,31 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.conversion;
+
+/**
+ * Provides access to the attributes of an XML element,
+ * independently of how the element is represented
+ * (a DOM node or the current event of a streaming parser).
+ */
+@FunctionalInterface
+public interface AttributeSource {
+	
+	/**
+	 * Returns the value of the attribute with the specified name.
+	 * 
+	 * @param attributeName
+	 * the (qualified) name of the attribute,
+	 * as it appears in the XML representation of the element;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the value of the attribute;
+	 * or {@code null} if the element does not have
+	 * an attribute with the specified name
+	 */
+	String getAttributeValue(String attributeName);
+	
+}
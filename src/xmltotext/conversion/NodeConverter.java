@@ -15,6 +15,18 @@ import xmltotext.tokens.Token;
  * Can convert single XML nodes to
  * {@link Token}
  * instances for the conversion to plain text.
+ * <p>
+ * Nodes can be passed either as DOM {@link Node} instances
+ * (see {@link #action(Node, Consumer)})
+ * or, for streaming extraction without a DOM,
+ * as element names with their attributes
+ * (see {@link #elementAction(String, AttributeSource, Consumer)})
+ * and text contents
+ * (see {@link #textAction(String, Consumer)}).
+ * Implementations must generate the same tokens
+ * and return equivalent {@link NodeAction} instances
+ * in both cases.
+ * </p>
  */
 public interface NodeConverter {
 	
@@ -51,4 +63,65 @@ public interface NodeConverter {
 	 */
 	NodeAction action(Node node, Consumer<? super Token> tokenConsumer);
 	
+	/**
+	 * Processes an XML element, generating tokens for the conversion
+	 * to plain text, and returns a
+	 * {@link NodeAction} specifying how to proceed with this element.
+	 * <p>
+	 * This method is the counterpart of
+	 * {@link #action(Node, Consumer)}
+	 * for element nodes that are not available as DOM {@link Node}
+	 * instances. The processing is shallow, in the same way.
+	 * </p>
+	 * 
+	 * @param elementName
+	 * the (qualified) name of the element,
+	 * as returned by {@link Node#getNodeName()}
+	 * for a DOM {@link Node};
+	 * not {@code null}
+	 * 
+	 * @param attributes
+	 * an {@link AttributeSource} providing the attributes
+	 * of the element;
+	 * only valid during the call to this method;
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * a {@link Consumer} to consume tokens
+	 * generated for this element;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link NodeAction} specifying how to proceed with this element;
+	 * not {@code null}
+	 * 
+	 * @see NodeAction
+	 */
+	NodeAction elementAction(String elementName, AttributeSource attributes, Consumer<? super Token> tokenConsumer);
+	
+	/**
+	 * Processes the contents of an XML text node
+	 * (or CDATA section), generating tokens for the conversion
+	 * to plain text.
+	 * <p>
+	 * This method is the counterpart of
+	 * {@link #action(Node, Consumer)}
+	 * for text nodes that are not available as DOM {@link Node}
+	 * instances. Text nodes have no child nodes,
+	 * so there is no {@link NodeAction} to return.
+	 * </p>
+	 * 
+	 * @param text
+	 * the complete text of the node,
+	 * as returned by {@link Node#getNodeValue()}
+	 * for a DOM {@link Node};
+	 * not {@code null}
+	 * 
+	 * @param tokenConsumer
+	 * a {@link Consumer} to consume tokens
+	 * generated for the text;
+	 * not {@code null}
+	 */
+	void textAction(String text, Consumer<? super Token> tokenConsumer);
+	
 }
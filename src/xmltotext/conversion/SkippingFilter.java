@@ -0,0 +1,201 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.conversion;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.XMLFilterImpl;
+
+import xmltotext.tokens.Token;
+
+/**
+ * A SAX filter that drops the content of elements
+ * whose trees a {@link NodeConverter} would skip,
+ * so that no DOM nodes are built for them
+ * (see {@link xmltotext.util.XmlHelper#load(java.io.InputStream, org.xml.sax.XMLFilter, xmltotext.util.DtdCatalog)}).
+ * <p>
+ * The {@link NodeConverter} is selected by the name of the root element.
+ * For every element, the filter calls
+ * {@link NodeConverter#elementAction(String, AttributeSource, Consumer)}
+ * with the name and attributes of the element
+ * (discarding the tokens).
+ * If it returns {@link NodeAction#SKIP}, the element itself is passed on
+ * with its attributes, but its content is dropped.
+ * Thus the converter takes the same decisions
+ * (including those that depend on attributes)
+ * and generates the same tokens for the resulting tree
+ * as for the complete tree.
+ * </p>
+ * <p>
+ * Comments and CDATA sections are passed on to the
+ * {@link LexicalHandler} set as the
+ * {@value #LEXICAL_HANDLER_PROPERTY} property
+ * (outside skipped content);
+ * the filter registers itself as the lexical handler of its parent.
+ * </p>
+ * <p>
+ * Instances of this class filter a single document
+ * and are not thread-safe.
+ * </p>
+ */
+public class SkippingFilter extends XMLFilterImpl implements LexicalHandler {
+	
+	/**
+	 * Name of the SAX property for the {@link LexicalHandler}.
+	 */
+	public static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+	
+	private static final Consumer<Token> DISCARD = token -> {
+		// only the action is needed
+	};
+	
+	private final Function<String, NodeConverter> pConverters;
+	private NodeConverter pConverter = null;
+	private boolean pBeforeRoot = true;
+	
+	/**
+	 * The depth below the element whose content is dropped,
+	 * or 0 if no content is dropped.
+	 */
+	private int pSkipDepth = 0;
+	
+	private LexicalHandler pLexicalHandler = null;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param converters
+	 * returns the {@link NodeConverter}
+	 * for the name of the root element,
+	 * or {@code null} if the document has no converter
+	 * (in which case nothing is dropped);
+	 * not {@code null}
+	 */
+	public SkippingFilter(final Function<String, NodeConverter> converters) {
+		pConverters = converters;
+	}
+	
+	@Override
+	public void parse(final InputSource input) throws SAXException, IOException {
+		getParent().setProperty(LEXICAL_HANDLER_PROPERTY, this);
+		super.parse(input);
+	}
+	
+	@Override
+	public void setProperty(final String name, final Object value) throws SAXNotRecognizedException, SAXNotSupportedException {
+		if (LEXICAL_HANDLER_PROPERTY.equals(name))
+			pLexicalHandler = (LexicalHandler) value;
+		else
+			super.setProperty(name, value);
+	}
+	
+	@Override
+	public Object getProperty(final String name) throws SAXNotRecognizedException, SAXNotSupportedException {
+		if (LEXICAL_HANDLER_PROPERTY.equals(name))
+			return pLexicalHandler;
+		return super.getProperty(name);
+	}
+	
+	@Override
+	public void startElement(final String uri, final String localName, final String qName, final Attributes atts) throws SAXException {
+		if (pSkipDepth > 0) {
+			pSkipDepth++;
+			return;
+		}
+		if (pBeforeRoot) {
+			pConverter = pConverters.apply(qName);
+			pBeforeRoot = false;
+		}
+		super.startElement(uri, localName, qName, atts);
+		if ((pConverter != null) && (pConverter.elementAction(qName, atts::getValue, DISCARD).getType() == ActionType.SKIP))
+			pSkipDepth = 1;
+	}
+	
+	@Override
+	public void endElement(final String uri, final String localName, final String qName) throws SAXException {
+		if (pSkipDepth > 1) {
+			pSkipDepth--;
+			return;
+		}
+		pSkipDepth = 0;
+		super.endElement(uri, localName, qName);
+	}
+	
+	@Override
+	public void characters(final char[] ch, final int start, final int length) throws SAXException {
+		if (pSkipDepth == 0)
+			super.characters(ch, start, length);
+	}
+	
+	@Override
+	public void ignorableWhitespace(final char[] ch, final int start, final int length) throws SAXException {
+		if (pSkipDepth == 0)
+			super.ignorableWhitespace(ch, start, length);
+	}
+	
+	@Override
+	public void processingInstruction(final String target, final String data) throws SAXException {
+		if (pSkipDepth == 0)
+			super.processingInstruction(target, data);
+	}
+	
+	@Override
+	public void skippedEntity(final String name) throws SAXException {
+		if (pSkipDepth == 0)
+			super.skippedEntity(name);
+	}
+	
+	@Override
+	public void startDTD(final String name, final String publicId, final String systemId) throws SAXException {
+		if (pLexicalHandler != null)
+			pLexicalHandler.startDTD(name, publicId, systemId);
+	}
+	
+	@Override
+	public void endDTD() throws SAXException {
+		if (pLexicalHandler != null)
+			pLexicalHandler.endDTD();
+	}
+	
+	@Override
+	public void startEntity(final String name) throws SAXException {
+		if ((pSkipDepth == 0) && (pLexicalHandler != null))
+			pLexicalHandler.startEntity(name);
+	}
+	
+	@Override
+	public void endEntity(final String name) throws SAXException {
+		if ((pSkipDepth == 0) && (pLexicalHandler != null))
+			pLexicalHandler.endEntity(name);
+	}
+	
+	@Override
+	public void startCDATA() throws SAXException {
+		if ((pSkipDepth == 0) && (pLexicalHandler != null))
+			pLexicalHandler.startCDATA();
+	}
+	
+	@Override
+	public void endCDATA() throws SAXException {
+		if ((pSkipDepth == 0) && (pLexicalHandler != null))
+			pLexicalHandler.endCDATA();
+	}
+	
+	@Override
+	public void comment(final char[] ch, final int start, final int length) throws SAXException {
+		if ((pSkipDepth == 0) && (pLexicalHandler != null))
+			pLexicalHandler.comment(ch, start, length);
+	}
+	
+}
@@ -0,0 +1,299 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.conversion.text;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenType;
+
+/**
+ * A {@link CodePointProcessor} defined by a declarative
+ * mapping of characters to actions.
+ * <p>
+ * Every code point is appended to the {@link StringBuilder} unchanged
+ * unless there is a rule for it. Rules can be given for single code points
+ * (replace the code point by another one, drop it,
+ * or emit a {@link Token} instead of it)
+ * and for general categories of characters
+ * (such as {@link Character#SPACE_SEPARATOR});
+ * a rule for a single code point takes precedence over
+ * a rule for its general category.
+ * Instances are created with a {@link Builder}.
+ * </p>
+ * <p>
+ * The rules are compiled into a table with an entry for every
+ * code point of the Basic Multilingual Plane,
+ * so that processing such a code point takes a single table lookup.
+ * Supplementary code points are looked up in the rules directly.
+ * </p>
+ * <p>
+ * Instances of this class are immutable.
+ * </p>
+ */
+public class CharacterMapping implements CodePointProcessor {
+	
+	private static final int TABLE_SIZE = Character.MIN_SUPPLEMENTARY_CODE_POINT;
+	
+	/**
+	 * Index of the entry for code points appended unchanged.
+	 */
+	private static final int ORDINARY = 0;
+	
+	/**
+	 * Index of the entry for surrogate code units,
+	 * which are appended unchanged, too,
+	 * but must not be reported as
+	 * {@link CodePointProcessor#isOrdinary(char) ordinary}.
+	 */
+	private static final int SURROGATE = 1;
+	
+	private enum Action {
+		APPEND,
+		REPLACE,
+		DROP,
+		EMIT,
+		EMIT_IF_LAST
+	}
+	
+	private static final class Entry {
+		
+		private final Action pAction;
+		private final int pReplacement;
+		private final TokenType pTokenType;
+		private final Token pToken;
+		private Entry pOtherwise;
+		
+		Entry(final Action action, final int replacement, final TokenType tokenType, final String tokenText) {
+			pAction = action;
+			pReplacement = replacement;
+			pTokenType = tokenType;
+			pToken = tokenText == null ? null : new Token(tokenType, tokenText);
+		}
+		
+		void apply(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
+			switch (pAction) {
+				case APPEND:
+					textBuilder.appendCodePoint(codePoint);
+					break;
+				case REPLACE:
+					textBuilder.appendCodePoint(pReplacement);
+					break;
+				case DROP:
+					break;
+				case EMIT_IF_LAST:
+					if (end != text.length()) {
+						pOtherwise.apply(text, start, end, codePoint, textBuilder, tokenConsumer);
+						break;
+					}
+				case EMIT:
+					TextProcessor.flushTextBuilder(textBuilder, tokenConsumer);
+					tokenConsumer.accept(pToken != null ? pToken : new Token(pTokenType, text.substring(start, end)));
+					break;
+			}
+		}
+	
+	}
+	
+	private final byte[] pTable;
+	private final Entry[] pEntries;
+	private final HashMap<Integer, Entry> pCodePointEntries;
+	private final Entry[] pCategoryEntries;
+	
+	private CharacterMapping(final byte[] table, final Entry[] entries, final HashMap<Integer, Entry> codePointEntries, final Entry[] categoryEntries) {
+		pTable = table;
+		pEntries = entries;
+		pCodePointEntries = codePointEntries;
+		pCategoryEntries = categoryEntries;
+	}
+	
+	@Override
+	public void processCodePoint(final String text, final int start, final int end, final int codePoint, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
+		final Entry entry = codePoint < TABLE_SIZE ? pEntries[pTable[codePoint]] : supplementaryEntry(codePoint);
+		entry.apply(text, start, end, codePoint, textBuilder, tokenConsumer);
+	}
+	
+	@Override
+	public boolean isOrdinary(final char c) {
+		return pTable[c] == ORDINARY;
+	}
+	
+	private Entry supplementaryEntry(final int codePoint) {
+		final Entry entry = pCodePointEntries.get(codePoint);
+		if (entry != null)
+			return entry;
+		return pCategoryEntries[Character.getType(codePoint)];
+	}
+	
+	/**
+	 * Collects the rules of a {@link CharacterMapping}.
+	 * <p>
+	 * If several rules are given for the same code point
+	 * or the same general category, the last one applies.
+	 * </p>
+	 */
+	public static class Builder {
+		
+		private final LinkedHashMap<Integer, Entry> pCodePointRules = new LinkedHashMap<>();
+		private final Entry[] pCategoryRules = new Entry[Byte.MAX_VALUE + 1];
+		
+		/**
+		 * Replaces a code point by another one.
+		 * 
+		 * @param codePoint
+		 * the code point to be replaced
+		 * 
+		 * @param replacement
+		 * the code point to append instead
+		 * 
+		 * @return
+		 * this {@link Builder}
+		 */
+		public Builder replace(final int codePoint, final int replacement) {
+			pCodePointRules.put(codePoint, new Entry(Action.REPLACE, replacement, null, null));
+			return this;
+		}
+		
+		/**
+		 * Drops a code point, that is, the code point
+		 * is neither appended nor does it result in a {@link Token}.
+		 * 
+		 * @param codePoint
+		 * the code point to be dropped
+		 * 
+		 * @return
+		 * this {@link Builder}
+		 */
+		public Builder drop(final int codePoint) {
+			pCodePointRules.put(codePoint, new Entry(Action.DROP, 0, null, null));
+			return this;
+		}
+		
+		/**
+		 * Emits a {@link Token} instead of a code point,
+		 * after {@link TextProcessor#flushTextBuilder(StringBuilder, Consumer) flushing}
+		 * the text collected so far.
+		 * 
+		 * @param codePoint
+		 * the code point
+		 * 
+		 * @param tokenType
+		 * the {@link TokenType} of the token;
+		 * not {@code null}
+		 * 
+		 * @param tokenText
+		 * the text of the token,
+		 * or {@code null} to use the code point itself as the text
+		 * 
+		 * @return
+		 * this {@link Builder}
+		 */
+		public Builder emit(final int codePoint, final TokenType tokenType, final String tokenText) {
+			pCodePointRules.put(codePoint, new Entry(Action.EMIT, 0, tokenType, tokenText));
+			return this;
+		}
+		
+		/**
+		 * Like {@link #emit(int, TokenType, String)},
+		 * but only if the code point is the last one in the text;
+		 * otherwise, the code point is processed according to
+		 * the rule for its general category (if any).
+		 * 
+		 * @param codePoint
+		 * the code point
+		 * 
+		 * @param tokenType
+		 * the {@link TokenType} of the token;
+		 * not {@code null}
+		 * 
+		 * @param tokenText
+		 * the text of the token,
+		 * or {@code null} to use the code point itself as the text
+		 * 
+		 * @return
+		 * this {@link Builder}
+		 */
+		public Builder emitIfLast(final int codePoint, final TokenType tokenType, final String tokenText) {
+			pCodePointRules.put(codePoint, new Entry(Action.EMIT_IF_LAST, 0, tokenType, tokenText));
+			return this;
+		}
+		
+		/**
+		 * Emits a {@link Token} with the code point as text
+		 * instead of every code point in a general category,
+		 * after {@link TextProcessor#flushTextBuilder(StringBuilder, Consumer) flushing}
+		 * the text collected so far.
+		 * 
+		 * @param category
+		 * the general category
+		 * as returned by {@link Character#getType(int)}
+		 * 
+		 * @param tokenType
+		 * the {@link TokenType} of the token;
+		 * not {@code null}
+		 * 
+		 * @return
+		 * this {@link Builder}
+		 */
+		public Builder emitForCategory(final int category, final TokenType tokenType) {
+			pCategoryRules[category] = new Entry(Action.EMIT, 0, tokenType, null);
+			return this;
+		}
+		
+		/**
+		 * Compiles the rules into a {@link CharacterMapping}.
+		 * 
+		 * @return
+		 * a new {@link CharacterMapping};
+		 * not {@code null}
+		 */
+		public CharacterMapping build() {
+			final Entry append = new Entry(Action.APPEND, 0, null, null);
+			final Entry[] categoryEntries = new Entry[pCategoryRules.length];
+			for (int i = 0; i < categoryEntries.length; i++)
+				categoryEntries[i] = pCategoryRules[i] == null ? append : pCategoryRules[i];
+			
+			final HashMap<Integer, Entry> codePointEntries = new HashMap<>();
+			for (final Map.Entry<Integer, Entry> rule : pCodePointRules.entrySet()) {
+				final Entry entry = rule.getValue();
+				if (entry.pAction == Action.EMIT_IF_LAST)
+					entry.pOtherwise = categoryEntries[Character.getType(rule.getKey().intValue())];
+				codePointEntries.put(rule.getKey(), entry);
+			}
+			
+			final LinkedHashMap<Entry, Integer> indices = new LinkedHashMap<>();
+			indices.put(append, ORDINARY);
+			indices.put(new Entry(Action.APPEND, 0, null, null), SURROGATE);
+			final byte[] table = new byte[TABLE_SIZE];
+			for (int codePoint = 0; codePoint < TABLE_SIZE; codePoint++) {
+				Entry entry = codePointEntries.get(codePoint);
+				if (entry == null)
+					entry = categoryEntries[Character.getType(codePoint)];
+				final int index;
+				if (entry == append && Character.isSurrogate((char) codePoint))
+					index = SURROGATE;
+				else {
+					final Integer known = indices.get(entry);
+					if (known != null)
+						index = known.intValue();
+					else {
+						index = indices.size();
+						if (index > Byte.MAX_VALUE)
+							throw new IllegalStateException("too many character mapping rules");
+						indices.put(entry, index);
+					}
+				}
+				table[codePoint] = (byte) index;
+			}
+			return new CharacterMapping(table, indices.keySet().toArray(new Entry[indices.size()]), codePointEntries, categoryEntries);
+		}
+	
+	}
+
+}
@@ -61,4 +61,31 @@ public interface CodePointProcessor {
 	 */
 	void processCodePoint(String text, int start, int end, int codePoint, StringBuilder textBuilder, Consumer<? super Token> tokenConsumer);
 	
+	/**
+	 * Checks whether a character is <i>ordinary</i>,
+	 * that is, whether processing it with
+	 * {@link #processCodePoint(String, int, int, int, StringBuilder, Consumer)}
+	 * would do nothing but append it unchanged
+	 * to the {@link StringBuilder},
+	 * wherever it occurs in a text.
+	 * <p>
+	 * {@link TextProcessor} copies runs of ordinary characters
+	 * in bulk without calling
+	 * {@link #processCodePoint(String, int, int, int, StringBuilder, Consumer)}
+	 * for them.
+	 * Surrogates must never be reported as ordinary.
+	 * The default implementation reports no character as ordinary,
+	 * so that every code point is processed individually.
+	 * </p>
+	 * 
+	 * @param c
+	 * the character
+	 * 
+	 * @return
+	 * whether the character is ordinary
+	 */
+	default boolean isOrdinary(final char c) {
+		return false;
+	}
+	
 }
@@ -18,11 +18,21 @@ import xmltotext.tokens.TokenType;
  */
 public class TextProcessor {
 	
+	private static final char FIRST_COMBINING_CHARACTER = '\u0300';
+	
+	/**
+	 * Builders larger than this (in characters)
+	 * are not kept for reuse.
+	 */
+	private static final int MAX_REUSED_CAPACITY = 1 << 16;
+	
+	private static final ThreadLocal<StringBuilder[]> TEXT_BUILDER = ThreadLocal.withInitial(() -> new StringBuilder[] { new StringBuilder() });
+	
 	/**
 	 * Iterates over the Unicode code points in the given string,
 	 * calling a {@link CodePointProcessor} for each code point.
 	 * <p>
-	 * This method also creates a {@link StringBuilder} which
+	 * This method also provides a {@link StringBuilder} which
 	 * the {@link CodePointProcessor} can manipulate while
 	 * processing the code points. If there are any characters
 	 * left in the builder after processing the last code point,
@@ -33,6 +43,18 @@ public class TextProcessor {
 	 * and the contents of the {@link StringBuilder} as text,
 	 * normalized to {@link Form#NFC NFC}.
 	 * </p>
+	 * <p>
+	 * Runs of characters that the {@link CodePointProcessor}
+	 * reports as {@link CodePointProcessor#isOrdinary(char) ordinary}
+	 * are copied in bulk, without calling the
+	 * {@link CodePointProcessor} for each of them;
+	 * if such a run extends to the end of the text
+	 * and the builder is empty, the run is used as token text
+	 * without copying it to the builder.
+	 * The builder is reused for subsequent calls in the same thread.
+	 * The result is the same as if the
+	 * {@link CodePointProcessor} was called for every code point.
+	 * </p>
 	 * 
 	 * @param text
 	 * the text to be processed;
@@ -50,10 +72,38 @@ public class TextProcessor {
 	 * not {@code null}
 	 */
 	public static void processText(final String text, final CodePointProcessor codePointProcessor, final Consumer<? super Token> tokenConsumer) {
+		final StringBuilder[] builderHolder = TEXT_BUILDER.get();
+		// the builder is taken out of its holder while in use,
+		// in case the token consumer processes text, too
+		final StringBuilder textBuilder = builderHolder[0] != null ? builderHolder[0] : new StringBuilder();
+		builderHolder[0] = null;
+		try {
+			processText(text, codePointProcessor, textBuilder, tokenConsumer);
+		} finally {
+			textBuilder.setLength(0);
+			if (textBuilder.capacity() <= MAX_REUSED_CAPACITY)
+				builderHolder[0] = textBuilder;
+		}
+	}
+	
+	private static void processText(final String text, final CodePointProcessor codePointProcessor, final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
 		final int n = text.length();
-		final StringBuilder textBuilder = new StringBuilder();
 		int start = 0;
 		while (start < n) {
+			if (codePointProcessor.isOrdinary(text.charAt(start))) {
+				int end = start + 1;
+				while (end < n && codePointProcessor.isOrdinary(text.charAt(end)))
+					end++;
+				if (end == n && textBuilder.length() == 0) {
+					// the rest of the text becomes the token text as it is
+					final String run = start == 0 ? text : text.substring(start);
+					tokenConsumer.accept(new Token(TokenType.TEXT, normalize(run)));
+					return;
+				}
+				textBuilder.append(text, start, end);
+				start = end;
+				continue;
+			}
 			final int codePoint = text.codePointAt(start);
 			final int end = start + Character.charCount(codePoint);
 			codePointProcessor.processCodePoint(text, start, end, codePoint, textBuilder, tokenConsumer);
@@ -86,7 +136,26 @@ public class TextProcessor {
 	}
 
 	private static void addTextToken(final StringBuilder textBuilder, final Consumer<? super Token> tokenConsumer) {
-		tokenConsumer.accept(new Token(TokenType.TEXT, Normalizer.normalize(textBuilder, Form.NFC)));
+		tokenConsumer.accept(new Token(TokenType.TEXT, isQuickNfc(textBuilder) ? textBuilder.toString() : Normalizer.normalize(textBuilder, Form.NFC)));
+	}
+	
+	private static String normalize(final String text) {
+		return isQuickNfc(text) ? text : Normalizer.normalize(text, Form.NFC);
+	}
+	
+	/**
+	 * Checks whether a text is certainly in {@link Form#NFC NFC}
+	 * because all of its characters are below U+0300:
+	 * these characters are not changed by normalization
+	 * and do not combine with preceding characters
+	 * (U+0300 is the first combining character).
+	 */
+	private static boolean isQuickNfc(final CharSequence text) {
+		final int n = text.length();
+		for (int i = 0; i < n; i++)
+			if (text.charAt(i) >= FIRST_COMBINING_CHARACTER)
+				return false;
+		return true;
 	}
 	
 }
@@ -0,0 +1,303 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.incremental;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import xmltotext.Version;
+import xmltotext.util.ContentHash;
+
+/**
+ * Records which input files have been converted into an output directory,
+ * so that unchanged input files can be skipped when converting again.
+ * <p>
+ * For every input file (identified by its file name),
+ * the manifest records the {@link ContentHash hash} of its content,
+ * the conversion type, the {@link Version#CONVERTER_VERSION version}
+ * of the conversion logic and whether external DTDs missing from the
+ * {@link xmltotext.util.DtdCatalog DTD catalog} have been ignored
+ * (which affects the entities available to the document).
+ * The manifest is stored in the output directory in the file
+ * {@value #FILE_NAME}, a compact binary log:
+ * a header followed by one record per conversion.
+ * New records are appended to the end of the log;
+ * if a file name occurs more than once, the last record counts.
+ * The whole log is read at once when the manifest is opened,
+ * and appended records are buffered and written in bulk.
+ * When the log contains many outdated records,
+ * it is replaced with a snapshot of the current records
+ * (sorted by file name) when the manifest is closed.
+ * </p>
+ * <p>
+ * A log that ends with an incomplete record
+ * (for example after the program has been killed
+ * while writing it) is truncated to the last complete record;
+ * a file that is not a manifest at all is replaced.
+ * Either way, the affected input files are simply converted again.
+ * </p>
+ * <p>
+ * The methods {@link #isUpToDate(String, byte[], int, boolean)}
+ * and {@link #record(String, byte[], int, boolean)}
+ * may be called concurrently.
+ * </p>
+ */
+public class ConversionManifest implements Closeable {
+	
+	/**
+	 * The name of the manifest file in the output directory.
+	 */
+	public static final String FILE_NAME = ".xmltotext-manifest";
+	
+	private static final int MAGIC = 0x4B58544D; // "KXTM"
+	private static final int FORMAT_VERSION = 2;
+	
+	private static class Entry {
+		
+		final byte[] pHash;
+		final int pConversionType;
+		final int pConverterVersion;
+		final boolean pOfflineDtds;
+		
+		Entry(final byte[] hash, final int conversionType, final int converterVersion, final boolean offlineDtds) {
+			pHash = hash;
+			pConversionType = conversionType;
+			pConverterVersion = converterVersion;
+			pOfflineDtds = offlineDtds;
+		}
+		
+		boolean matches(final byte[] hash, final int conversionType, final boolean offlineDtds) {
+			return pConverterVersion == Version.CONVERTER_VERSION && pConversionType == conversionType && pOfflineDtds == offlineDtds && Arrays.equals(pHash, hash);
+		}
+		
+	}
+	
+	private final Path pFile;
+	private final Map<String, Entry> pEntries;
+	private int pRecordCount;
+	private DataOutputStream pLog;
+	
+	private ConversionManifest(final Path file, final Map<String, Entry> entries, final int recordCount) {
+		pFile = file;
+		pEntries = entries;
+		pRecordCount = recordCount;
+	}
+	
+	/**
+	 * Opens the manifest of an output directory,
+	 * creating it if it does not exist yet.
+	 * 
+	 * @param outputDir
+	 * the output directory;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the {@link ConversionManifest} of the output directory;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static ConversionManifest open(final Path outputDir) throws IOException {
+		final Path file = outputDir.resolve(FILE_NAME);
+		final Map<String, Entry> entries = new ConcurrentHashMap<>();
+		
+		byte[] content;
+		try {
+			content = Files.readAllBytes(file);
+		} catch (final NoSuchFileException e) {
+			content = null;
+		}
+		
+		final ConversionManifest manifest;
+		if (content == null) {
+			manifest = new ConversionManifest(file, entries, 0);
+			manifest.writeSnapshot();
+		} else {
+			final int recordCount = readLog(content, entries);
+			manifest = new ConversionManifest(file, entries, Math.max(recordCount, 0));
+			if (recordCount < 0)
+				manifest.writeSnapshot();
+		}
+		
+		manifest.pLog = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)));
+		return manifest;
+	}
+	
+	/**
+	 * Reads the records of a manifest log.
+	 * 
+	 * @return
+	 * the number of records read;
+	 * or a negative number if the log is damaged
+	 * and has to be rewritten
+	 */
+	private static int readLog(final byte[] content, final Map<String, Entry> entries) throws IOException {
+		final DataInputStream input = new DataInputStream(new ByteArrayInputStream(content));
+		try {
+			if (input.readInt() != MAGIC || input.readInt() != FORMAT_VERSION)
+				return -1;
+		} catch (final EOFException e) {
+			return -1;
+		}
+		int recordCount = 0;
+		while (input.available() > 0) {
+			try {
+				final String fileName = input.readUTF();
+				final byte[] hash = new byte[ContentHash.LENGTH];
+				input.readFully(hash);
+				final int conversionType = input.readInt();
+				final int converterVersion = input.readInt();
+				final boolean offlineDtds = input.readBoolean();
+				entries.put(fileName, new Entry(hash, conversionType, converterVersion, offlineDtds));
+				recordCount++;
+			} catch (final EOFException e) {
+				// incomplete last record
+				return -1;
+			}
+		}
+		return recordCount;
+	}
+	
+	/**
+	 * Checks whether the output for an input file is up to date,
+	 * that is, whether the manifest contains a record for the file
+	 * with the same content hash, conversion type and DTD mode,
+	 * created by the current version of the conversion logic.
+	 * <p>
+	 * This method does not check whether the output file exists.
+	 * </p>
+	 * 
+	 * @param fileName
+	 * the name of the input file;
+	 * not {@code null}
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the current content of the input file;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @param offlineDtds
+	 * whether external DTDs missing from the DTD catalog are ignored
+	 * 
+	 * @return
+	 * whether the output for the input file is up to date
+	 */
+	public boolean isUpToDate(final String fileName, final byte[] hash, final int conversionType, final boolean offlineDtds) {
+		final Entry entry = pEntries.get(fileName);
+		return entry != null && entry.matches(hash, conversionType, offlineDtds);
+	}
+	
+	/**
+	 * Records that an input file has been converted
+	 * by the current version of the conversion logic.
+	 * <p>
+	 * This method should be called after the output file
+	 * has been written completely.
+	 * </p>
+	 * 
+	 * @param fileName
+	 * the name of the input file;
+	 * not {@code null}
+	 * 
+	 * @param hash
+	 * the {@link ContentHash hash} of the content of the input file
+	 * that has been converted;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * 
+	 * @param offlineDtds
+	 * whether external DTDs missing from the DTD catalog have been ignored
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * 
+	 * @throws IllegalStateException
+	 * if the manifest has been closed
+	 */
+	public synchronized void record(final String fileName, final byte[] hash, final int conversionType, final boolean offlineDtds) throws IOException {
+		if (pLog == null)
+			throw new IllegalStateException("manifest closed");
+		final Entry entry = new Entry(hash, conversionType, Version.CONVERTER_VERSION, offlineDtds);
+		pEntries.put(fileName, entry);
+		writeRecord(pLog, fileName, entry);
+		pRecordCount++;
+	}
+	
+	/**
+	 * Writes all buffered records to the manifest file
+	 * and closes it.
+	 * If at least half of the records in the log are outdated,
+	 * the log is replaced with a snapshot of the current records.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (pLog == null)
+			return;
+		pLog.close();
+		pLog = null;
+		if (pRecordCount >= 2 * pEntries.size() && pRecordCount > 0)
+			writeSnapshot();
+	}
+	
+	/**
+	 * Replaces the manifest file with a snapshot of the current records.
+	 * The snapshot is written to a temporary file first,
+	 * which then replaces the manifest file atomically
+	 * (where supported), so that an interrupted snapshot
+	 * does not lose the previous manifest.
+	 */
+	private void writeSnapshot() throws IOException {
+		final ArrayList<String> fileNames = new ArrayList<>(pEntries.keySet());
+		fileNames.sort(null);
+		
+		final Path tempFile = pFile.resolveSibling(FILE_NAME + ".tmp");
+		try (final DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(FORMAT_VERSION);
+			for (final String fileName : fileNames)
+				writeRecord(output, fileName, pEntries.get(fileName));
+		}
+		move(tempFile, pFile);
+		pRecordCount = fileNames.size();
+	}
+	
+	private static void writeRecord(final DataOutputStream output, final String fileName, final Entry entry) throws IOException {
+		output.writeUTF(fileName);
+		output.write(entry.pHash);
+		output.writeInt(entry.pConversionType);
+		output.writeInt(entry.pConverterVersion);
+		output.writeBoolean(entry.pOfflineDtds);
+	}
+	
+	private static void move(final Path source, final Path target) throws IOException {
+		try {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+}
@@ -6,21 +6,24 @@
 package xmltotext.normalization;
 
 import java.util.ArrayList;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenStage;
+import xmltotext.tokens.TokenType;
 
 /**
  * A {@link TokenSequenceNormalizer} that substitutes
  * {@code U+2026 HORIZONTAL ELLIPSIS} (&#x2026;)
- * for ASCII replacements of that character, 
+ * for ASCII replacements of that character,
  * <p>
  * Currently, this class replaces substrings of
  * at least two stop (.) characters, possibly separated by
  * an arbitrary amount of whitespace
  * (blank, {@code \t}, {@code \n}, {@code \x0B},
  * {@code \f}, or {@code \r}).
+ * Whitespace following the last stop character
+ * in the same token is replaced, too.
  * </p>
  * <p>
  * For example,
@@ -28,29 +31,193 @@ import xmltotext.tokens.Token;
  * would become
  * <code>&quot;And then &#x2026;&quot;</code>.
  * </p>
+ * <p>
+ * Such a substring may also span several
+ * {@link TokenType#TEXT} tokens
+ * with {@link TokenType#WHITESPACE} tokens in between,
+ * as in TEI, where blanks become separate tokens.
+ * The ellipsis then replaces the stop characters
+ * in the token where the substring starts;
+ * the stop characters in the following tokens
+ * and the whitespace tokens in between are removed.
+ * Tokens without stop characters are passed on unchanged
+ * (and are not copied).
+ * </p>
  */
 public class EllipsisCharacterNormalizer implements TokenSequenceNormalizer {
-	
-	private static final Pattern ELLIPSIS_PATTERN = Pattern.compile("(" + Pattern.quote(".") + "\\s*){2,}");
-	private static final String ELLIPSIS_REPLACEMENT = Matcher.quoteReplacement("\u2026");
-	
+
+	private static final String ELLIPSIS = "\u2026";
+
 	@Override
-	public ArrayList<Token> normalizeTokenSequence(final ArrayList<Token> tokenSequence) {
-		final ArrayList<Token> result = new ArrayList<>(tokenSequence.size());
+	public TokenSink createStage(final TokenSink next) {
+		return new Stage(next);
+	}
+	
+	private static class Stage extends TokenStage {
+		
+		/**
+		 * The token in which the current run of stop characters started,
+		 * or {@code null} if the last token did not end with such a run.
+		 */
+		private Token pRunToken = null;
+		
+		/**
+		 * Whether {@link #pRunToken} can be passed on unchanged
+		 * if the run turns out to consist of a single stop character.
+		 */
+		private boolean pRunTokenUnchanged;
+		
+		/**
+		 * The text of {@link #pRunToken} before the run,
+		 * with ellipses already substituted.
+		 */
+		private String pRunPrefix;
+		
+		private String pRunText;
+		private int pRunStart;
+		private int pRunDots;
+		
+		/**
+		 * {@link TokenType#WHITESPACE} tokens after the last stop character,
+		 * which are removed if the run continues.
+		 */
+		private final ArrayList<Token> pHeldTokens = new ArrayList<>();
+		
+		public Stage(final TokenSink next) {
+			super(next);
+		}
 		
-		for (final Token token : tokenSequence) {
+		@Override
+		public void accept(final Token token) {
+			if (pRunToken != null) {
+				final String text = token.getText();
+				switch (token.getType()) {
+					case WHITESPACE:
+						if ((text == null) || (text.indexOf('.') < 0)) {
+							pHeldTokens.add(token);
+							return;
+						}
+						break;
+					case TEXT:
+						if (text == null)
+							break;
+						final int n = text.length();
+						int i = skipWhitespace(text, 0);
+						if ((i == n) || (text.charAt(i) != '.'))
+							break;
+						// the run continues in this token
+						pHeldTokens.clear();
+						while ((i < n) && (text.charAt(i) == '.')) {
+							pRunDots++;
+							i = skipWhitespace(text, i + 1);
+						}
+						if (i == n)
+							return;
+						endRun();
+						scan(token, text, i);
+						return;
+					default:
+				}
+				endRun();
+			}
 			final String text = token.getText();
-			if (text != null) {
-				final String newText = ELLIPSIS_PATTERN.matcher(text).replaceAll(ELLIPSIS_REPLACEMENT);
-				if (!text.equals(newText)) {
-					result.add(new Token(token.getType(), newText, token.getConversions()));
-					continue;
+			if ((text == null) || (text.indexOf('.') < 0)) {
+				next.accept(token);
+				return;
+			}
+			scan(token, text, 0);
+		}
+		
+		@Override
+		public void end() {
+			if (pRunToken != null)
+				endRun();
+			next.end();
+		}
+		
+		/**
+		 * Substitutes ellipses in the text of a token
+		 * from a certain index on
+		 * and passes the result on,
+		 * unless the text ends with stop characters
+		 * that may continue in the next tokens.
+		 */
+		private void scan(final Token token, final String text, final int from) {
+			final int n = text.length();
+			StringBuilder sb = null;
+			int copied = from;
+			int i = text.indexOf('.', from);
+			while (i >= 0) {
+				final int runStart = i;
+				int dots = 0;
+				while ((i < n) && (text.charAt(i) == '.')) {
+					dots++;
+					i = skipWhitespace(text, i + 1);
+				}
+				if ((i == n) && (token.getType() == TokenType.TEXT)) {
+					pRunToken = token;
+					pRunTokenUnchanged = (sb == null) && (from == 0);
+					pRunPrefix = sb == null ? text.substring(from, runStart) : sb.append(text, copied, runStart).toString();
+					pRunText = text;
+					pRunStart = runStart;
+					pRunDots = dots;
+					return;
 				}
+				if (dots >= 2) {
+					if (sb == null)
+						sb = new StringBuilder(n);
+					sb.append(text, copied, runStart).append(ELLIPSIS);
+					copied = i;
+				}
+				i = text.indexOf('.', i);
 			}
-			result.add(token);
+			if (sb != null)
+				next.accept(new Token(token.getType(), sb.append(text, copied, n).toString(), token.getConversions()));
+			else if (from == 0)
+				next.accept(token);
+			else
+				next.accept(new Token(token.getType(), text.substring(from), token.getConversions()));
 		}
 		
-		return result;
+		private void endRun() {
+			final Token token = pRunToken;
+			pRunToken = null;
+			if (pRunDots >= 2)
+				next.accept(new Token(token.getType(), pRunPrefix + ELLIPSIS, token.getConversions()));
+			else if (pRunTokenUnchanged)
+				next.accept(token);
+			else
+				next.accept(new Token(token.getType(), pRunPrefix + pRunText.substring(pRunStart), token.getConversions()));
+			pRunPrefix = null;
+			pRunText = null;
+			for (final Token heldToken : pHeldTokens)
+				next.accept(heldToken);
+			pHeldTokens.clear();
+		}
+	
 	}
 	
+	/**
+	 * Skips the characters matched by {@code \s} in a regular expression.
+	 */
+	private static int skipWhitespace(final String text, final int start) {
+		final int n = text.length();
+		int i = start;
+		while (i < n) {
+			switch (text.charAt(i)) {
+				case ' ':
+				case '\t':
+				case '\n':
+				case 0xB:
+				case '\f':
+				case '\r':
+					i++;
+					break;
+				default:
+					return i;
+			}
+		}
+		return i;
+	}
+
 }
@@ -5,9 +5,9 @@
  */
 package xmltotext.normalization;
 
-import java.util.ArrayList;
-
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenStage;
 import xmltotext.tokens.TokenType;
 
 /**
@@ -26,28 +26,36 @@ import xmltotext.tokens.TokenType;
 public class ExplicitHyphensNormalizer implements TokenSequenceNormalizer {
 	
 	@Override
-	public ArrayList<Token> normalizeTokenSequence(final ArrayList<Token> tokenSequence) {
-		final ArrayList<Token> result = new ArrayList<>(tokenSequence.size());
+	public TokenSink createStage(final TokenSink next) {
+		return new Stage(next);
+	}
+	
+	private static class Stage extends TokenStage {
+		
+		private boolean pAfterSeparatedWord = false;
+		
+		public Stage(final TokenSink next) {
+			super(next);
+		}
 		
-		boolean afterSeparatedWord = false;
-		for (final Token token : tokenSequence) {
+		@Override
+		public void accept(final Token token) {
 			switch (token.getType()) {
 				case EXPLICIT_LINE_BREAK:
 				case IMPLICIT_LINE_BREAK:
 				case WHITESPACE:
-					if (afterSeparatedWord)
-						continue;
+					if (pAfterSeparatedWord)
+						return;
 					break;
 				case HYPHENATION:
-					afterSeparatedWord = true;
-					continue;
+					pAfterSeparatedWord = true;
+					return;
 				default:
-					afterSeparatedWord = false;
+					pAfterSeparatedWord = false;
 			}
-			result.add(token);
+			next.accept(token);
 		}
 		
-		return result;
 	}
 	
 }
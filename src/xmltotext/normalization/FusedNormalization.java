@@ -0,0 +1,363 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.normalization;
+
+import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenStage;
+import xmltotext.tokens.TokenType;
+import xmltotext.tokens.TokenTypeClass;
+
+/**
+ * Implements the complete normalization
+ * as a single pipeline stage.
+ * <p>
+ * The stage produces the same output as a chain
+ * created by {@link TokenSequenceNormalization#createStage(Iterable, TokenSink)}
+ * with the normalizers
+ * </p>
+ * <ol>
+ * <li>
+ * {@link ExplicitHyphensNormalizer}
+ * (only if the sequence contains explicit hyphens),
+ * </li>
+ * <li>
+ * {@link ImplicitHyphensNormalizer}
+ * (with the hyphenation heuristic turned off
+ * if and only if the sequence contains explicit hyphens)
+ * </li>
+ * <li>
+ * and {@link EllipsisCharacterNormalizer},
+ * </li>
+ * </ol>
+ * <p>
+ * but looks at every token only once.
+ * (Only the substitution of ellipses, which may hold back a few tokens,
+ * is left to a stage of the {@link EllipsisCharacterNormalizer}.)
+ * The chain remains the reference implementation.
+ * </p>
+ * <p>
+ * Between two tokens with {@link TokenTypeClass#TEXT},
+ * the stage only keeps a summary of the line breaks and whitespace
+ * (the <i>gap</i>): what the collapsing would merge them into,
+ * and what would be left of them after a hyphen,
+ * which removes the line breaks up to the first line break run
+ * that contains a {@link TokenType#PARAGRAPH_BOUNDARY}.
+ * When the next such token arrives, the gap and the token
+ * are processed like the {@link ImplicitHyphensNormalizer} would.
+ * A gap is passed on only when it turns out to be followed by another token
+ * with {@link TokenTypeClass#TEXT},
+ * which trims the sequence at both ends.
+ * </p>
+ */
+public class FusedNormalization {
+	
+	private static final EllipsisCharacterNormalizer ELLIPSIS_CHARACTER_NORMALIZER = new EllipsisCharacterNormalizer();
+	
+	/**
+	 * Creates a pipeline stage that normalizes the token sequence
+	 * pushed into it
+	 * and passes the normalized sequence on to another
+	 * {@link TokenSink}.
+	 * 
+	 * @param explicitHyphens
+	 * {@code true} if the token sequence contains any
+	 * {@link TokenType#HYPHENATION}
+	 * token;
+	 * otherwise {@code false}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink} for a single token sequence;
+	 * not {@code null}
+	 */
+	public static TokenSink createStage(final boolean explicitHyphens, final TokenSink next) {
+		return new Stage(explicitHyphens, next);
+	}
+	
+	/**
+	 * A summary of the line breaks and whitespace
+	 * between two tokens with {@link TokenTypeClass#TEXT}.
+	 */
+	private static class Gap {
+		
+		/**
+		 * The type of the merged line break,
+		 * or {@code null} if there is no line break.
+		 */
+		public TokenType lineBreakType;
+		public String lineBreakText;
+		public int lineBreakConversions;
+		
+		/**
+		 * Whether a line break run contains a
+		 * {@link TokenType#PARAGRAPH_BOUNDARY};
+		 * the text and conversion types are those
+		 * of the first line break in the first such run.
+		 */
+		public boolean paragraph;
+		public String paragraphText;
+		public int paragraphConversions;
+		
+		public boolean whitespace;
+		public String whitespaceText;
+		public int whitespaceConversions;
+		
+		private boolean pInRun;
+		private String pRunText;
+		private int pRunConversions;
+		
+		public void addLineBreak(final Token token) {
+			final TokenType tokenType = token.getType();
+			if (!pInRun) {
+				pInRun = true;
+				pRunText = token.getText();
+				pRunConversions = token.getConversions();
+			}
+			if ((tokenType == TokenType.PARAGRAPH_BOUNDARY) && !paragraph) {
+				paragraph = true;
+				paragraphText = pRunText;
+				paragraphConversions = pRunConversions;
+			}
+			if (lineBreakType == null)
+				appendLineBreak(TokenSequenceNormalization.lineBreakPrecedence(tokenType, tokenType), token.getText(), token.getConversions());
+			else
+				lineBreakType = TokenSequenceNormalization.lineBreakPrecedence(lineBreakType, tokenType);
+		}
+		
+		public void addWhitespace(final Token token) {
+			pInRun = false;
+			appendWhitespace(token.getText(), token.getConversions());
+		}
+		
+		public void endRun() {
+			pInRun = false;
+		}
+		
+		public void appendLineBreak(final TokenType type, final String text, final int conversions) {
+			if (lineBreakType == null) {
+				lineBreakType = type;
+				lineBreakText = text;
+				lineBreakConversions = conversions;
+			} else {
+				lineBreakType = TokenSequenceNormalization.lineBreakPrecedence(lineBreakType, type);
+			}
+		}
+		
+		public void appendWhitespace(final String text, final int conversions) {
+			if (!whitespace) {
+				whitespace = true;
+				whitespaceText = text;
+				whitespaceConversions = conversions;
+			}
+			if ("\t".equals(text))
+				whitespaceText = "\t";
+		}
+		
+		/**
+		 * Appends what is left of another gap
+		 * after collapsing
+		 * and, if it follows a hyphen, after removing the line breaks
+		 * and whitespace that the {@link ExplicitHyphensNormalizer}
+		 * would remove.
+		 */
+		public void append(final Gap gap, final boolean afterHyphen) {
+			if (afterHyphen) {
+				if (gap.paragraph)
+					appendLineBreak(TokenType.PARAGRAPH_BOUNDARY, gap.paragraphText, gap.paragraphConversions);
+			} else if (gap.lineBreakType != null) {
+				appendLineBreak(gap.lineBreakType, gap.lineBreakText, gap.lineBreakConversions);
+			} else if (gap.whitespace) {
+				appendWhitespace(gap.whitespaceText, gap.whitespaceConversions);
+			}
+		}
+		
+		/**
+		 * Makes this gap look like a single collapsed token.
+		 */
+		public void merge() {
+			paragraph = lineBreakType == TokenType.PARAGRAPH_BOUNDARY;
+			paragraphText = lineBreakText;
+			paragraphConversions = lineBreakConversions;
+		}
+		
+		public void clear() {
+			lineBreakType = null;
+			lineBreakText = null;
+			paragraph = false;
+			paragraphText = null;
+			whitespace = false;
+			whitespaceText = null;
+			pInRun = false;
+			pRunText = null;
+		}
+	
+	}
+	
+	private static class Stage extends TokenStage {
+		
+		private final boolean pExplicitHyphens;
+		
+		/**
+		 * The gap since the last token with {@link TokenTypeClass#TEXT}.
+		 */
+		private final Gap pGap = new Gap();
+		
+		/**
+		 * The gap since the last token with {@link TokenTypeClass#TEXT}
+		 * other than {@link TokenType#HYPHENATION}
+		 * (only used with explicit hyphens).
+		 */
+		private final Gap pJoinedGap = new Gap();
+		
+		private boolean pAfterText = false;
+		private boolean pAfterHyphen = false;
+		
+		private Token pPendingMinus = null;
+		private boolean pAfterLineBreak = false;
+		
+		private boolean pOutputText = false;
+		private Token pOutputGap = null;
+		
+		public Stage(final boolean explicitHyphens, final TokenSink next) {
+			super(ELLIPSIS_CHARACTER_NORMALIZER.createStage(next));
+			pExplicitHyphens = explicitHyphens;
+		}
+		
+		@Override
+		public void accept(final Token token) {
+			switch (token.getType().getTokenTypeClass()) {
+				case LINEBREAKS:
+					pGap.addLineBreak(token);
+					return;
+				case WHITESPACE:
+					pGap.addWhitespace(token);
+					return;
+				default:
+					if ("".equals(token.getText())) {
+						pGap.endRun();
+						return;
+					}
+			}
+			
+			if (!pAfterText) {
+				// nothing before the first text is kept
+				pAfterText = true;
+				pGap.clear();
+			}
+			
+			if (!pExplicitHyphens) {
+				processGap(pGap);
+				pGap.clear();
+				processText(token);
+				return;
+			}
+			
+			pJoinedGap.append(pGap, pAfterHyphen);
+			pGap.clear();
+			pAfterHyphen = token.getType() == TokenType.HYPHENATION;
+			if (pAfterHyphen)
+				return;
+			pJoinedGap.merge();
+			processGap(pJoinedGap);
+			pJoinedGap.clear();
+			processText(token);
+		}
+		
+		private void processGap(final Gap gap) {
+			if (gap.lineBreakType != null) {
+				if (pPendingMinus == null) {
+					outputGap(new Token(gap.lineBreakType, gap.lineBreakText, gap.lineBreakConversions));
+				} else if (gap.paragraph) {
+					outputText(pPendingMinus);
+					pPendingMinus = null;
+					outputGap(new Token(TokenType.PARAGRAPH_BOUNDARY, gap.paragraphText, gap.paragraphConversions));
+				} else {
+					pAfterLineBreak = true;
+				}
+			} else if (gap.whitespace) {
+				if (pPendingMinus != null) {
+					outputText(pPendingMinus);
+					pPendingMinus = null;
+				}
+				outputGap(new Token(TokenType.WHITESPACE, gap.whitespaceText, gap.whitespaceConversions));
+			}
+		}
+		
+		private void processText(final Token token) {
+			switch (token.getType()) {
+				case POSSIBLE_HYPHENATION:
+					pPendingMinus = token;
+					pAfterLineBreak = false;
+					return;
+				case TEXT:
+					if (pAfterLineBreak && (pPendingMinus != null)) {
+						// Trennzeichenheuristik
+						final String text = token.getText();
+						if (ImplicitHyphensNormalizer.startsWithUndOrOder(text)) {
+							outputText(pPendingMinus);
+							outputGap(new Token(TokenType.WHITESPACE, null));
+						} else if (pExplicitHyphens || ImplicitHyphensNormalizer.startsWithUppercase(text)) {
+							outputText(pPendingMinus);
+						}
+						pPendingMinus = null;
+						break;
+					}
+				default:
+					if (pPendingMinus != null) {
+						outputText(pPendingMinus);
+						pPendingMinus = null;
+					}
+					break;
+			}
+			outputText(token);
+		}
+		
+		private void outputGap(final Token token) {
+			if (!pOutputText)
+				return;
+			if (pOutputGap == null)
+				pOutputGap = token;
+			else
+				pOutputGap = mergeGaps(pOutputGap, token);
+		}
+		
+		private void outputText(final Token token) {
+			if (pOutputGap != null) {
+				next.accept(pOutputGap);
+				pOutputGap = null;
+			}
+			pOutputText = true;
+			next.accept(token);
+		}
+		
+		@Override
+		public void end() {
+			pGap.clear();
+			pJoinedGap.clear();
+			pPendingMinus = null;
+			pOutputGap = null;
+			next.end();
+		}
+	
+	}
+	
+	private static Token mergeGaps(final Token first, final Token second) {
+		final TokenTypeClass firstClass = first.getType().getTokenTypeClass();
+		final TokenTypeClass secondClass = second.getType().getTokenTypeClass();
+		if (firstClass != secondClass)
+			return firstClass == TokenTypeClass.LINEBREAKS ? first : second;
+		if (firstClass == TokenTypeClass.LINEBREAKS)
+			return new Token(TokenSequenceNormalization.lineBreakPrecedence(first.getType(), second.getType()), first.getText(), first.getConversions());
+		if ("\t".equals(second.getText()))
+			return new Token(TokenType.WHITESPACE, "\t", first.getConversions());
+		return first;
+	}
+
+}
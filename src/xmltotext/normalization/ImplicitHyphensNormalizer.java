@@ -5,9 +5,9 @@
  */
 package xmltotext.normalization;
 
-import java.util.ArrayList;
-
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenStage;
 import xmltotext.tokens.TokenType;
 
 /**
@@ -97,51 +97,59 @@ public class ImplicitHyphensNormalizer implements TokenSequenceNormalizer {
 	}
 	
 	@Override
-	public ArrayList<Token> normalizeTokenSequence(final ArrayList<Token> tokenSequence) {
-		final ArrayList<Token> result = new ArrayList<>(tokenSequence.size());
+	public TokenSink createStage(final TokenSink next) {
+		return new Stage(next);
+	}
+	
+	private class Stage extends TokenStage {
+		
+		private boolean pAfterLineBreak = false;
+		private Token pPendingMinus = null;
 		
-		boolean afterLineBreak = false;
-		Token pendingMinus = null;
-		for (final Token token : tokenSequence) {
+		public Stage(final TokenSink next) {
+			super(next);
+		}
+		
+		@Override
+		public void accept(final Token token) {
 			switch (token.getType()) {
 				case EXPLICIT_LINE_BREAK:
 				case IMPLICIT_LINE_BREAK:
-					afterLineBreak = true;
-					if (pendingMinus != null)
-						continue;
+					pAfterLineBreak = true;
+					if (pPendingMinus != null)
+						return;
 					break;
 				case POSSIBLE_HYPHENATION:
-					pendingMinus = token;
-					afterLineBreak = false;
-					continue;
+					pPendingMinus = token;
+					pAfterLineBreak = false;
+					return;
 				case TEXT:
 					final String text = token.getText();
-					if (afterLineBreak && (pendingMinus != null)) {
+					if (pAfterLineBreak && (pPendingMinus != null)) {
 						// Trennzeichenheuristik
 						if (startsWithUndOrOder(text)) {
-							result.add(pendingMinus);
-							result.add(new Token(TokenType.WHITESPACE, null));
+							next.accept(pPendingMinus);
+							next.accept(new Token(TokenType.WHITESPACE, null));
 						} else if (pNoHyphens || startsWithUppercase(text)) {
-							result.add(pendingMinus);
+							next.accept(pPendingMinus);
 						}
-						pendingMinus = null;
+						pPendingMinus = null;
 						break;
 					}
 				default:
-					if (pendingMinus != null) {
-						result.add(pendingMinus);
-						pendingMinus = null;
+					if (pPendingMinus != null) {
+						next.accept(pPendingMinus);
+						pPendingMinus = null;
 					}
-					afterLineBreak = false;
+					pAfterLineBreak = false;
 					break;
 			}
-			result.add(token);
+			next.accept(token);
 		}
 		
-		return result;
 	}
-
-	private static boolean startsWithUndOrOder(final String text) {
+	
+	static boolean startsWithUndOrOder(final String text) {
 		return startsWithWord(text, "und") || startsWithWord(text, "oder");
 	}
 
@@ -158,7 +166,7 @@ public class ImplicitHyphensNormalizer implements TokenSequenceNormalizer {
 		return (text.length() > l) && Character.isLetter(text.codePointAt(l));
 	}
 	
-	private static boolean startsWithUppercase(final String text) {
+	static boolean startsWithUppercase(final String text) {
 		final int firstCodePoint = text.codePointAt(0);
 		if (Character.isUpperCase(firstCodePoint)) {
 			if (Character.isUpperCase(text.codePointAt(Character.charCount(firstCodePoint))))
@@ -5,9 +5,19 @@
  */
 package xmltotext.normalization;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Function;
 
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenBuffer;
+import xmltotext.tokens.TokenCollector;
+import xmltotext.tokens.TokenSink;
+import xmltotext.tokens.TokenStage;
 import xmltotext.tokens.TokenType;
 import xmltotext.tokens.TokenTypeClass;
 
@@ -17,22 +27,27 @@ import xmltotext.tokens.TokenTypeClass;
  * This class also contains a method to convert a sequence of tokens
  * into a {@link String}, dealing with special tokens such as
  * line breaks (including paragraph boundaries) or whitespace.
+ * <p>
+ * Both are available for complete token sequences
+ * and as stages of the push-based token pipeline
+ * (see {@link TokenSink}).
+ * </p>
  */
 public class TokenSequenceNormalization {
 	
 	/**
 	 * Normalizes a token sequence.
 	 * <p>
-	 * The token sequence is normalized by calling the
-	 * {@link TokenSequenceNormalizer#normalizeTokenSequence(ArrayList)}
-	 * methods of the provided
+	 * The token sequence is normalized by the provided
 	 * {@link TokenSequenceNormalizer}
 	 * instances in the order in which they are returned by the
-	 * {@link Iterable}.
+	 * {@link Iterable}
+	 * (the sequence is pushed through a chain of their stages,
+	 * see {@link #createStage(Iterable, TokenSink)}).
 	 * </p>
 	 * <p>
-	 * Between the calls to the normalizers as well as before the first
-	 * and after the last call to a normalizer,
+	 * Between the normalizers as well as before the first
+	 * and after the last normalizer,
 	 * the token sequence is collapsed by
 	 * <ol>
 	 * <li>
@@ -132,62 +147,317 @@ public class TokenSequenceNormalization {
 	 * not {@code null},
 	 * and no element in it will be {@code null}
 	 */
-	public static ArrayList<Token> normalizeTokenSequence(ArrayList<Token> tokenSequence, final Iterable<? extends TokenSequenceNormalizer> normalizers) {
+	public static ArrayList<Token> normalizeTokenSequence(final ArrayList<Token> tokenSequence, final Iterable<? extends TokenSequenceNormalizer> normalizers) {
+		final TokenCollector collector = new TokenCollector(tokenSequence.size());
+		createStage(normalizers, collector).acceptSequence(tokenSequence);
+		return collector.getTokens();
+	}
+	
+	/**
+	 * Collapses a token sequence
+	 * (as described for
+	 * {@link #normalizeTokenSequence(ArrayList, Iterable)})
+	 * without applying any normalizer.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence to be collapsed;
+	 * neither this {@link ArrayList}
+	 * nor any element in it may be {@code null}
+	 * 
+	 * @return
+	 * the collapsed token sequence;
+	 * not {@code null},
+	 * and no element in it will be {@code null}
+	 */
+	public static ArrayList<Token> collapseTokenSequence(final ArrayList<Token> tokenSequence) {
+		final TokenCollector collector = new TokenCollector(tokenSequence.size());
+		createCollapsingStage(collector).acceptSequence(tokenSequence);
+		return collector.getTokens();
+	}
+	
+	/**
+	 * Normalizes a token sequence stored in a {@link TokenBuffer}
+	 * in the same way as
+	 * {@link #normalizeTokenSequence(ArrayList, Iterable)}.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence to be normalized;
+	 * not {@code null}
+	 * 
+	 * @param normalizers
+	 * the normalizers to apply (in order);
+	 * neither this {@link Iterable}
+	 * nor any element in it may be {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenBuffer} with the normalized token sequence;
+	 * not {@code null}
+	 */
+	public static TokenBuffer normalizeTokenSequence(final TokenBuffer tokenSequence, final Iterable<? extends TokenSequenceNormalizer> normalizers) {
+		final TokenBuffer result = new TokenBuffer(tokenSequence.size());
+		tokenSequence.replay(createStage(normalizers, result));
+		return result;
+	}
+	
+	/**
+	 * Normalizes those tokens stored in a {@link TokenBuffer}
+	 * that are supposed to appear in the output of a conversion type
+	 * in chunks, which are normalized concurrently
+	 * in a {@link ForkJoinPool},
+	 * and passes the normalized sequence on to a {@link TokenSink}
+	 * (followed by the end of the sequence).
+	 * <p>
+	 * The result is the same as pushing the tokens
+	 * through a single stage created by the factory,
+	 * provided that the stages normalize like the stages created by
+	 * {@link #createStage(Iterable, TokenSink)}
+	 * with the normalizers applied by {@link xmltotext.Normalization}.
+	 * Those only carry state from one token with {@link TokenTypeClass#TEXT}
+	 * to the next through a pending hyphen,
+	 * which is resolved by any token of type {@link TokenType#TEXT},
+	 * and the line breaks and whitespace between two such tokens
+	 * are collapsed into a single token.
+	 * So the sequence is cut at
+	 * {@link TokenType#PARAGRAPH_BOUNDARY} tokens
+	 * that follow a token of type {@link TokenType#TEXT}
+	 * (with only line breaks and whitespace in between),
+	 * and each chunk is normalized on its own.
+	 * Since a stage trims the line breaks and whitespace
+	 * at both ends of its sequence,
+	 * the chunks are joined by the token
+	 * that the line breaks and whitespace at the cut collapse into:
+	 * a {@link TokenType#PARAGRAPH_BOUNDARY}
+	 * with the text and conversion types of the first line break
+	 * after the last text of the chunk before the cut.
+	 * </p>
+	 * <p>
+	 * The chunks have at least the given number of tokens;
+	 * if the sequence cannot be cut,
+	 * it is normalized in the current thread.
+	 * The normalized chunks are passed on in the current thread.
+	 * </p>
+	 * 
+	 * @param tokenSequence
+	 * the {@link TokenBuffer} with the token sequence to be normalized,
+	 * which must not be modified until this method returns;
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link xmltotext.tokens.ConversionTypes})
+	 * 
+	 * @param stageFactory
+	 * creates a normalization stage for a chunk,
+	 * passing the normalized chunk on to the given {@link TokenSink};
+	 * called concurrently;
+	 * not {@code null}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @param pool
+	 * the {@link ForkJoinPool} to normalize the chunks in;
+	 * not {@code null}
+	 * 
+	 * @param minChunkSize
+	 * the minimum number of tokens in a chunk;
+	 * positive
+	 */
+	public static void normalizeInChunks(final TokenBuffer tokenSequence, final int conversionType, final Function<TokenSink, TokenSink> stageFactory, final TokenSink next, final ForkJoinPool pool, final int minChunkSize) {
+		final int size = tokenSequence.size();
+		final int chunkSize = Math.max(minChunkSize, size / (4 * pool.getParallelism()));
+		final ArrayList<Integer> cuts = new ArrayList<>();
+		final ArrayList<Token> seams = new ArrayList<>();
+		int lastCut = 0;
+		boolean afterPlainText = false;
+		int firstLineBreak = -1;
+		for (int i = 0; i < size; i++) {
+			if ((tokenSequence.getConversions(i) & conversionType) == 0)
+				continue;
+			final TokenType tokenType = tokenSequence.getType(i);
+			switch (tokenType.getTokenTypeClass()) {
+				case TEXT:
+					// empty texts are ignored by the normalization
+					if (tokenSequence.hasText(i) && (tokenSequence.getTextLength(i) == 0))
+						break;
+					afterPlainText = tokenType == TokenType.TEXT;
+					firstLineBreak = -1;
+					break;
+				case LINEBREAKS:
+					if (firstLineBreak < 0)
+						firstLineBreak = i;
+					if ((tokenType == TokenType.PARAGRAPH_BOUNDARY) && afterPlainText && (i - lastCut >= chunkSize)) {
+						cuts.add(i);
+						seams.add(new Token(TokenType.PARAGRAPH_BOUNDARY, tokenSequence.getText(firstLineBreak), tokenSequence.getConversions(firstLineBreak)));
+						lastCut = i;
+						// every chunk but the last one ends with a text
+						afterPlainText = false;
+					}
+					break;
+				default:
+					break;
+			}
+		}
+		if (cuts.isEmpty()) {
+			tokenSequence.replay(conversionType, stageFactory.apply(next));
+			return;
+		}
+		cuts.add(size);
+		
+		final ArrayList<ForkJoinTask<TokenBuffer>> chunks = new ArrayList<>(cuts.size());
+		try {
+			int from = 0;
+			for (final int to : cuts) {
+				final int chunkFrom = from;
+				chunks.add(pool.submit(() -> {
+					final TokenBuffer normalizedChunk = new TokenBuffer();
+					final TokenSink stage = stageFactory.apply(normalizedChunk);
+					tokenSequence.push(conversionType, stage, chunkFrom, to);
+					stage.end();
+					return normalizedChunk;
+				}));
+				from = to;
+			}
+			// a seam is only passed on between two normalized texts
+			boolean output = false;
+			Token seam = null;
+			for (int i = 0; i < chunks.size(); i++) {
+				final TokenBuffer normalizedChunk = chunks.get(i).join();
+				if (normalizedChunk.size() > 0) {
+					if (seam != null)
+						next.accept(seam);
+					normalizedChunk.push(conversionType, next);
+					output = true;
+					seam = null;
+				}
+				if (output && (seam == null) && (i < seams.size()))
+					seam = seams.get(i);
+			}
+			next.end();
+		} finally {
+			for (final ForkJoinTask<TokenBuffer> chunk : chunks)
+				chunk.cancel(false);
+		}
+	}
+	
+	/**
+	 * Creates a pipeline stage that normalizes the token sequence
+	 * pushed into it in the same way as
+	 * {@link #normalizeTokenSequence(ArrayList, Iterable)}
+	 * and passes the normalized sequence on to another
+	 * {@link TokenSink}.
+	 * <p>
+	 * The stage is a chain of collapsing stages
+	 * (see {@link #createCollapsingStage(TokenSink)})
+	 * and the stages of the normalizers
+	 * (see {@link TokenSequenceNormalizer#createStage(TokenSink)}).
+	 * Each token flows through the chain once;
+	 * no stage holds back more than a few tokens.
+	 * </p>
+	 * 
+	 * @param normalizers
+	 * the normalizers to apply (in order);
+	 * neither this {@link Iterable}
+	 * nor any element in it may be {@code null}
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink} for a single token sequence;
+	 * not {@code null}
+	 */
+	public static TokenSink createStage(final Iterable<? extends TokenSequenceNormalizer> normalizers, final TokenSink next) {
+		final ArrayList<TokenSequenceNormalizer> normalizerList = new ArrayList<>();
 		for (final TokenSequenceNormalizer normalizer : normalizers)
-			tokenSequence = normalizer.normalizeTokenSequence(collapseTokenSequence(tokenSequence));
-		return collapseTokenSequence(tokenSequence);
+			normalizerList.add(normalizer);
+		
+		TokenSink stage = createCollapsingStage(next);
+		for (int i = normalizerList.size() - 1; i >= 0; i--)
+			stage = createCollapsingStage(normalizerList.get(i).createStage(stage));
+		return stage;
 	}
 	
-	private static ArrayList<Token> collapseTokenSequence(final ArrayList<Token> tokenSequence) {
-		return removeBoundaryLinebreaks(removeBoundarySpaces(collapseRuns(tokenSequence)));
+	/**
+	 * Creates a pipeline stage that collapses
+	 * the token sequence pushed into it
+	 * (as described for
+	 * {@link #normalizeTokenSequence(ArrayList, Iterable)})
+	 * and passes the collapsed sequence on to another
+	 * {@link TokenSink}.
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the collapsed sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink} for a single token sequence;
+	 * not {@code null}
+	 */
+	public static TokenSink createCollapsingStage(final TokenSink next) {
+		return new RunCollapsingStage(
+				new BoundaryRemovingStage(TokenTypeClass.LINEBREAKS, TokenTypeClass.WHITESPACE,
+						new BoundaryRemovingStage(null, TokenTypeClass.LINEBREAKS, next)));
 	}
 	
-	private static ArrayList<Token> collapseRuns(final ArrayList<Token> tokenSequence) {
-		final ArrayList<Token> result = new ArrayList<>(tokenSequence.size());
+	private static class RunCollapsingStage extends TokenStage {
+		
+		private Run pRun = null;
+		
+		public RunCollapsingStage(final TokenSink next) {
+			super(next);
+		}
 		
-		Run run = null;
-		for (final Token token : tokenSequence) {
+		@Override
+		public void accept(final Token token) {
 			final TokenType tokenType = token.getType();
-			final TokenTypeClass tokenTypeClass = tokenType.getTokenTypeClass();;
+			final TokenTypeClass tokenTypeClass = tokenType.getTokenTypeClass();
 			
-			if ((run != null) && (run.runClass != tokenTypeClass)) {
-				appendRun(run, result);
-				run = null;
+			if ((pRun != null) && (pRun.runClass != tokenTypeClass)) {
+				appendRun(pRun, next);
+				pRun = null;
 			}
 			
 			if (tokenTypeClass == TokenTypeClass.TEXT) {
 				final String text = token.getText();
 				if ((text != null) && "".equals(text))
-					continue;
-				result.add(token);
-				continue;
+					return;
+				next.accept(token);
+				return;
 			}
 			
-			if (run == null)
-				run = new Run(tokenType, tokenTypeClass, token.getText(), token.getConversions());
+			if (pRun == null)
+				pRun = new Run(tokenType, tokenTypeClass, token.getText(), token.getConversions());
 			
-			switch (run.runClass) {
+			switch (pRun.runClass) {
 				case LINEBREAKS:
-					lineBreakPrecedence(run, token, tokenType);
+					lineBreakPrecedence(pRun, token, tokenType);
 					break;
 				case WHITESPACE:
-					whitespacePrecedence(run, token, tokenType);
+					whitespacePrecedence(pRun, token, tokenType);
 					break;
 				default:
 			}
 		}
 		
-		if (run != null)
-			appendRun(run, result);
+		@Override
+		public void end() {
+			if (pRun != null) {
+				appendRun(pRun, next);
+				pRun = null;
+			}
+			next.end();
+		}
 		
-		return result;
 	}
 	
 	private static void lineBreakPrecedence(final Run run, final Token token, final TokenType tokenType) {
 		run.runType = lineBreakPrecedence(run.runType, tokenType);
 	}
 	
-	private static TokenType lineBreakPrecedence(final TokenType runType, final TokenType tokenType) {
+	static TokenType lineBreakPrecedence(final TokenType runType, final TokenType tokenType) {
 		switch (runType) {
 			case PAGE_BREAK:
 				if (tokenType == TokenType.PAGE_BREAK)
@@ -212,40 +482,55 @@ public class TokenSequenceNormalization {
 			run.runText = "\t";
 	}
 	
-	private static void appendRun(final Run run, final ArrayList<Token> target) {
-		target.add(new Token(run.runType, run.runText, run.runConversionTypes));
+	private static void appendRun(final Run run, final TokenSink target) {
+		target.accept(new Token(run.runType, run.runText, run.runConversionTypes));
 	}
 	
-	private static ArrayList<Token> removeBoundarySpaces(final ArrayList<Token> tokenSequence) {
-		return removeBoundaryItems(tokenSequence, TokenTypeClass.LINEBREAKS, TokenTypeClass.WHITESPACE);
-	}
-	
-	private static ArrayList<Token> removeBoundaryLinebreaks(final ArrayList<Token> tokenSequence) {
-		return removeBoundaryItems(tokenSequence, null, TokenTypeClass.LINEBREAKS);
-	}
-	
-	private static ArrayList<Token> removeBoundaryItems(final ArrayList<Token> tokenSequence, final TokenTypeClass boundaryClass, final TokenTypeClass classToRemove) {
-		final int n = tokenSequence.size();
-		final ArrayList<Token> result = new ArrayList<>(n);
+	/**
+	 * Removes tokens of a certain {@link TokenTypeClass}
+	 * unless they are between tokens of other classes
+	 * (excluding the boundary class).
+	 * Tokens to be removed are held back until it is clear
+	 * whether they are followed by such a token.
+	 */
+	private static class BoundaryRemovingStage extends TokenStage {
+		
+		private final TokenTypeClass pBoundaryClass;
+		private final TokenTypeClass pClassToRemove;
 		
-		int start = -1;
-		int i_next;
-		for (int i = 0; i < n; i = i_next) {
-			i_next = i + 1;
-			final Token token = tokenSequence.get(i);
+		private final ArrayList<Token> pPending = new ArrayList<>();
+		private boolean pAfterOther = false;
+		
+		public BoundaryRemovingStage(final TokenTypeClass boundaryClass, final TokenTypeClass classToRemove, final TokenSink next) {
+			super(next);
+			pBoundaryClass = boundaryClass;
+			pClassToRemove = classToRemove;
+		}
+		
+		@Override
+		public void accept(final Token token) {
 			final TokenTypeClass tokenTypeClass = token.getType().getTokenTypeClass();
-			if (tokenTypeClass == boundaryClass) {
-				start = -1;
-				result.add(token);
-			} else if (tokenTypeClass != classToRemove) {
-				if (start >= 0)
-					result.addAll(tokenSequence.subList(start, i));
-				result.add(token);
-				start = i_next;
+			if (tokenTypeClass == pBoundaryClass) {
+				pPending.clear();
+				pAfterOther = false;
+				next.accept(token);
+			} else if (tokenTypeClass != pClassToRemove) {
+				for (final Token pendingToken : pPending)
+					next.accept(pendingToken);
+				pPending.clear();
+				next.accept(token);
+				pAfterOther = true;
+			} else if (pAfterOther) {
+				pPending.add(token);
 			}
 		}
 		
-		return result;
+		@Override
+		public void end() {
+			pPending.clear();
+			next.end();
+		}
+		
 	}
 	
 	/**
@@ -293,30 +578,164 @@ public class TokenSequenceNormalization {
 	 */
 	public static String tokenSequenceToString(final ArrayList<Token> tokenSequence) {
 		final StringBuilder sb = new StringBuilder();
-		
-		for (final Token token : tokenSequence) {
-			final String text = token.getText();
-			if (text == null)
-				specialTokenToString(token, token.getType(), sb);
+		createSerializer(sb).acceptSequence(tokenSequence);
+		return sb.toString();
+	}
+	
+	/**
+	 * Converts a token sequence stored in a {@link TokenBuffer}
+	 * into a {@link String}
+	 * in the same way as
+	 * {@link #tokenSequenceToString(ArrayList)}.
+	 * The token texts are copied directly from the buffer.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence to be converted into a {@link String};
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link String} constructed as described for
+	 * {@link #tokenSequenceToString(ArrayList)};
+	 * not {@code null}
+	 */
+	public static String tokenSequenceToString(final TokenBuffer tokenSequence) {
+		final StringBuilder sb = new StringBuilder();
+		final int n = tokenSequence.size();
+		for (int i = 0; i < n; i++) {
+			if (tokenSequence.hasText(i))
+				tokenSequence.appendText(i, sb);
 			else
-				sb.append(text);
+				sb.append(specialTokenText(tokenSequence.getType(i)));
 		}
-		
 		return sb.toString();
 	}
 	
-	private static void specialTokenToString(final Token token, final TokenType tokenType, final StringBuilder sb) {
+	/**
+	 * Converts a token sequence stored in a {@link TokenBuffer}
+	 * into text
+	 * in the same way as
+	 * {@link #tokenSequenceToString(ArrayList)}
+	 * and writes the text to a {@link Writer}.
+	 * The token texts are written directly from the buffer.
+	 * The {@link Writer} is neither flushed nor closed.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence to be converted into text;
+	 * not {@code null}
+	 * 
+	 * @param writer
+	 * the {@link Writer} to write the text to;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if the {@link Writer} throws an {@link IOException}
+	 */
+	public static void writeTokenSequence(final TokenBuffer tokenSequence, final Writer writer) throws IOException {
+		final int n = tokenSequence.size();
+		for (int i = 0; i < n; i++) {
+			if (tokenSequence.hasText(i))
+				tokenSequence.writeText(i, writer);
+			else
+				writer.write(specialTokenText(tokenSequence.getType(i)));
+		}
+	}
+	
+	/**
+	 * Creates a {@link TokenSink} that converts
+	 * the token sequence pushed into it into text
+	 * in the same way as
+	 * {@link #tokenSequenceToString(ArrayList)}
+	 * and appends the text to a {@link StringBuilder}.
+	 * 
+	 * @param sb
+	 * the {@link StringBuilder} to append the text to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink};
+	 * not {@code null}
+	 */
+	public static TokenSink createSerializer(final StringBuilder sb) {
+		return new TokenSink() {
+			
+			@Override
+			public void accept(final Token token) {
+				sb.append(tokenText(token));
+			}
+			
+			@Override
+			public void end() {
+				// nothing to do
+			}
+			
+		};
+	}
+	
+	/**
+	 * Creates a {@link TokenSink} that converts
+	 * the token sequence pushed into it into text
+	 * in the same way as
+	 * {@link #tokenSequenceToString(ArrayList)}
+	 * and writes the text to a {@link Writer}.
+	 * <p>
+	 * The text is never materialized as a whole;
+	 * with a {@link xmltotext.util.ChannelWriter},
+	 * memory use does not depend on the size of the output.
+	 * When the end of the sequence is signalled,
+	 * the {@link Writer} is flushed (but not closed).
+	 * Since {@link TokenSink} methods cannot throw checked exceptions,
+	 * an {@link IOException} thrown by the {@link Writer}
+	 * is wrapped in an {@link UncheckedIOException}.
+	 * </p>
+	 * 
+	 * @param writer
+	 * the {@link Writer} to write the text to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink};
+	 * not {@code null}
+	 */
+	public static TokenSink createSerializer(final Writer writer) {
+		return new TokenSink() {
+			
+			@Override
+			public void accept(final Token token) {
+				try {
+					writer.write(tokenText(token));
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			
+			@Override
+			public void end() {
+				try {
+					writer.flush();
+				} catch (final IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+			
+		};
+	}
+	
+	private static String tokenText(final Token token) {
+		final String text = token.getText();
+		if (text == null)
+			return specialTokenText(token.getType());
+		return text;
+	}
+	
+	private static String specialTokenText(final TokenType tokenType) {
 		switch (tokenType) {
 			case PARAGRAPH_BOUNDARY:
-				sb.appendCodePoint('\n');
-				// fall-through
+				return "\n\n";
 			case EXPLICIT_LINE_BREAK:
 			case IMPLICIT_LINE_BREAK:
-				sb.appendCodePoint('\n');
-				break;
+				return "\n";
 			case WHITESPACE:
-				sb.appendCodePoint(' ');
-				break;
+				return " ";
 			default:
 				throw new IllegalArgumentException();
 		}
@@ -8,15 +8,50 @@ package xmltotext.normalization;
 import java.util.ArrayList;
 
 import xmltotext.tokens.Token;
+import xmltotext.tokens.TokenCollector;
+import xmltotext.tokens.TokenSink;
 
 /**
  * Can normalize token sequences
  * (with respect to some normalization criterion).
+ * <p>
+ * Normalizers work as stages of the push-based token pipeline
+ * (see {@link #createStage(TokenSink)}),
+ * looking at a bounded number of tokens at a time.
+ * {@link #normalizeTokenSequence(ArrayList)}
+ * adapts this to complete token sequences.
+ * </p>
  */
 public interface TokenSequenceNormalizer {
 	
+	/**
+	 * Creates a pipeline stage that normalizes
+	 * the token sequence pushed into it
+	 * and passes the normalized sequence on to another
+	 * {@link TokenSink}.
+	 * <p>
+	 * The stage is stateful and can only be used
+	 * for a single token sequence;
+	 * the normalizer itself can be used to create any number
+	 * of (independent) stages.
+	 * </p>
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass the normalized sequence on to;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link TokenSink};
+	 * not {@code null}
+	 */
+	TokenSink createStage(TokenSink next);
+	
 	/**
 	 * Normalizes a token sequence.
+	 * <p>
+	 * The default implementation pushes the sequence
+	 * through a stage created with {@link #createStage(TokenSink)}.
+	 * </p>
 	 * 
 	 * @param tokenSequence
 	 * the token sequence to be normalized;
@@ -28,6 +63,10 @@ public interface TokenSequenceNormalizer {
 	 * not {@code null},
 	 * and no element in it will be {@code null}
 	 */
-	ArrayList<Token> normalizeTokenSequence(ArrayList<Token> tokenSequence);
+	default ArrayList<Token> normalizeTokenSequence(final ArrayList<Token> tokenSequence) {
+		final TokenCollector collector = new TokenCollector(tokenSequence.size());
+		createStage(collector).acceptSequence(tokenSequence);
+		return collector.getTokens();
+	}
 	
 }
@@ -0,0 +1,160 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.sharding;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * One of several parts into which the input files of a conversion
+ * are divided, so that the parts can be converted independently
+ * (for example on different machines).
+ * <p>
+ * A shard is identified by its index and the number of shards,
+ * written as {@code "index/count"} with the index starting at 0.
+ * Every input file is assigned to exactly one shard
+ * by a hash of its name (its path relative to the input directory
+ * or container, with {@code /} as separator).
+ * The hash function is fixed (64-bit FNV-1a of the UTF-8 encoded name),
+ * so the assignment does not depend on the machine, the Java version,
+ * or the order in which the files are listed.
+ * </p>
+ * <p>
+ * Instances of this class are immutable.
+ * </p>
+ */
+public final class Shard {
+	
+	private static final long FNV_OFFSET_BASIS = 0xCBF29CE484222325L;
+	private static final long FNV_PRIME = 0x100000001B3L;
+	
+	private final int pIndex;
+	private final int pCount;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param index
+	 * the index of the shard,
+	 * from 0 (inclusive) to {@code count} (exclusive)
+	 * 
+	 * @param count
+	 * the number of shards;
+	 * positive
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the index or the number of shards is out of range
+	 */
+	public Shard(final int index, final int count) {
+		if (count <= 0 || index < 0 || index >= count)
+			throw new IllegalArgumentException("invalid shard: " + index + "/" + count);
+		pIndex = index;
+		pCount = count;
+	}
+	
+	/**
+	 * Parses a shard in the form {@code "index/count"}.
+	 * 
+	 * @param shardString
+	 * the string to parse;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the {@link Shard};
+	 * not {@code null}
+	 * 
+	 * @throws IllegalArgumentException
+	 * if the string is not a valid shard
+	 */
+	public static Shard parse(final String shardString) {
+		final int slash = shardString.indexOf('/');
+		if (slash < 0)
+			throw new IllegalArgumentException("invalid shard: " + shardString);
+		try {
+			return new Shard(Integer.parseInt(shardString.substring(0, slash)), Integer.parseInt(shardString.substring(slash + 1)));
+		} catch (final NumberFormatException e) {
+			throw new IllegalArgumentException("invalid shard: " + shardString, e);
+		}
+	}
+	
+	/**
+	 * Returns the index of this shard.
+	 * 
+	 * @return
+	 * the index, from 0 (inclusive) to {@link #getCount()} (exclusive)
+	 */
+	public int getIndex() {
+		return pIndex;
+	}
+	
+	/**
+	 * Returns the number of shards.
+	 * 
+	 * @return
+	 * the number of shards;
+	 * positive
+	 */
+	public int getCount() {
+		return pCount;
+	}
+	
+	/**
+	 * Checks whether an input file is assigned to this shard.
+	 * 
+	 * @param name
+	 * the name of the input file
+	 * (its path relative to the input directory or container,
+	 * with {@code /} as separator);
+	 * not {@code null}
+	 * 
+	 * @return
+	 * whether the file is assigned to this shard
+	 */
+	public boolean contains(final String name) {
+		return indexOf(name, pCount) == pIndex;
+	}
+	
+	/**
+	 * Determines the shard an input file is assigned to.
+	 * 
+	 * @param name
+	 * the name of the input file;
+	 * not {@code null}
+	 * 
+	 * @param count
+	 * the number of shards;
+	 * positive
+	 * 
+	 * @return
+	 * the index of the shard
+	 */
+	public static int indexOf(final String name, final int count) {
+		long hash = FNV_OFFSET_BASIS;
+		for (final byte b : name.getBytes(StandardCharsets.UTF_8)) {
+			hash ^= b & 0xFF;
+			hash *= FNV_PRIME;
+		}
+		return (int) Long.remainderUnsigned(hash, count);
+	}
+	
+	@Override
+	public boolean equals(final Object obj) {
+		if (!(obj instanceof Shard))
+			return false;
+		final Shard other = (Shard) obj;
+		return pIndex == other.pIndex && pCount == other.pCount;
+	}
+	
+	@Override
+	public int hashCode() {
+		return 31 * pIndex + pCount;
+	}
+	
+	@Override
+	public String toString() {
+		return pIndex + "/" + pCount;
+	}
+	
+}
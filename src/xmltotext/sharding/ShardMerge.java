@@ -0,0 +1,173 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.sharding;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Combines the {@link ShardSummary summaries} of all shards of a conversion
+ * and checks that together they cover every input file exactly once.
+ * <p>
+ * The check fails if
+ * </p>
+ * <ul>
+ * <li>the summaries disagree on the number of shards
+ * or on the version of the conversion logic,</li>
+ * <li>a shard is missing or summarized more than once,</li>
+ * <li>a file is recorded by a shard it is not assigned to
+ * or by more than one shard,</li>
+ * <li>or (if the names of the input files are given)
+ * an input file is not recorded by any shard
+ * or a recorded file is not an input file.</li>
+ * </ul>
+ */
+public class ShardMerge {
+	
+	/**
+	 * How many names are listed for each kind of problem.
+	 */
+	private static final int MAX_LISTED_NAMES = 10;
+	
+	private final List<ShardSummary> pSummaries;
+	private final ArrayList<String> pProblems = new ArrayList<>();
+	private long pFileCount = 0;
+	private long pBytes = 0;
+	private long pMaxMillis = 0;
+	private long pTotalMillis = 0;
+	
+	/**
+	 * Combines and checks summaries.
+	 * 
+	 * @param summaries
+	 * the summaries of all shards;
+	 * not {@code null}
+	 * 
+	 * @param inputNames
+	 * the names of all input files,
+	 * or {@code null} to check the summaries only against each other
+	 */
+	public ShardMerge(final List<ShardSummary> summaries, final Iterable<String> inputNames) {
+		pSummaries = summaries;
+		if (summaries.isEmpty()) {
+			pProblems.add("no shard summaries");
+			return;
+		}
+		
+		final ShardSummary first = summaries.get(0);
+		final int count = first.getShard().getCount();
+		final ShardSummary[] summaryByIndex = new ShardSummary[count];
+		final HashMap<String, Shard> shardByName = new HashMap<>();
+		final ArrayList<String> wrongShard = new ArrayList<>();
+		final ArrayList<String> duplicates = new ArrayList<>();
+		for (final ShardSummary summary : summaries) {
+			final Shard shard = summary.getShard();
+			if (shard.getCount() != count) {
+				pProblems.add("shard " + shard + " does not belong to a conversion with " + count + " shards");
+				continue;
+			}
+			if (summary.getConverterVersion() != first.getConverterVersion())
+				pProblems.add("shard " + shard + " was converted by converter version " + summary.getConverterVersion() + ", shard " + first.getShard() + " by version " + first.getConverterVersion());
+			if (summaryByIndex[shard.getIndex()] != null) {
+				pProblems.add("shard " + shard + " is summarized more than once");
+				continue;
+			}
+			summaryByIndex[shard.getIndex()] = summary;
+			pFileCount += summary.getFiles().size();
+			pBytes += summary.getBytes();
+			pMaxMillis = Math.max(pMaxMillis, summary.getMillis());
+			pTotalMillis += summary.getMillis();
+			for (final String name : summary.getFiles().keySet()) {
+				if (!shard.contains(name))
+					wrongShard.add(name + " (in shard " + shard + ")");
+				if (shardByName.putIfAbsent(name, shard) != null)
+					duplicates.add(name);
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			if (summaryByIndex[i] == null)
+				pProblems.add("shard " + new Shard(i, count) + " is missing");
+		}
+		addProblem("files recorded by a shard they are not assigned to", wrongShard);
+		addProblem("files recorded by more than one shard", duplicates);
+		
+		if (inputNames != null) {
+			final HashSet<String> inputNameSet = new HashSet<>();
+			final ArrayList<String> missing = new ArrayList<>();
+			for (final String name : inputNames) {
+				inputNameSet.add(name);
+				final Shard shard = shardByName.get(name);
+				// input files of missing shards are reported as missing shards
+				if ((shard == null) && (summaryByIndex[Shard.indexOf(name, count)] != null))
+					missing.add(name);
+			}
+			final ArrayList<String> unknown = new ArrayList<>();
+			for (final String name : shardByName.keySet()) {
+				if (!inputNameSet.contains(name))
+					unknown.add(name);
+			}
+			unknown.sort(null);
+			addProblem("input files not converted by their shard", missing);
+			addProblem("converted files that are not input files", unknown);
+		}
+	}
+	
+	private void addProblem(final String description, final List<String> names) {
+		if (names.isEmpty())
+			return;
+		final StringBuilder sb = new StringBuilder();
+		sb.append(names.size()).append(' ').append(description).append(':');
+		for (int i = 0; i < Math.min(names.size(), MAX_LISTED_NAMES); i++)
+			sb.append("\n  ").append(names.get(i));
+		if (names.size() > MAX_LISTED_NAMES)
+			sb.append("\n  ...");
+		pProblems.add(sb.toString());
+	}
+	
+	/**
+	 * Checks whether the summaries cover every input file exactly once.
+	 * 
+	 * @return
+	 * {@code true} if no problems were found;
+	 * otherwise {@code false}
+	 */
+	public boolean isComplete() {
+		return pProblems.isEmpty();
+	}
+	
+	/**
+	 * Returns the problems found.
+	 * 
+	 * @return
+	 * a list of descriptions of the problems found,
+	 * empty if there are none;
+	 * not {@code null}
+	 */
+	public List<String> getProblems() {
+		return pProblems;
+	}
+	
+	/**
+	 * Prints the totals of all shards
+	 * and the problems found.
+	 * 
+	 * @param out
+	 * the {@link PrintStream} to print to;
+	 * not {@code null}
+	 */
+	public void print(final PrintStream out) {
+		for (final ShardSummary summary : pSummaries)
+			out.println("shard " + summary.getShard() + ": " + summary.getFiles().size() + " files, " + summary.getBytes() + " bytes, " + summary.getMillis() + " ms");
+		out.println("total: " + pFileCount + " files, " + pBytes + " bytes, " + pTotalMillis + " ms (slowest shard: " + pMaxMillis + " ms)");
+		for (final String problem : pProblems)
+			out.println(problem);
+		out.println(isComplete() ? "every input file has been converted exactly once" : "the shards do not cover every input file exactly once");
+	}
+	
+}
@@ -0,0 +1,311 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.sharding;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import xmltotext.Version;
+
+/**
+ * Summarizes the conversion of one {@link Shard}:
+ * the input files converted, their total size
+ * and the time the conversion took.
+ * <p>
+ * A summary is stored as a UTF-8 text file:
+ * a header line, lines with the shard, the
+ * {@link Version#CONVERTER_VERSION version} of the conversion logic,
+ * the number of files, their total size in bytes
+ * and the time in milliseconds,
+ * followed by one line per file with its size and name
+ * (in the order in which the files were converted).
+ * Backslashes, tabs and line breaks in names are escaped with a backslash.
+ * </p>
+ * <p>
+ * The summaries of all shards of a conversion can be checked
+ * with {@link ShardMerge}.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ */
+public class ShardSummary {
+	
+	private static final String HEADER = "xmltotext-shard-summary 1";
+	
+	private final Shard pShard;
+	private final int pConverterVersion;
+	private final LinkedHashMap<String, Long> pFiles = new LinkedHashMap<>();
+	private long pBytes = 0;
+	private long pMillis = 0;
+	
+	/**
+	 * Initializes a new, empty summary for a shard
+	 * converted by the current version of the conversion logic.
+	 * 
+	 * @param shard
+	 * the {@link Shard};
+	 * not {@code null}
+	 */
+	public ShardSummary(final Shard shard) {
+		this(shard, Version.CONVERTER_VERSION);
+	}
+	
+	private ShardSummary(final Shard shard, final int converterVersion) {
+		pShard = shard;
+		pConverterVersion = converterVersion;
+	}
+	
+	/**
+	 * Returns the name of the summary file of a shard
+	 * in an output directory.
+	 * 
+	 * @param shard
+	 * the {@link Shard};
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the file name;
+	 * not {@code null}
+	 */
+	public static String fileName(final Shard shard) {
+		return ".xmltotext-shard-" + shard.getIndex() + "-of-" + shard.getCount();
+	}
+	
+	/**
+	 * Records that an input file has been converted.
+	 * 
+	 * @param name
+	 * the name of the input file;
+	 * not {@code null}
+	 * 
+	 * @param size
+	 * the size of the input file in bytes
+	 */
+	public void addFile(final String name, final long size) {
+		final Long previousSize = pFiles.put(name, size);
+		if (previousSize != null)
+			pBytes -= previousSize.longValue();
+		pBytes += size;
+	}
+	
+	/**
+	 * Sets the time the conversion of the shard took.
+	 * 
+	 * @param millis
+	 * the time in milliseconds
+	 */
+	public void setMillis(final long millis) {
+		pMillis = millis;
+	}
+	
+	/**
+	 * Returns the summarized shard.
+	 * 
+	 * @return
+	 * the {@link Shard};
+	 * not {@code null}
+	 */
+	public Shard getShard() {
+		return pShard;
+	}
+	
+	/**
+	 * Returns the version of the conversion logic
+	 * the shard was converted with.
+	 * 
+	 * @return
+	 * the {@link Version#CONVERTER_VERSION version}
+	 */
+	public int getConverterVersion() {
+		return pConverterVersion;
+	}
+	
+	/**
+	 * Returns the converted input files.
+	 * 
+	 * @return
+	 * an unmodifiable map from the names of the files to their sizes,
+	 * in the order in which the files were recorded;
+	 * not {@code null}
+	 */
+	public Map<String, Long> getFiles() {
+		return Collections.unmodifiableMap(pFiles);
+	}
+	
+	/**
+	 * Returns the total size of the converted input files.
+	 * 
+	 * @return
+	 * the size in bytes
+	 */
+	public long getBytes() {
+		return pBytes;
+	}
+	
+	/**
+	 * Returns the time the conversion of the shard took.
+	 * 
+	 * @return
+	 * the time in milliseconds
+	 */
+	public long getMillis() {
+		return pMillis;
+	}
+	
+	/**
+	 * Writes this summary to a file.
+	 * The summary is written to a temporary file first,
+	 * which then replaces the file atomically (where supported).
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public void write(final Path file) throws IOException {
+		final Path tempFile = file.resolveSibling(file.getFileName().toString() + ".tmp");
+		try (final BufferedWriter writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+			writer.write(HEADER);
+			writer.write('\n');
+			writeField(writer, "shard", pShard.toString());
+			writeField(writer, "converter-version", Integer.toString(pConverterVersion));
+			writeField(writer, "files", Integer.toString(pFiles.size()));
+			writeField(writer, "bytes", Long.toString(pBytes));
+			writeField(writer, "millis", Long.toString(pMillis));
+			for (final Map.Entry<String, Long> entry : pFiles.entrySet())
+				writeField(writer, "file", entry.getValue() + "\t" + escape(entry.getKey()));
+		}
+		try {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (final AtomicMoveNotSupportedException e) {
+			Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+	}
+	
+	/**
+	 * Reads a summary from a file.
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the {@link ShardSummary};
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * or if the file is not a complete summary
+	 */
+	public static ShardSummary read(final Path file) throws IOException {
+		try (final BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+			if (!HEADER.equals(reader.readLine()))
+				throw new IOException("not a shard summary: " + file);
+			try {
+				final Shard shard = Shard.parse(readField(reader, "shard", file));
+				final ShardSummary summary = new ShardSummary(shard, Integer.parseInt(readField(reader, "converter-version", file)));
+				final int fileCount = Integer.parseInt(readField(reader, "files", file));
+				final long bytes = Long.parseLong(readField(reader, "bytes", file));
+				summary.setMillis(Long.parseLong(readField(reader, "millis", file)));
+				for (int i = 0; i < fileCount; i++) {
+					final String value = readField(reader, "file", file);
+					final int tab = value.indexOf('\t');
+					if (tab < 0)
+						throw new IOException("damaged shard summary: " + file);
+					summary.addFile(unescape(value.substring(tab + 1)), Long.parseLong(value.substring(0, tab)));
+				}
+				if ((reader.readLine() != null) || (summary.pFiles.size() != fileCount) || (summary.pBytes != bytes))
+					throw new IOException("damaged shard summary: " + file);
+				return summary;
+			} catch (final IllegalArgumentException e) {
+				// also covers NumberFormatException
+				throw new IOException("damaged shard summary: " + file, e);
+			}
+		}
+	}
+	
+	private static void writeField(final BufferedWriter writer, final String key, final String value) throws IOException {
+		writer.write(key);
+		writer.write(' ');
+		writer.write(value);
+		writer.write('\n');
+	}
+	
+	private static String readField(final BufferedReader reader, final String key, final Path file) throws IOException {
+		final String line = reader.readLine();
+		if ((line == null) || !line.startsWith(key + " "))
+			throw new IOException("damaged shard summary: " + file);
+		return line.substring(key.length() + 1);
+	}
+	
+	private static String escape(final String name) {
+		final StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			switch (c) {
+				case '\\':
+					sb.append("\\\\");
+					break;
+				case '\t':
+					sb.append("\\t");
+					break;
+				case '\n':
+					sb.append("\\n");
+					break;
+				case '\r':
+					sb.append("\\r");
+					break;
+				default:
+					sb.append(c);
+					break;
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String unescape(final String name) throws IOException {
+		final StringBuilder sb = new StringBuilder(name.length());
+		for (int i = 0; i < name.length(); i++) {
+			final char c = name.charAt(i);
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			if (++i == name.length())
+				throw new IOException("damaged shard summary: invalid escape in " + name);
+			switch (name.charAt(i)) {
+				case '\\':
+					sb.append('\\');
+					break;
+				case 't':
+					sb.append('\t');
+					break;
+				case 'n':
+					sb.append('\n');
+					break;
+				case 'r':
+					sb.append('\r');
+					break;
+				default:
+					throw new IOException("damaged shard summary: invalid escape in " + name);
+			}
+		}
+		return sb.toString();
+	}
+	
+}
@@ -0,0 +1,161 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.stats;
+
+/**
+ * The time, bytes and tokens recorded for each {@link Stage}
+ * of the conversion of one input file.
+ * Stages run for several conversion types accumulate.
+ * <p>
+ * Instances of this class are not thread-safe;
+ * an instance is filled by the thread converting the file
+ * and then passed on to the {@link RunStatistics}.
+ * </p>
+ */
+public class FileStatistics {
+	
+	private static final int STAGE_COUNT = Stage.values().length;
+	
+	private final String pName;
+	private final long[] pNanos = new long[STAGE_COUNT];
+	private final boolean[] pRecorded = new boolean[STAGE_COUNT];
+	private final long[] pBytesIn = new long[STAGE_COUNT];
+	private final long[] pBytesOut = new long[STAGE_COUNT];
+	private final long[] pTokensIn = new long[STAGE_COUNT];
+	private final long[] pTokensOut = new long[STAGE_COUNT];
+	
+	/**
+	 * Initializes new, empty statistics for an input file.
+	 * 
+	 * @param name
+	 * the name of the input file;
+	 * not {@code null}
+	 */
+	public FileStatistics(final String name) {
+		pName = name;
+	}
+	
+	/**
+	 * Records time spent in a stage.
+	 * 
+	 * @param stage
+	 * the {@link Stage};
+	 * not {@code null}
+	 * 
+	 * @param nanos
+	 * the time in nanoseconds
+	 */
+	public void addTime(final Stage stage, final long nanos) {
+		pNanos[stage.ordinal()] += nanos;
+		pRecorded[stage.ordinal()] = true;
+	}
+	
+	/**
+	 * Records bytes processed by a stage.
+	 * 
+	 * @param stage
+	 * the {@link Stage};
+	 * not {@code null}
+	 * 
+	 * @param in
+	 * the number of bytes consumed
+	 * 
+	 * @param out
+	 * the number of bytes produced
+	 */
+	public void addBytes(final Stage stage, final long in, final long out) {
+		pBytesIn[stage.ordinal()] += in;
+		pBytesOut[stage.ordinal()] += out;
+	}
+	
+	/**
+	 * Records tokens processed by a stage.
+	 * 
+	 * @param stage
+	 * the {@link Stage};
+	 * not {@code null}
+	 * 
+	 * @param in
+	 * the number of tokens consumed
+	 * 
+	 * @param out
+	 * the number of tokens produced
+	 */
+	public void addTokens(final Stage stage, final long in, final long out) {
+		pTokensIn[stage.ordinal()] += in;
+		pTokensOut[stage.ordinal()] += out;
+	}
+	
+	/**
+	 * Returns the name of the input file.
+	 * 
+	 * @return
+	 * the name;
+	 * not {@code null}
+	 */
+	public String getName() {
+		return pName;
+	}
+	
+	/**
+	 * Checks whether the file went through a stage
+	 * (parsing, for example, is not recorded with the streaming engine).
+	 * 
+	 * @param stage
+	 * the {@link Stage};
+	 * not {@code null}
+	 * 
+	 * @return
+	 * whether any time has been recorded for the stage
+	 */
+	public boolean isRecorded(final Stage stage) {
+		return pRecorded[stage.ordinal()];
+	}
+	
+	/**
+	 * Returns the time spent in a stage.
+	 * 
+	 * @param stage
+	 * the {@link Stage};
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the time in nanoseconds
+	 */
+	public long getNanos(final Stage stage) {
+		return pNanos[stage.ordinal()];
+	}
+	
+	/**
+	 * Returns the time spent in all stages.
+	 * 
+	 * @return
+	 * the time in nanoseconds
+	 */
+	public long getTotalNanos() {
+		long total = 0;
+		for (final long nanos : pNanos)
+			total += nanos;
+		return total;
+	}
+	
+	long getBytesIn(final Stage stage) {
+		return pBytesIn[stage.ordinal()];
+	}
+	
+	long getBytesOut(final Stage stage) {
+		return pBytesOut[stage.ordinal()];
+	}
+	
+	long getTokensIn(final Stage stage) {
+		return pTokensIn[stage.ordinal()];
+	}
+	
+	long getTokensOut(final Stage stage) {
+		return pTokensOut[stage.ordinal()];
+	}
+	
+}
@@ -0,0 +1,158 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.stats;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Collects the {@link FileStatistics} of all input files of a conversion
+ * and writes a summary as JSON:
+ * for every {@link Stage}, the number of files that went through it,
+ * the total time and the percentiles (50 %, 95 %, 99 %, maximum)
+ * of the time per file, and the total bytes and tokens in and out;
+ * and the {@value #SLOWEST_FILE_COUNT} files that took longest,
+ * with their time per stage.
+ * Times are given in milliseconds.
+ * <p>
+ * Instances of this class are thread-safe.
+ * </p>
+ */
+public class RunStatistics {
+	
+	/**
+	 * How many of the slowest files are listed in the summary.
+	 */
+	public static final int SLOWEST_FILE_COUNT = 10;
+	
+	private final ArrayList<FileStatistics> pFiles = new ArrayList<>();
+	
+	/**
+	 * Adds the statistics of a converted file.
+	 * 
+	 * @param fileStatistics
+	 * the {@link FileStatistics}, which must not be changed afterwards;
+	 * not {@code null}
+	 */
+	public synchronized void add(final FileStatistics fileStatistics) {
+		pFiles.add(fileStatistics);
+	}
+	
+	/**
+	 * Writes the summary to a file.
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @param wallNanos
+	 * the time the whole conversion took, in nanoseconds
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public synchronized void write(final Path file, final long wallNanos) throws IOException {
+		try (final BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			writer.write("{\n  \"files\": " + pFiles.size() + ",\n");
+			writer.write("  \"wallMillis\": " + millis(wallNanos) + ",\n");
+			writer.write("  \"stages\": {");
+			final Stage[] stages = Stage.values();
+			for (int i = 0; i < stages.length; i++) {
+				writer.write(i == 0 ? "\n" : ",\n");
+				writeStage(writer, stages[i]);
+			}
+			writer.write("\n  },\n  \"slowestFiles\": [");
+			final ArrayList<FileStatistics> slowestFiles = new ArrayList<>(pFiles);
+			slowestFiles.sort((a, b) -> Long.compare(b.getTotalNanos(), a.getTotalNanos()));
+			for (int i = 0; i < Math.min(slowestFiles.size(), SLOWEST_FILE_COUNT); i++) {
+				writer.write(i == 0 ? "\n" : ",\n");
+				writeFile(writer, slowestFiles.get(i));
+			}
+			writer.write("\n  ]\n}\n");
+		}
+	}
+	
+	private void writeStage(final BufferedWriter writer, final Stage stage) throws IOException {
+		final long[] nanos = new long[pFiles.size()];
+		int count = 0;
+		long totalNanos = 0;
+		long bytesIn = 0;
+		long bytesOut = 0;
+		long tokensIn = 0;
+		long tokensOut = 0;
+		for (final FileStatistics fileStatistics : pFiles) {
+			if (!fileStatistics.isRecorded(stage))
+				continue;
+			nanos[count++] = fileStatistics.getNanos(stage);
+			totalNanos += fileStatistics.getNanos(stage);
+			bytesIn += fileStatistics.getBytesIn(stage);
+			bytesOut += fileStatistics.getBytesOut(stage);
+			tokensIn += fileStatistics.getTokensIn(stage);
+			tokensOut += fileStatistics.getTokensOut(stage);
+		}
+		Arrays.sort(nanos, 0, count);
+		writer.write("    \"" + stage.getName() + "\": {\"files\": " + count);
+		writer.write(", \"totalMillis\": " + millis(totalNanos));
+		writer.write(", \"p50Millis\": " + millis(percentile(nanos, count, 50)));
+		writer.write(", \"p95Millis\": " + millis(percentile(nanos, count, 95)));
+		writer.write(", \"p99Millis\": " + millis(percentile(nanos, count, 99)));
+		writer.write(", \"maxMillis\": " + millis(count == 0 ? 0 : nanos[count - 1]));
+		writer.write(", \"bytesIn\": " + bytesIn + ", \"bytesOut\": " + bytesOut);
+		writer.write(", \"tokensIn\": " + tokensIn + ", \"tokensOut\": " + tokensOut + "}");
+	}
+	
+	private static void writeFile(final BufferedWriter writer, final FileStatistics fileStatistics) throws IOException {
+		writer.write("    {\"name\": ");
+		writeString(writer, fileStatistics.getName());
+		writer.write(", \"totalMillis\": " + millis(fileStatistics.getTotalNanos()) + ", \"stageMillis\": {");
+		boolean first = true;
+		for (final Stage stage : Stage.values()) {
+			if (!fileStatistics.isRecorded(stage))
+				continue;
+			writer.write(first ? "\"" : ", \"");
+			writer.write(stage.getName() + "\": " + millis(fileStatistics.getNanos(stage)));
+			first = false;
+		}
+		writer.write("}}");
+	}
+	
+	/**
+	 * Returns the percentile of sorted values (nearest rank).
+	 */
+	private static long percentile(final long[] sortedValues, final int count, final int percent) {
+		if (count == 0)
+			return 0;
+		final int rank = (int) Math.ceil(count * percent / 100.0);
+		return sortedValues[Math.max(rank, 1) - 1];
+	}
+	
+	private static String millis(final long nanos) {
+		return String.format(Locale.ROOT, "%.3f", nanos / 1e6);
+	}
+	
+	private static void writeString(final BufferedWriter writer, final String s) throws IOException {
+		writer.write('"');
+		for (int i = 0; i < s.length(); i++) {
+			final char c = s.charAt(i);
+			if ((c == '"') || (c == '\\')) {
+				writer.write('\\');
+				writer.write(c);
+			} else if (c < 0x20) {
+				writer.write(String.format(Locale.ROOT, "\\u%04x", (int) c));
+			} else {
+				writer.write(c);
+			}
+		}
+		writer.write('"');
+	}
+	
+}
@@ -0,0 +1,72 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.stats;
+
+import java.util.Locale;
+
+/**
+ * The stages of the conversion of one input file
+ * whose time is recorded in the {@link FileStatistics}.
+ */
+public enum Stage {
+	
+	/**
+	 * Reading the input file into memory
+	 * (bytes in and out: the size of the file).
+	 */
+	READ,
+	
+	/**
+	 * Parsing the input file into a DOM tree
+	 * (bytes in: the size of the file).
+	 * With the streaming engine, parsing is part of {@link #EXTRACT}.
+	 */
+	PARSE,
+	
+	/**
+	 * Extracting the tokens of all conversion types
+	 * (tokens out: the extracted tokens).
+	 */
+	EXTRACT,
+	
+	/**
+	 * Selecting the tokens of each conversion type
+	 * (tokens in: the extracted tokens, once per conversion type;
+	 * tokens out: the selected tokens).
+	 */
+	FILTER,
+	
+	/**
+	 * Normalizing the tokens of each conversion type
+	 * (tokens in and out: before and after normalization).
+	 */
+	NORMALIZE,
+	
+	/**
+	 * Serializing the normalized tokens and encoding the text
+	 * (tokens in: the normalized tokens; bytes out: the encoded text).
+	 * The time spent writing the encoded text is recorded as {@link #WRITE}.
+	 */
+	SERIALIZE,
+	
+	/**
+	 * Writing the encoded text to the output files or the output container
+	 * (bytes in and out: the encoded text).
+	 */
+	WRITE;
+	
+	/**
+	 * Returns the name of this stage in statistics output.
+	 * 
+	 * @return
+	 * the name in lower case;
+	 * not {@code null}
+	 */
+	public String getName() {
+		return name().toLowerCase(Locale.ROOT);
+	}
+	
+}
@@ -0,0 +1,43 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+/**
+ * A {@link TokenStage} that only passes on tokens
+ * supposed to appear in the output of a certain conversion type.
+ * <p>
+ * A {@link Token} is passed on if and only if
+ * its conversion types (see {@link Token#getConversions()})
+ * include the conversion type of this filter.
+ * </p>
+ */
+public class ConversionTypeFilter extends TokenStage {
+	
+	private final int pConversionType;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param conversionType
+	 * the conversion type to filter for
+	 * (see {@link ConversionTypes})
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass tokens on to;
+	 * not {@code null}
+	 */
+	public ConversionTypeFilter(final int conversionType, final TokenSink next) {
+		super(next);
+		pConversionType = conversionType;
+	}
+	
+	@Override
+	public void accept(final Token token) {
+		if ((token.getConversions() & pConversionType) != 0)
+			next.accept(token);
+	}
+	
+}
@@ -0,0 +1,494 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * A compact representation of a token sequence
+ * that stores tokens in primitive arrays
+ * instead of as {@link Token} objects.
+ * <p>
+ * For every token, the buffer stores
+ * the ordinal of its {@link TokenType} and its conversion types
+ * (see {@link Token#getConversions()}) in a {@code byte} each
+ * and the offset and length of its text in an {@code int} each;
+ * the texts of all tokens are copied into one shared {@code char}
+ * array. This amounts to 10 bytes per token plus the text,
+ * compared to a {@link Token} object, its {@link String}
+ * and the reference in a list. Scans over the types
+ * or conversion types of a sequence (such as
+ * {@link #contains(TokenType, int)}) only touch a {@code byte} array.
+ * </p>
+ * <p>
+ * A {@link TokenBuffer} is a {@link TokenSink}, so tokens can be
+ * extracted directly into it; the stored sequence can be pushed
+ * into another {@link TokenSink} (for example a normalization stage)
+ * with {@link #replay(int, TokenSink)}.
+ * {@link Token} objects are only created while replaying.
+ * After {@link #clear()}, a buffer can be reused for another
+ * token sequence without allocating new arrays.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ */
+public class TokenBuffer implements TokenSink {
+	
+	private static final TokenType[] TOKEN_TYPES = TokenType.values();
+	
+	/**
+	 * Tokens without text for every {@link TokenType}
+	 * (appearing in all conversion types),
+	 * which are shared instead of creating new ones when replaying.
+	 */
+	private static final Token[] TOKENS_WITHOUT_TEXT;
+	
+	static {
+		TOKENS_WITHOUT_TEXT = new Token[TOKEN_TYPES.length];
+		for (final TokenType tokenType : TOKEN_TYPES)
+			TOKENS_WITHOUT_TEXT[tokenType.ordinal()] = new Token(tokenType, null);
+	}
+	
+	/**
+	 * Text length of tokens without text.
+	 */
+	private static final int NO_TEXT = -1;
+	
+	private static final int DEFAULT_CAPACITY = 256;
+	
+	private byte[] pTypes;
+	private byte[] pConversions;
+	private int[] pTextOffsets;
+	private int[] pTextLengths;
+	private int pSize = 0;
+	
+	private char[] pText;
+	private int pTextSize = 0;
+	
+	/**
+	 * Initializes a new, empty instance of this class.
+	 */
+	public TokenBuffer() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Initializes a new, empty instance of this class
+	 * with the specified initial capacity.
+	 * 
+	 * @param initialCapacity
+	 * the number of tokens the buffer can hold
+	 * before it has to grow;
+	 * not negative
+	 */
+	public TokenBuffer(final int initialCapacity) {
+		pTypes = new byte[initialCapacity];
+		pConversions = new byte[initialCapacity];
+		pTextOffsets = new int[initialCapacity];
+		pTextLengths = new int[initialCapacity];
+		pText = new char[Math.max(initialCapacity * 8, 16)];
+	}
+	
+	@Override
+	public void accept(final Token token) {
+		add(token.getType(), token.getText(), token.getConversions());
+	}
+	
+	@Override
+	public void end() {
+		// nothing to do
+	}
+	
+	/**
+	 * Appends a token to the end of the buffer.
+	 * 
+	 * @param type
+	 * the {@link TokenType} of the token;
+	 * not {@code null}
+	 * 
+	 * @param text
+	 * the text {@link String} of the token
+	 * or {@code null} for a token without text
+	 * 
+	 * @param conversions
+	 * the conversion types whose output
+	 * the token is supposed to appear in
+	 * (see {@link ConversionTypes});
+	 * must fit into 8 bits
+	 */
+	public void add(final TokenType type, final String text, final int conversions) {
+		if ((conversions & ~0xFF) != 0)
+			throw new IllegalArgumentException("conversion types out of range: " + conversions);
+		if (pSize == pTypes.length)
+			grow();
+		pTypes[pSize] = (byte) type.ordinal();
+		pConversions[pSize] = (byte) conversions;
+		if (text == null) {
+			pTextOffsets[pSize] = pTextSize;
+			pTextLengths[pSize] = NO_TEXT;
+		} else {
+			final int length = text.length();
+			ensureTextCapacity(pTextSize + length);
+			text.getChars(0, length, pText, pTextSize);
+			pTextOffsets[pSize] = pTextSize;
+			pTextLengths[pSize] = length;
+			pTextSize += length;
+		}
+		pSize++;
+	}
+	
+	private void grow() {
+		final int capacity = Math.max(pTypes.length * 2, DEFAULT_CAPACITY);
+		pTypes = Arrays.copyOf(pTypes, capacity);
+		pConversions = Arrays.copyOf(pConversions, capacity);
+		pTextOffsets = Arrays.copyOf(pTextOffsets, capacity);
+		pTextLengths = Arrays.copyOf(pTextLengths, capacity);
+	}
+	
+	private void ensureTextCapacity(final int capacity) {
+		if (capacity < 0)
+			throw new OutOfMemoryError("token text too large");
+		if (capacity <= pText.length)
+			return;
+		int newCapacity = pText.length * 2;
+		if (newCapacity < capacity) // also if doubling overflows
+			newCapacity = capacity;
+		pText = Arrays.copyOf(pText, newCapacity);
+	}
+	
+	/**
+	 * Removes all tokens from the buffer.
+	 * The arrays are kept, so that the buffer
+	 * can be reused without allocating memory.
+	 */
+	public void clear() {
+		pSize = 0;
+		pTextSize = 0;
+	}
+	
+	/**
+	 * Returns the number of tokens in the buffer.
+	 * 
+	 * @return
+	 * the number of tokens in the buffer
+	 */
+	public int size() {
+		return pSize;
+	}
+	
+	/**
+	 * Returns the {@link TokenType} of a token.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * the {@link TokenType} of the token;
+	 * not {@code null}
+	 */
+	public TokenType getType(final int index) {
+		return TOKEN_TYPES[pTypes[checkIndex(index)]];
+	}
+	
+	/**
+	 * Returns the conversion types of a token.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * the conversion types whose output
+	 * the token is supposed to appear in
+	 * 
+	 * @see
+	 * Token#getConversions()
+	 */
+	public int getConversions(final int index) {
+		return pConversions[checkIndex(index)] & 0xFF;
+	}
+	
+	/**
+	 * Returns whether a token has text.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * whether the token has text
+	 * (which may be empty)
+	 */
+	public boolean hasText(final int index) {
+		return pTextLengths[checkIndex(index)] != NO_TEXT;
+	}
+	
+	/**
+	 * Returns the length of the text of a token.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * the length of the text of the token,
+	 * or 0 if it has no text
+	 */
+	public int getTextLength(final int index) {
+		return Math.max(pTextLengths[checkIndex(index)], 0);
+	}
+	
+	/**
+	 * Returns the text of a token as a new {@link String}.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * the text of the token
+	 * or {@code null} if it has no text
+	 */
+	public String getText(final int index) {
+		final int length = pTextLengths[checkIndex(index)];
+		if (length == NO_TEXT)
+			return null;
+		return new String(pText, pTextOffsets[index], length);
+	}
+	
+	/**
+	 * Writes the text of a token to a {@link Writer}
+	 * without creating a {@link String}.
+	 * Nothing is written for a token without text.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @param writer
+	 * the {@link Writer} to write the text to;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if the {@link Writer} throws an {@link IOException}
+	 */
+	public void writeText(final int index, final Writer writer) throws IOException {
+		final int length = pTextLengths[checkIndex(index)];
+		if (length > 0)
+			writer.write(pText, pTextOffsets[index], length);
+	}
+	
+	/**
+	 * Appends the text of a token to a {@link StringBuilder}
+	 * without creating a {@link String}.
+	 * Nothing is appended for a token without text.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @param sb
+	 * the {@link StringBuilder} to append the text to;
+	 * not {@code null}
+	 */
+	public void appendText(final int index, final StringBuilder sb) {
+		final int length = pTextLengths[checkIndex(index)];
+		if (length > 0)
+			sb.append(pText, pTextOffsets[index], length);
+	}
+	
+	/**
+	 * Returns a token as a {@link Token} object.
+	 * 
+	 * @param index
+	 * the index of the token;
+	 * at least 0 and less than {@link #size()}
+	 * 
+	 * @return
+	 * a {@link Token} with the type, text and conversion types
+	 * of the token;
+	 * not {@code null}
+	 */
+	public Token getToken(final int index) {
+		final int type = pTypes[checkIndex(index)];
+		final int conversions = pConversions[index] & 0xFF;
+		final int length = pTextLengths[index];
+		if (length == NO_TEXT && conversions == ConversionTypes.ALL)
+			return TOKENS_WITHOUT_TEXT[type];
+		return new Token(TOKEN_TYPES[type], length == NO_TEXT ? null : new String(pText, pTextOffsets[index], length), conversions);
+	}
+	
+	/**
+	 * Checks whether the buffer contains a token of a {@link TokenType}
+	 * that is supposed to appear in the output of a conversion type.
+	 * 
+	 * @param type
+	 * the {@link TokenType};
+	 * not {@code null}
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link ConversionTypes})
+	 * 
+	 * @return
+	 * whether the buffer contains such a token
+	 */
+	public boolean contains(final TokenType type, final int conversionType) {
+		final byte ordinal = (byte) type.ordinal();
+		for (int i = 0; i < pSize; i++)
+			if (pTypes[i] == ordinal && (pConversions[i] & conversionType) != 0)
+				return true;
+		return false;
+	}
+	
+	/**
+	 * Appends a range of the tokens stored in another buffer
+	 * to the end of this buffer,
+	 * copying the arrays instead of adding the tokens one by one.
+	 * 
+	 * @param other
+	 * the {@link TokenBuffer} to copy the tokens from;
+	 * not {@code null} and not this buffer
+	 * 
+	 * @param from
+	 * the index of the first token to copy;
+	 * at least 0 and at most {@code to}
+	 * 
+	 * @param to
+	 * the index after the last token to copy;
+	 * at most {@code other.size()}
+	 */
+	public void addAll(final TokenBuffer other, final int from, final int to) {
+		if ((from < 0) || (from > to) || (to > other.pSize))
+			throw new IndexOutOfBoundsException("range " + from + " to " + to + " of " + other.pSize + " tokens");
+		if (from == to)
+			return;
+		final int count = to - from;
+		while (pSize + count > pTypes.length)
+			grow();
+		// the text offsets grow with the index,
+		// so the texts of the range are stored in one piece
+		final int textStart = other.pTextOffsets[from];
+		final int textEnd = other.pTextOffsets[to - 1] + Math.max(other.pTextLengths[to - 1], 0);
+		ensureTextCapacity(pTextSize + textEnd - textStart);
+		System.arraycopy(other.pText, textStart, pText, pTextSize, textEnd - textStart);
+		System.arraycopy(other.pTypes, from, pTypes, pSize, count);
+		System.arraycopy(other.pConversions, from, pConversions, pSize, count);
+		System.arraycopy(other.pTextLengths, from, pTextLengths, pSize, count);
+		final int offsetShift = pTextSize - textStart;
+		for (int i = 0; i < count; i++)
+			pTextOffsets[pSize + i] = other.pTextOffsets[from + i] + offsetShift;
+		pSize += count;
+		pTextSize += textEnd - textStart;
+	}
+	
+	/**
+	 * Pushes the token sequence stored in the buffer
+	 * into a {@link TokenSink}, followed by the end of the sequence.
+	 * 
+	 * @param sink
+	 * the {@link TokenSink};
+	 * not {@code null}
+	 */
+	public void replay(final TokenSink sink) {
+		for (int i = 0; i < pSize; i++)
+			sink.accept(getToken(i));
+		sink.end();
+	}
+	
+	/**
+	 * Pushes those tokens stored in the buffer
+	 * that are supposed to appear in the output of a conversion type
+	 * into a {@link TokenSink}, followed by the end of the sequence.
+	 * <p>
+	 * This has the same effect as replaying the buffer into a
+	 * {@link ConversionTypeFilter}, but no {@link Token}
+	 * objects are created for tokens that are filtered out.
+	 * The buffer itself is not modified,
+	 * so it can be replayed for several conversion types.
+	 * </p>
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link ConversionTypes})
+	 * 
+	 * @param sink
+	 * the {@link TokenSink};
+	 * not {@code null}
+	 */
+	public void replay(final int conversionType, final TokenSink sink) {
+		push(conversionType, sink);
+		sink.end();
+	}
+	
+	/**
+	 * Pushes those tokens stored in the buffer
+	 * that are supposed to appear in the output of a conversion type
+	 * into a {@link TokenSink}
+	 * like {@link #replay(int, TokenSink)},
+	 * but without ending the sequence,
+	 * so that the tokens of further buffers
+	 * (or of this buffer after it has been cleared and refilled)
+	 * can follow in the same sequence.
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link ConversionTypes})
+	 * 
+	 * @param sink
+	 * the {@link TokenSink};
+	 * not {@code null}
+	 */
+	public void push(final int conversionType, final TokenSink sink) {
+		push(conversionType, sink, 0, pSize);
+	}
+	
+	/**
+	 * Pushes those tokens in a range of the buffer
+	 * that are supposed to appear in the output of a conversion type
+	 * into a {@link TokenSink}
+	 * like {@link #push(int, TokenSink)}.
+	 * <p>
+	 * Since the buffer is not modified,
+	 * several threads may push ranges of the same buffer concurrently
+	 * (as long as no thread adds tokens to it).
+	 * </p>
+	 * 
+	 * @param conversionType
+	 * the conversion type
+	 * (see {@link ConversionTypes})
+	 * 
+	 * @param sink
+	 * the {@link TokenSink};
+	 * not {@code null}
+	 * 
+	 * @param from
+	 * the index of the first token to push;
+	 * at least 0 and at most {@code to}
+	 * 
+	 * @param to
+	 * the index after the last token to push;
+	 * at most {@link #size()}
+	 */
+	public void push(final int conversionType, final TokenSink sink, final int from, final int to) {
+		if ((from < 0) || (from > to) || (to > pSize))
+			throw new IndexOutOfBoundsException("range " + from + " to " + to + " of " + pSize + " tokens");
+		for (int i = from; i < to; i++)
+			if ((pConversions[i] & conversionType) != 0)
+				sink.accept(getToken(i));
+	}
+	
+	private int checkIndex(final int index) {
+		if (index < 0 || index >= pSize)
+			throw new IndexOutOfBoundsException("index " + index + ", size " + pSize);
+		return index;
+	}
+	
+}
@@ -0,0 +1,62 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+import java.util.ArrayList;
+
+/**
+ * A {@link TokenSink} that collects the tokens in an {@link ArrayList}.
+ * <p>
+ * This class connects the push-based token pipeline
+ * to code working with complete token sequences.
+ * </p>
+ */
+public class TokenCollector implements TokenSink {
+	
+	private final ArrayList<Token> pTokens;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 */
+	public TokenCollector() {
+		pTokens = new ArrayList<>();
+	}
+	
+	/**
+	 * Initializes a new instance of this class
+	 * with the specified initial capacity.
+	 * 
+	 * @param initialCapacity
+	 * the initial capacity of the list;
+	 * not negative
+	 */
+	public TokenCollector(final int initialCapacity) {
+		pTokens = new ArrayList<>(initialCapacity);
+	}
+	
+	@Override
+	public void accept(final Token token) {
+		pTokens.add(token);
+	}
+	
+	@Override
+	public void end() {
+		// nothing to do
+	}
+	
+	/**
+	 * Returns the collected tokens.
+	 * 
+	 * @return
+	 * the {@link ArrayList} of the tokens passed to this sink so far
+	 * (not a copy);
+	 * not {@code null}
+	 */
+	public ArrayList<Token> getTokens() {
+		return pTokens;
+	}
+	
+}
@@ -0,0 +1,46 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+/**
+ * A {@link TokenSink} that passes every {@link Token}
+ * (and the end of the sequence) on to several branches.
+ * <p>
+ * This makes it possible to process one extracted token sequence
+ * in different ways without extracting it more than once,
+ * for example with a {@link ConversionTypeFilter}
+ * for each conversion type at the start of each branch.
+ * </p>
+ */
+public class TokenFork implements TokenSink {
+	
+	private final TokenSink[] pBranches;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param branches
+	 * the {@link TokenSink} instances to pass tokens on to,
+	 * in the order in which they are called for each token;
+	 * neither the array nor any element in it may be {@code null}
+	 */
+	public TokenFork(final TokenSink... branches) {
+		pBranches = branches.clone();
+	}
+	
+	@Override
+	public void accept(final Token token) {
+		for (final TokenSink branch : pBranches)
+			branch.accept(token);
+	}
+	
+	@Override
+	public void end() {
+		for (final TokenSink branch : pBranches)
+			branch.end();
+	}
+	
+}
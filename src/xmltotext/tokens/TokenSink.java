@@ -0,0 +1,69 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+import java.util.function.Consumer;
+
+/**
+ * Consumes a token sequence that is pushed into it
+ * one {@link Token} at a time.
+ * <p>
+ * Token sinks are the building blocks of the conversion pipeline:
+ * extraction pushes tokens into a sink, and processing stages
+ * (see {@link TokenStage}) pass (possibly modified) tokens on
+ * to the next sink, up to a sink that collects or serializes them.
+ * Since a {@link TokenSink} is a {@link Consumer},
+ * it can be passed to methods that generate tokens
+ * for a {@link Consumer}.
+ * </p>
+ * <p>
+ * A token sink may hold back tokens until it has seen enough
+ * of the following tokens to decide what to do with them,
+ * so the end of the sequence must be signalled with
+ * {@link #end()}.
+ * Token sinks are generally stateful and must not be reused
+ * for another token sequence.
+ * </p>
+ */
+public interface TokenSink extends Consumer<Token> {
+	
+	/**
+	 * Consumes the next {@link Token} of the sequence.
+	 * 
+	 * @param token
+	 * the next {@link Token};
+	 * not {@code null}
+	 */
+	@Override
+	void accept(Token token);
+	
+	/**
+	 * Signals the end of the token sequence.
+	 * <p>
+	 * Any tokens still held back are processed,
+	 * and the end is passed on to subsequent sinks.
+	 * No further tokens may be passed to this sink afterwards.
+	 * </p>
+	 */
+	void end();
+	
+	/**
+	 * Consumes a complete token sequence:
+	 * calls {@link #accept(Token)} for every {@link Token}
+	 * in order and then {@link #end()}.
+	 * 
+	 * @param tokenSequence
+	 * the token sequence;
+	 * neither this {@link Iterable}
+	 * nor any element in it may be {@code null}
+	 */
+	default void acceptSequence(final Iterable<? extends Token> tokenSequence) {
+		for (final Token token : tokenSequence)
+			accept(token);
+		end();
+	}
+	
+}
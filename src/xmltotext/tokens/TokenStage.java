@@ -0,0 +1,42 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.tokens;
+
+/**
+ * Base class for {@link TokenSink} implementations
+ * that process tokens and pass the result on to another
+ * {@link TokenSink}.
+ * <p>
+ * The default implementation of {@link #end()}
+ * passes the end of the sequence on to the next sink;
+ * subclasses holding back tokens should pass them on first.
+ * </p>
+ */
+public abstract class TokenStage implements TokenSink {
+	
+	/**
+	 * The {@link TokenSink} to pass tokens on to;
+	 * not {@code null}.
+	 */
+	protected final TokenSink next;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * 
+	 * @param next
+	 * the {@link TokenSink} to pass tokens on to;
+	 * not {@code null}
+	 */
+	protected TokenStage(final TokenSink next) {
+		this.next = next;
+	}
+	
+	@Override
+	public void end() {
+		next.end();
+	}
+	
+}
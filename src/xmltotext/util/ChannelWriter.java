@@ -0,0 +1,191 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+
+/**
+ * A {@link Writer} that encodes characters
+ * and writes the bytes to a {@link WritableByteChannel}.
+ * <p>
+ * In contrast to wrapping the channel in an
+ * {@link java.io.OutputStreamWriter},
+ * the {@link CharsetEncoder} and the buffers of an instance
+ * of this class can be reused for any number of channels
+ * (see {@link #open(WritableByteChannel)}),
+ * so that writing many files does not allocate new buffers
+ * for every file. The byte buffer is a direct buffer,
+ * which the channel can write without copying it.
+ * Memory use does not depend on the amount of text written.
+ * </p>
+ * <p>
+ * Like the writers returned by
+ * {@link java.nio.file.Files#newBufferedWriter(java.nio.file.Path, Charset, java.nio.file.OpenOption...)},
+ * instances of this class report characters that cannot be encoded
+ * (such as unpaired surrogates) by throwing an {@link IOException}.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe.
+ * </p>
+ */
+public class ChannelWriter extends Writer {
+	
+	private final CharsetEncoder pEncoder;
+	private final CharBuffer pChars;
+	private final ByteBuffer pBytes;
+	
+	private WritableByteChannel pChannel = null;
+	
+	/**
+	 * Initializes a new instance of this class.
+	 * The writer is not connected to a channel yet;
+	 * call {@link #open(WritableByteChannel)} before writing.
+	 * 
+	 * @param charset
+	 * the {@link Charset} to encode characters with;
+	 * not {@code null}
+	 * 
+	 * @param bufferSize
+	 * the size of the character and byte buffers;
+	 * positive
+	 */
+	public ChannelWriter(final Charset charset, final int bufferSize) {
+		pEncoder = charset.newEncoder();
+		pChars = CharBuffer.allocate(bufferSize);
+		pBytes = ByteBuffer.allocateDirect(Math.max(bufferSize, (int) Math.ceil(pEncoder.maxBytesPerChar())));
+	}
+	
+	/**
+	 * Connects this writer to a channel
+	 * and resets the encoder and buffers.
+	 * Anything not yet written to a previous channel is discarded.
+	 * 
+	 * @param channel
+	 * the {@link WritableByteChannel} to write to;
+	 * not {@code null}
+	 */
+	public void open(final WritableByteChannel channel) {
+		pEncoder.reset();
+		pChars.clear();
+		pBytes.clear();
+		pChannel = channel;
+	}
+	
+	@Override
+	public void write(final char[] cbuf, int off, int len) throws IOException {
+		while (len > 0) {
+			final int n = Math.min(len, pChars.remaining());
+			pChars.put(cbuf, off, n);
+			off += n;
+			len -= n;
+			if (!pChars.hasRemaining())
+				encode(false);
+		}
+	}
+	
+	@Override
+	public void write(final String str, int off, int len) throws IOException {
+		while (len > 0) {
+			final int n = Math.min(len, pChars.remaining());
+			pChars.put(str, off, off + n);
+			off += n;
+			len -= n;
+			if (!pChars.hasRemaining())
+				encode(false);
+		}
+	}
+	
+	@Override
+	public void write(final int c) throws IOException {
+		pChars.put((char) c);
+		if (!pChars.hasRemaining())
+			encode(false);
+	}
+	
+	/**
+	 * Encodes the buffered characters and writes the bytes
+	 * to the channel.
+	 * <p>
+	 * A trailing high surrogate is kept in the buffer
+	 * until the next character is known.
+	 * </p>
+	 */
+	@Override
+	public void flush() throws IOException {
+		encode(false);
+		writeBytes();
+	}
+	
+	/**
+	 * Encodes and writes everything written so far,
+	 * completing the output for the current channel,
+	 * and disconnects this writer from the channel
+	 * without closing it.
+	 * 
+	 * @throws IOException
+	 * if an IO error occurs
+	 * or if any character cannot be encoded
+	 */
+	public void finish() throws IOException {
+		if (pChannel == null)
+			return;
+		encode(true);
+		while (true) {
+			final CoderResult result = pEncoder.flush(pBytes);
+			if (result.isUnderflow())
+				break;
+			writeBytes();
+		}
+		writeBytes();
+		pChannel = null;
+	}
+	
+	/**
+	 * Completes the output for the current channel
+	 * (see {@link #finish()}) and closes the channel.
+	 */
+	@Override
+	public void close() throws IOException {
+		final WritableByteChannel channel = pChannel;
+		if (channel == null)
+			return;
+		try {
+			finish();
+		} finally {
+			pChannel = null;
+			channel.close();
+		}
+	}
+	
+	private void encode(final boolean endOfInput) throws IOException {
+		pChars.flip();
+		while (true) {
+			final CoderResult result = pEncoder.encode(pChars, pBytes, endOfInput);
+			if (result.isUnderflow())
+				break;
+			if (result.isOverflow())
+				writeBytes();
+			else
+				result.throwException();
+		}
+		pChars.compact();
+	}
+	
+	private void writeBytes() throws IOException {
+		pBytes.flip();
+		while (pBytes.hasRemaining())
+			pChannel.write(pBytes);
+		pBytes.clear();
+	}
+	
+}
@@ -0,0 +1,73 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes hashes identifying file contents.
+ * <p>
+ * The hash function is SHA-256.
+ * {@link MessageDigest} instances are not thread-safe,
+ * so this class keeps one instance per thread;
+ * all methods of this class may be called concurrently.
+ * </p>
+ */
+public class ContentHash {
+	
+	/**
+	 * The length of the hashes computed by this class in bytes.
+	 */
+	public static final int LENGTH = 32;
+	
+	private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(ContentHash::newDigest);
+	
+	private static MessageDigest newDigest() {
+		try {
+			return MessageDigest.getInstance("SHA-256");
+		} catch (final NoSuchAlgorithmException e) {
+			// every Java platform supports SHA-256
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/**
+	 * Computes the hash of some content.
+	 * 
+	 * @param content
+	 * the content to hash;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the hash, an array of {@link #LENGTH} bytes;
+	 * not {@code null}
+	 */
+	public static byte[] of(final byte[] content) {
+		return DIGEST.get().digest(content);
+	}
+	
+	/**
+	 * Computes the hash of some content.
+	 * 
+	 * @param content
+	 * a buffer containing the content to hash
+	 * between its position and its limit
+	 * (the position of the buffer is not changed);
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the hash, an array of {@link #LENGTH} bytes;
+	 * not {@code null}
+	 */
+	public static byte[] of(final ByteBuffer content) {
+		final MessageDigest digest = DIGEST.get();
+		digest.update(content.duplicate());
+		return digest.digest();
+	}
+	
+}
@@ -0,0 +1,152 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Builds a DOM {@link Document} from SAX events,
+ * so that the events can pass through an
+ * {@link org.xml.sax.XMLFilter} before the DOM is built
+ * (see {@link XmlHelper#load(java.io.InputStream, org.xml.sax.XMLFilter, DtdCatalog)}).
+ * <p>
+ * The tree is the same as the one built by
+ * the {@link javax.xml.parsers.DocumentBuilder} of {@link XmlHelper}
+ * (which is not namespace-aware) for the same events:
+ * elements and attributes are named by their qualified names,
+ * adjacent character data is merged into a single text node,
+ * CDATA sections, comments and processing instructions
+ * become nodes of their own,
+ * and entity references are expanded.
+ * The document type declaration is not represented.
+ * All nodes are created while parsing,
+ * so different subtrees can be read concurrently.
+ * </p>
+ * <p>
+ * Instances of this class build a single document
+ * and are not thread-safe.
+ * </p>
+ */
+public class DomBuilder extends DefaultHandler implements LexicalHandler {
+	
+	private final Document pDocument;
+	private Node pCurrent;
+	private final StringBuilder pText = new StringBuilder();
+	private boolean pInDtd = false;
+	
+	/**
+	 * Initializes a new instance of this class
+	 * that builds the tree of an empty document.
+	 * 
+	 * @param document
+	 * the empty {@link Document};
+	 * not {@code null}
+	 */
+	public DomBuilder(final Document document) {
+		pDocument = document;
+		pDocument.setStrictErrorChecking(false);
+		pCurrent = document;
+	}
+	
+	/**
+	 * Returns the document.
+	 * 
+	 * @return
+	 * the {@link Document},
+	 * complete after the end of the parsed document;
+	 * not {@code null}
+	 */
+	public Document getDocument() {
+		return pDocument;
+	}
+	
+	@Override
+	public void startElement(final String uri, final String localName, final String qName, final Attributes attributes) {
+		flushText();
+		final Element element = pDocument.createElement(qName);
+		for (int i = 0; i < attributes.getLength(); i++)
+			element.setAttribute(attributes.getQName(i), attributes.getValue(i));
+		pCurrent.appendChild(element);
+		pCurrent = element;
+	}
+	
+	@Override
+	public void endElement(final String uri, final String localName, final String qName) {
+		flushText();
+		pCurrent = pCurrent.getParentNode();
+	}
+	
+	@Override
+	public void characters(final char[] ch, final int start, final int length) {
+		pText.append(ch, start, length);
+	}
+	
+	@Override
+	public void ignorableWhitespace(final char[] ch, final int start, final int length) {
+		// the DocumentBuilder keeps element content whitespace, too
+		pText.append(ch, start, length);
+	}
+	
+	@Override
+	public void processingInstruction(final String target, final String data) {
+		flushText();
+		pCurrent.appendChild(pDocument.createProcessingInstruction(target, data));
+	}
+	
+	@Override
+	public void comment(final char[] ch, final int start, final int length) {
+		if (pInDtd)
+			return;
+		flushText();
+		pCurrent.appendChild(pDocument.createComment(new String(ch, start, length)));
+	}
+	
+	@Override
+	public void startCDATA() {
+		flushText();
+	}
+	
+	@Override
+	public void endCDATA() {
+		pCurrent.appendChild(pDocument.createCDATASection(pText.toString()));
+		pText.setLength(0);
+	}
+	
+	@Override
+	public void startDTD(final String name, final String publicId, final String systemId) {
+		pInDtd = true;
+	}
+	
+	@Override
+	public void endDTD() {
+		pInDtd = false;
+	}
+	
+	@Override
+	public void startEntity(final String name) {
+		// entity references are expanded
+	}
+	
+	@Override
+	public void endEntity(final String name) {
+		// entity references are expanded
+	}
+	
+	private void flushText() {
+		if (pText.length() == 0)
+			return;
+		// there is no character data outside the root element
+		if (pCurrent != pDocument)
+			pCurrent.appendChild(pDocument.createTextNode(pText.toString()));
+		pText.setLength(0);
+	}
+	
+}
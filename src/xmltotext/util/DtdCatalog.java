@@ -0,0 +1,356 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamException;
+
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+/**
+ * Resolves the external entities of XML documents
+ * (most importantly the external subsets of their DTDs)
+ * from memory, so that parsing a document
+ * does not depend on fetching DTDs over the network.
+ * <p>
+ * The catalog knows the DTDs of TEI and XHTML
+ * (and of HTML 4, which XHTML documents converted from HTML may name)
+ * by their public identifiers and by their official URLs,
+ * and the HTML entity sets (Latin 1, symbols and special characters).
+ * Non-validating parsers only need a DTD for its entities
+ * (and attribute defaults, which the conversion does not depend on),
+ * so each of the DTDs is answered by a DTD declaring the entities
+ * of all three HTML entity sets,
+ * which also contain the entities of the ISO Latin 1 set
+ * that TEI documents commonly use.
+ * </p>
+ * <p>
+ * Any other external entity is either
+ * read once and kept in memory for all further documents,
+ * or, if unknown entities are ignored
+ * (see {@link #OFFLINE}),
+ * replaced by an empty entity without reading anything.
+ * </p>
+ * <p>
+ * The catalog is both a SAX {@link EntityResolver}
+ * (for DOM and SAX parsers)
+ * and a StAX {@link XMLResolver}.
+ * Instances of this class are thread-safe.
+ * </p>
+ */
+public class DtdCatalog implements EntityResolver, XMLResolver {
+	
+	/**
+	 * A catalog that reads external entities it does not know
+	 * once and keeps them in memory.
+	 */
+	public static final DtdCatalog CACHING = new DtdCatalog(false);
+	
+	/**
+	 * A catalog that replaces external entities it does not know
+	 * by empty ones, so that no IO takes place
+	 * beyond reading the document itself.
+	 */
+	public static final DtdCatalog OFFLINE = new DtdCatalog(true);
+	
+	/**
+	 * The entities of the XHTML Latin 1 entity set
+	 * ({@code xhtml-lat1.ent}),
+	 * as pairs of name and code point.
+	 */
+	private static final String LATIN_1_ENTITIES =
+			"nbsp 160 iexcl 161 cent 162 pound 163 curren 164 yen 165 brvbar 166 sect 167 "
+			+ "uml 168 copy 169 ordf 170 laquo 171 not 172 shy 173 reg 174 macr 175 "
+			+ "deg 176 plusmn 177 sup2 178 sup3 179 acute 180 micro 181 para 182 middot 183 "
+			+ "cedil 184 sup1 185 ordm 186 raquo 187 frac14 188 frac12 189 frac34 190 iquest 191 "
+			+ "Agrave 192 Aacute 193 Acirc 194 Atilde 195 Auml 196 Aring 197 AElig 198 Ccedil 199 "
+			+ "Egrave 200 Eacute 201 Ecirc 202 Euml 203 Igrave 204 Iacute 205 Icirc 206 Iuml 207 "
+			+ "ETH 208 Ntilde 209 Ograve 210 Oacute 211 Ocirc 212 Otilde 213 Ouml 214 times 215 "
+			+ "Oslash 216 Ugrave 217 Uacute 218 Ucirc 219 Uuml 220 Yacute 221 THORN 222 szlig 223 "
+			+ "agrave 224 aacute 225 acirc 226 atilde 227 auml 228 aring 229 aelig 230 ccedil 231 "
+			+ "egrave 232 eacute 233 ecirc 234 euml 235 igrave 236 iacute 237 icirc 238 iuml 239 "
+			+ "eth 240 ntilde 241 ograve 242 oacute 243 ocirc 244 otilde 245 ouml 246 divide 247 "
+			+ "oslash 248 ugrave 249 uacute 250 ucirc 251 uuml 252 yacute 253 thorn 254 yuml 255";
+	
+	/**
+	 * The entities of the XHTML symbol entity set
+	 * ({@code xhtml-symbol.ent}).
+	 */
+	private static final String SYMBOL_ENTITIES =
+			"fnof 402 Alpha 913 Beta 914 Gamma 915 Delta 916 Epsilon 917 Zeta 918 Eta 919 "
+			+ "Theta 920 Iota 921 Kappa 922 Lambda 923 Mu 924 Nu 925 Xi 926 Omicron 927 "
+			+ "Pi 928 Rho 929 Sigma 931 Tau 932 Upsilon 933 Phi 934 Chi 935 Psi 936 "
+			+ "Omega 937 alpha 945 beta 946 gamma 947 delta 948 epsilon 949 zeta 950 eta 951 "
+			+ "theta 952 iota 953 kappa 954 lambda 955 mu 956 nu 957 xi 958 omicron 959 "
+			+ "pi 960 rho 961 sigmaf 962 sigma 963 tau 964 upsilon 965 phi 966 chi 967 "
+			+ "psi 968 omega 969 thetasym 977 upsih 978 piv 982 bull 8226 hellip 8230 prime 8242 "
+			+ "Prime 8243 oline 8254 frasl 8260 image 8465 weierp 8472 real 8476 trade 8482 alefsym 8501 "
+			+ "larr 8592 uarr 8593 rarr 8594 darr 8595 harr 8596 crarr 8629 lArr 8656 uArr 8657 "
+			+ "rArr 8658 dArr 8659 hArr 8660 forall 8704 part 8706 exist 8707 empty 8709 nabla 8711 "
+			+ "isin 8712 notin 8713 ni 8715 prod 8719 sum 8721 minus 8722 lowast 8727 radic 8730 "
+			+ "prop 8733 infin 8734 ang 8736 and 8743 or 8744 cap 8745 cup 8746 int 8747 "
+			+ "there4 8756 sim 8764 cong 8773 asymp 8776 ne 8800 equiv 8801 le 8804 ge 8805 "
+			+ "sub 8834 sup 8835 nsub 8836 sube 8838 supe 8839 oplus 8853 otimes 8855 perp 8869 "
+			+ "sdot 8901 lceil 8968 rceil 8969 lfloor 8970 rfloor 8971 lang 9001 rang 9002 loz 9674 "
+			+ "spades 9824 clubs 9827 hearts 9829 diams 9830";
+	
+	/**
+	 * The entities of the XHTML special entity set
+	 * ({@code xhtml-special.ent})
+	 * except those predefined in XML.
+	 */
+	private static final String SPECIAL_ENTITIES =
+			"OElig 338 oelig 339 Scaron 352 scaron 353 Yuml 376 circ 710 tilde 732 ensp 8194 "
+			+ "emsp 8195 thinsp 8201 zwnj 8204 zwj 8205 lrm 8206 rlm 8207 ndash 8211 mdash 8212 "
+			+ "lsquo 8216 rsquo 8217 sbquo 8218 ldquo 8220 rdquo 8221 bdquo 8222 dagger 8224 Dagger 8225 "
+			+ "permil 8240 lsaquo 8249 rsaquo 8250 euro 8364";
+	
+	private static final byte[] EMPTY_ENTITY = new byte[0];
+	
+	private static final HashMap<String, byte[]> PUBLIC_IDS = new HashMap<>();
+	private static final HashMap<String, byte[]> SYSTEM_IDS = new HashMap<>();
+	
+	/**
+	 * Prefix of the system identifiers (after {@link #normalizeSystemId(String)})
+	 * of all TEI DTDs.
+	 */
+	private static final String TEI_PREFIX = "http://www.tei-c.org/";
+	
+	private static final byte[] ENTITIES_DTD;
+	
+	static {
+		final byte[] latin1 = declareEntities(LATIN_1_ENTITIES);
+		final byte[] symbols = declareEntities(SYMBOL_ENTITIES);
+		final byte[] special = declareEntities(SPECIAL_ENTITIES);
+		ENTITIES_DTD = declareEntities(LATIN_1_ENTITIES + " " + SYMBOL_ENTITIES + " " + SPECIAL_ENTITIES);
+		
+		PUBLIC_IDS.put("-//W3C//ENTITIES Latin 1 for XHTML//EN", latin1);
+		PUBLIC_IDS.put("-//W3C//ENTITIES Symbols for XHTML//EN", symbols);
+		PUBLIC_IDS.put("-//W3C//ENTITIES Special for XHTML//EN", special);
+		PUBLIC_IDS.put("-//W3C//ENTITIES Latin1//EN//HTML", latin1);
+		PUBLIC_IDS.put("-//W3C//ENTITIES Symbols//EN//HTML", symbols);
+		PUBLIC_IDS.put("-//W3C//ENTITIES Special//EN//HTML", special);
+		PUBLIC_IDS.put("ISO 8879:1986//ENTITIES Added Latin 1//EN//XML", latin1);
+		SYSTEM_IDS.put("http://www.w3.org/TR/xhtml1/DTD/xhtml-lat1.ent", latin1);
+		SYSTEM_IDS.put("http://www.w3.org/TR/xhtml1/DTD/xhtml-symbol.ent", symbols);
+		SYSTEM_IDS.put("http://www.w3.org/TR/xhtml1/DTD/xhtml-special.ent", special);
+		
+		for (final String publicId : new String[] {
+				"-//W3C//DTD XHTML 1.0 Strict//EN",
+				"-//W3C//DTD XHTML 1.0 Transitional//EN",
+				"-//W3C//DTD XHTML 1.0 Frameset//EN",
+				"-//W3C//DTD XHTML 1.1//EN",
+				"-//W3C//DTD XHTML Basic 1.0//EN",
+				"-//W3C//DTD XHTML Basic 1.1//EN",
+				"-//W3C//DTD HTML 4.01//EN",
+				"-//W3C//DTD HTML 4.01 Transitional//EN",
+				"-//W3C//DTD HTML 4.01 Frameset//EN",
+				"-//TEI P4//DTD Main Document Type//EN",
+				"-//TEI P5//DTD Main Document Type//EN",
+				"-//TEI//DTD TEI Lite XML ver. 1//EN",
+				"-//TEI//DTD TEI Lite 1.0//EN"
+		})
+			PUBLIC_IDS.put(publicId, ENTITIES_DTD);
+		for (final String systemId : new String[] {
+				"http://www.w3.org/TR/xhtml1/DTD/xhtml1-strict.dtd",
+				"http://www.w3.org/TR/xhtml1/DTD/xhtml1-transitional.dtd",
+				"http://www.w3.org/TR/xhtml1/DTD/xhtml1-frameset.dtd",
+				"http://www.w3.org/TR/xhtml11/DTD/xhtml11.dtd",
+				"http://www.w3.org/TR/xhtml-basic/xhtml-basic10.dtd",
+				"http://www.w3.org/TR/xhtml-basic/xhtml-basic11.dtd",
+				"http://www.w3.org/TR/html4/strict.dtd",
+				"http://www.w3.org/TR/html4/loose.dtd",
+				"http://www.w3.org/TR/html4/frameset.dtd"
+		})
+			SYSTEM_IDS.put(systemId, ENTITIES_DTD);
+	}
+	
+	private static byte[] declareEntities(final String entities) {
+		final String[] namesAndCodePoints = entities.split(" ");
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < namesAndCodePoints.length; i += 2)
+			sb.append("<!ENTITY ").append(namesAndCodePoints[i]).append(" \"&#").append(namesAndCodePoints[i + 1]).append(";\">\n");
+		return sb.toString().getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	private final boolean pIgnoreUnknown;
+	
+	/**
+	 * The external entities read so far,
+	 * by (normalized) system identifier.
+	 */
+	private final ConcurrentHashMap<String, byte[]> pCache = new ConcurrentHashMap<>();
+	
+	private DtdCatalog(final boolean ignoreUnknown) {
+		pIgnoreUnknown = ignoreUnknown;
+	}
+	
+	/**
+	 * Returns whether external entities unknown to the catalog
+	 * are replaced by empty ones
+	 * (so that entities declared in them are missing).
+	 * 
+	 * @return
+	 * whether unknown external entities are ignored
+	 */
+	public boolean ignoresUnknown() {
+		return pIgnoreUnknown;
+	}
+	
+	@Override
+	public InputSource resolveEntity(final String publicId, final String systemId) throws IOException {
+		final byte[] content = resolve(publicId, systemId);
+		if (content == null)
+			return null;
+		final InputSource input = new InputSource(new ByteArrayInputStream(content));
+		input.setPublicId(publicId);
+		// relative references in the entity are resolved against this
+		input.setSystemId(systemId);
+		return input;
+	}
+	
+	@Override
+	public Object resolveEntity(final String publicId, final String systemId, final String baseUri, final String namespace) throws XMLStreamException {
+		try {
+			final byte[] content = resolve(publicId, absoluteSystemId(systemId, baseUri));
+			return content == null ? null : new ByteArrayInputStream(content);
+		} catch (final IOException e) {
+			// the StAX parser would turn an XMLStreamException into a parse error
+			// (keeping only its message), so that the IO error could not be
+			// reported as such (as the DOM parser does)
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * Returns the content of an external entity.
+	 * 
+	 * @param publicId
+	 * the public identifier of the entity,
+	 * or {@code null}
+	 * 
+	 * @param systemId
+	 * the system identifier of the entity
+	 * (a URL, or a file path,
+	 * which is resolved against the working directory if it is relative),
+	 * or {@code null}
+	 * 
+	 * @return
+	 * the content of the entity,
+	 * or {@code null} to let the parser read the entity itself
+	 * (if the system identifier is neither a URL nor a file path)
+	 * 
+	 * @throws IOException
+	 * if the entity cannot be read
+	 */
+	private byte[] resolve(final String publicId, final String systemId) throws IOException {
+		if (publicId != null) {
+			final byte[] known = PUBLIC_IDS.get(publicId);
+			if (known != null)
+				return known;
+		}
+		if (systemId == null)
+			return null;
+		final String url = toUrl(systemId);
+		final String normalizedSystemId = normalizeSystemId(url);
+		final byte[] known = SYSTEM_IDS.get(normalizedSystemId);
+		if (known != null)
+			return known;
+		if (normalizedSystemId.startsWith(TEI_PREFIX) && normalizedSystemId.endsWith(".dtd"))
+			return ENTITIES_DTD;
+		if (pIgnoreUnknown)
+			return EMPTY_ENTITY;
+		
+		final byte[] cached = pCache.get(normalizedSystemId);
+		if (cached != null)
+			return cached;
+		final URL entityUrl;
+		try {
+			entityUrl = new URL(url);
+		} catch (final MalformedURLException e) {
+			return null;
+		}
+		final byte[] content;
+		try (final InputStream inputStream = entityUrl.openStream()) {
+			content = readAll(inputStream);
+		}
+		final byte[] previous = pCache.putIfAbsent(normalizedSystemId, content);
+		return previous == null ? content : previous;
+	}
+	
+	/**
+	 * Normalizes a system identifier
+	 * so that the {@code http} and {@code https} URLs
+	 * (with or without {@code www.}) of a DTD are the same.
+	 */
+	private static String normalizeSystemId(final String systemId) {
+		String normalized = systemId;
+		if (normalized.startsWith("https://"))
+			normalized = "http://" + normalized.substring("https://".length());
+		if (normalized.startsWith("http://") && !normalized.startsWith("http://www."))
+			normalized = "http://www." + normalized.substring("http://".length());
+		return normalized;
+	}
+	
+	/**
+	 * Turns a system identifier that is not a URL
+	 * into the URL of the file it names,
+	 * resolving a relative path against the working directory,
+	 * as the DOM parser does for documents without a system identifier
+	 * (the StAX parser passes such system identifiers on unchanged),
+	 * so that both engines read the same file
+	 * and fail in the same way if it cannot be read.
+	 */
+	private static String toUrl(final String systemId) {
+		try {
+			new URL(systemId);
+			return systemId;
+		} catch (final MalformedURLException e) {
+			// a file path
+		}
+		try {
+			return Paths.get(systemId).toAbsolutePath().normalize().toUri().toString();
+		} catch (final InvalidPathException e) {
+			return systemId;
+		}
+	}
+	
+	private static String absoluteSystemId(final String systemId, final String baseUri) {
+		if ((systemId == null) || (baseUri == null))
+			return systemId;
+		try {
+			return new URI(baseUri).resolve(new URI(systemId)).toString();
+		} catch (final URISyntaxException | IllegalArgumentException e) {
+			return systemId;
+		}
+	}
+	
+	private static byte[] readAll(final InputStream inputStream) throws IOException {
+		final ByteArrayOutputStream output = new ByteArrayOutputStream();
+		final byte[] buffer = new byte[1 << 13];
+		int length;
+		while ((length = inputStream.read(buffer)) != -1)
+			output.write(buffer, 0, length);
+		return output.toByteArray();
+	}
+	
+}
@@ -0,0 +1,334 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans the raw bytes of an XML document for
+ * {@code U+00AC NOT SIGN} (&#xAC;),
+ * which marks explicit hyphenation in TEI documents
+ * (see {@link xmltotext.tokens.TokenType#HYPHENATION}).
+ * <p>
+ * The scan is conservative: if it finds no such character,
+ * the document certainly contains none,
+ * so the hyphenation mode of the normalization
+ * is known before the document is parsed.
+ * If it finds one, the character may still be in content
+ * that does not produce tokens (such as the {@code teiHeader}),
+ * so the tokens have to be checked as before.
+ * </p>
+ * <p>
+ * The encoding is detected as the XML parser would:
+ * from a byte order mark, from the first bytes of the document
+ * or from the encoding declaration, defaulting to UTF-8.
+ * Documents in UTF-8 or in an ASCII-compatible single-byte encoding
+ * are scanned byte by byte without decoding them;
+ * others are decoded first.
+ * Character references to U+00AC and references to entities
+ * other than the predefined ones (which might expand to U+00AC)
+ * are reported as occurrences, too.
+ * </p>
+ */
+public class HyphenPrescan {
+	
+	private static final char NOT_SIGN = '\u00AC';
+	
+	private static final byte[] UTF_8_NOT_SIGN = { (byte) 0xC2, (byte) 0xAC };
+	
+	/**
+	 * How many bytes of the document to search
+	 * for the end of the XML declaration.
+	 */
+	private static final int MAX_DECLARATION_LENGTH = 1024;
+	
+	/**
+	 * How many characters after an ampersand to search
+	 * for the end of the reference.
+	 */
+	private static final int MAX_REFERENCE_LENGTH = 64;
+	
+	/**
+	 * Checks whether an XML document may contain
+	 * {@code U+00AC NOT SIGN}.
+	 * 
+	 * @param content
+	 * the raw bytes of the document;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * {@code false} if the document certainly does not contain
+	 * the character; otherwise {@code true}
+	 */
+	public static boolean mayContainNotSign(final byte[] content) {
+		return mayContainNotSign(content, 0, content.length);
+	}
+	
+	/**
+	 * Checks whether an XML document may contain
+	 * {@code U+00AC NOT SIGN}.
+	 * 
+	 * @param content
+	 * an array containing the raw bytes of the document;
+	 * not {@code null}
+	 * 
+	 * @param offset
+	 * the index of the first byte of the document in the array
+	 * 
+	 * @param length
+	 * the length of the document in bytes
+	 * 
+	 * @return
+	 * {@code false} if the document certainly does not contain
+	 * the character; otherwise {@code true}
+	 */
+	public static boolean mayContainNotSign(final byte[] content, final int offset, final int length) {
+		return mayContainNotSign(ByteBuffer.wrap(content, offset, length));
+	}
+	
+	/**
+	 * Checks whether an XML document may contain
+	 * {@code U+00AC NOT SIGN}.
+	 * 
+	 * @param content
+	 * a buffer containing the raw bytes of the document
+	 * between its position and its limit
+	 * (the position of the buffer is not changed);
+	 * not {@code null}
+	 * 
+	 * @return
+	 * {@code false} if the document certainly does not contain
+	 * the character; otherwise {@code true}
+	 */
+	public static boolean mayContainNotSign(final ByteBuffer content) {
+		final int offset = content.position();
+		final int end = content.limit();
+		if (startsWith(content, offset, end, 0xEF, 0xBB, 0xBF))
+			return scanBytes(content, offset + 3, end, UTF_8_NOT_SIGN);
+		if (startsWith(content, offset, end, 0xFE, 0xFF) || startsWith(content, offset, end, 0x00, 0x3C, 0x00, 0x3F))
+			return scanDecoded(content, offset, end, StandardCharsets.UTF_16BE);
+		if (startsWith(content, offset, end, 0xFF, 0xFE)) {
+			if (startsWith(content, offset, end, 0xFF, 0xFE, 0x00, 0x00))
+				return true; // UTF-32
+			return scanDecoded(content, offset, end, StandardCharsets.UTF_16LE);
+		}
+		if (startsWith(content, offset, end, 0x3C, 0x00, 0x3F, 0x00))
+			return scanDecoded(content, offset, end, StandardCharsets.UTF_16LE);
+		if (!startsWith(content, offset, end, 0x3C) && !isXmlWhitespace(content, offset, end))
+			return true; // UTF-32, EBCDIC or something else we do not know about
+		
+		final String encodingName = declaredEncoding(content, offset, end);
+		if (encodingName == null)
+			return scanBytes(content, offset, end, UTF_8_NOT_SIGN);
+		final Charset charset;
+		try {
+			charset = Charset.forName(encodingName);
+		} catch (final IllegalArgumentException e) {
+			return true; // the parser will complain
+		}
+		if (charset.equals(StandardCharsets.UTF_8))
+			return scanBytes(content, offset, end, UTF_8_NOT_SIGN);
+		if (charset.canEncode()) {
+			final CharsetEncoder encoder = charset.newEncoder();
+			if ((encoder.maxBytesPerChar() == 1f) && isAsciiCompatible(charset)) {
+				if (!encoder.canEncode(NOT_SIGN))
+					return scanBytes(content, offset, end, null);
+				return scanBytes(content, offset, end, String.valueOf(NOT_SIGN).getBytes(charset));
+			}
+		}
+		return scanDecoded(content, offset, end, charset);
+	}
+	
+	private static boolean startsWith(final ByteBuffer content, final int offset, final int end, final int... prefix) {
+		if (end - offset < prefix.length)
+			return false;
+		for (int i = 0; i < prefix.length; i++)
+			if ((content.get(offset + i) & 0xFF) != prefix[i])
+				return false;
+		return true;
+	}
+	
+	private static boolean isXmlWhitespace(final ByteBuffer content, final int offset, final int end) {
+		if (offset == end)
+			return true;
+		switch (content.get(offset)) {
+			case ' ':
+			case '\t':
+			case '\n':
+			case '\r':
+				return true;
+			default:
+				return false;
+		}
+	}
+	
+	private static boolean isAsciiCompatible(final Charset charset) {
+		final byte[] bytes = "<&#;xX0123456789abcdefABCDEF".getBytes(charset);
+		return "<&#;xX0123456789abcdefABCDEF".equals(new String(bytes, StandardCharsets.US_ASCII));
+	}
+	
+	/**
+	 * Returns the value of the {@code encoding} pseudo-attribute
+	 * of the XML declaration,
+	 * or {@code null} if there is none.
+	 */
+	private static String declaredEncoding(final ByteBuffer content, final int offset, final int end) {
+		if (!startsWith(content, offset, end, '<', '?', 'x', 'm', 'l'))
+			return null;
+		final int limit = Math.min(end, offset + MAX_DECLARATION_LENGTH);
+		int declarationEnd = offset;
+		while ((declarationEnd < limit) && (content.get(declarationEnd) != '>'))
+			declarationEnd++;
+		final String declaration = new AsciiBytes(content, offset, declarationEnd).toString();
+		final int name = declaration.indexOf("encoding");
+		if (name < 0)
+			return null;
+		int i = name + "encoding".length();
+		while ((i < declaration.length()) && (declaration.charAt(i) != '"') && (declaration.charAt(i) != '\''))
+			i++;
+		if (i == declaration.length())
+			return null;
+		final int valueEnd = declaration.indexOf(declaration.charAt(i), i + 1);
+		if (valueEnd < 0)
+			return null;
+		return declaration.substring(i + 1, valueEnd).trim();
+	}
+	
+	/**
+	 * Scans the bytes of a document in an ASCII-compatible encoding.
+	 * 
+	 * @param notSign
+	 * the encoded form of {@code U+00AC NOT SIGN},
+	 * or {@code null} if the encoding cannot represent it
+	 */
+	private static boolean scanBytes(final ByteBuffer content, final int offset, final int end, final byte[] notSign) {
+		for (int i = offset; i < end; i++) {
+			final byte b = content.get(i);
+			if (b == '&') {
+				if (isNotSignReference(new AsciiBytes(content, i + 1, Math.min(end, i + 1 + MAX_REFERENCE_LENGTH))))
+					return true;
+			} else if ((notSign != null) && (b == notSign[0])) {
+				if ((notSign.length == 1) || ((i + 1 < end) && (content.get(i + 1) == notSign[1])))
+					return true;
+			}
+		}
+		return false;
+	}
+	
+	private static boolean scanDecoded(final ByteBuffer content, final int offset, final int end, final Charset charset) {
+		final CharSequence text;
+		try {
+			text = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPORT)
+					.onUnmappableCharacter(CodingErrorAction.REPORT)
+					.decode(slice(content, offset, end));
+		} catch (final CharacterCodingException e) {
+			return true; // the parser will complain
+		}
+		final int n = text.length();
+		for (int i = 0; i < n; i++) {
+			final char c = text.charAt(i);
+			if (c == NOT_SIGN)
+				return true;
+			if ((c == '&') && isNotSignReference(text.subSequence(i + 1, Math.min(n, i + 1 + MAX_REFERENCE_LENGTH))))
+				return true;
+		}
+		return false;
+	}
+	
+	private static ByteBuffer slice(final ByteBuffer content, final int offset, final int end) {
+		final ByteBuffer slice = content.duplicate();
+		slice.limit(end);
+		slice.position(offset);
+		return slice;
+	}
+	
+	/**
+	 * Checks whether the text after an ampersand
+	 * is a reference that may stand for {@code U+00AC NOT SIGN}:
+	 * a character reference to it
+	 * or a reference to an entity that is not predefined.
+	 */
+	private static boolean isNotSignReference(final CharSequence reference) {
+		final int n = reference.length();
+		int end = 0;
+		while ((end < n) && (reference.charAt(end) != ';'))
+			end++;
+		if (end == n)
+			return true; // not well-formed or a very long entity name
+		if ((end == 0) || (reference.charAt(0) != '#')) {
+			switch (reference.subSequence(0, end).toString()) {
+				case "lt":
+				case "gt":
+				case "amp":
+				case "quot":
+				case "apos":
+					return false;
+				default:
+					return true;
+			}
+		}
+		final boolean hex = (end > 1) && (reference.charAt(1) == 'x');
+		int value = 0;
+		for (int i = hex ? 2 : 1; i < end; i++) {
+			final int digit = Character.digit(reference.charAt(i), hex ? 16 : 10);
+			if (digit < 0)
+				return true; // not well-formed
+			value = value * (hex ? 16 : 10) + digit;
+			if (value > NOT_SIGN)
+				return false;
+		}
+		return value == NOT_SIGN;
+	}
+	
+	/**
+	 * A view of bytes in an ASCII-compatible encoding
+	 * as a {@link CharSequence}, without decoding them
+	 * (only ASCII characters are meaningful).
+	 */
+	private static class AsciiBytes implements CharSequence {
+		
+		private final ByteBuffer pContent;
+		private final int pStart;
+		private final int pEnd;
+		
+		public AsciiBytes(final ByteBuffer content, final int start, final int end) {
+			pContent = content;
+			pStart = start;
+			pEnd = end;
+		}
+		
+		@Override
+		public int length() {
+			return pEnd - pStart;
+		}
+		
+		@Override
+		public char charAt(final int index) {
+			return (char) (pContent.get(pStart + index) & 0xFF);
+		}
+		
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+			return new AsciiBytes(pContent, pStart + start, pStart + end);
+		}
+		
+		@Override
+		public String toString() {
+			final char[] chars = new char[pEnd - pStart];
+			for (int i = 0; i < chars.length; i++)
+				chars[i] = charAt(i);
+			return new String(chars);
+		}
+	
+	}
+
+}
@@ -0,0 +1,208 @@
+/* This Source Code Form is subject to the terms of the hermA Licence.
+ * If a copy of the licence was not distributed with this file, You have
+ * received this Source Code Form in a manner that does not comply with
+ * the terms of the licence.
+ */
+package xmltotext.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The complete content of an input file in memory.
+ * <p>
+ * Files of at least {@link #MAPPING_THRESHOLD} bytes are mapped
+ * into memory ({@link FileChannel#map(FileChannel.MapMode, long, long)}),
+ * so that reading them takes no copying and no read calls at all;
+ * the pages are loaded as they are accessed.
+ * Smaller files, for which mapping costs more than it saves,
+ * are read with as few read calls as possible
+ * into an array that is reused by the next instance
+ * created in the same thread after this one is closed.
+ * Either way, the content is available as a {@link ByteBuffer}
+ * and as an {@link InputStream} over that buffer,
+ * which the XML parsers can read without any further copying
+ * into intermediate buffers.
+ * </p>
+ * <p>
+ * A mapped file must not be truncated while it is in use;
+ * accessing the missing pages would result in an error.
+ * The mapping itself is released when the buffer is garbage collected.
+ * </p>
+ * <p>
+ * Instances of this class are not thread-safe
+ * and should be closed in the thread that created them.
+ * </p>
+ */
+public final class InputBuffer implements Closeable {
+	
+	/**
+	 * The size in bytes from which on files are mapped into memory
+	 * instead of being read.
+	 */
+	public static final int MAPPING_THRESHOLD = 1 << 18;
+	
+	private static final ThreadLocal<byte[][]> POOLED_ARRAY = ThreadLocal.withInitial(() -> new byte[1][]);
+	
+	private final ByteBuffer pBuffer;
+	private final byte[] pPooledArray;
+	
+	private InputBuffer(final ByteBuffer buffer, final byte[] pooledArray) {
+		pBuffer = buffer;
+		pPooledArray = pooledArray;
+	}
+	
+	/**
+	 * Reads (or maps) the complete content of a file.
+	 * 
+	 * @param file
+	 * (a {@link Path} locating) the file;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link InputBuffer} with the content of the file;
+	 * not {@code null}
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 * or if the file is larger than 2 GiB
+	 */
+	public static InputBuffer read(final Path file) throws IOException {
+		try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long size = channel.size();
+			if (size > Integer.MAX_VALUE)
+				throw new IOException("file too large: " + file);
+			if (size >= MAPPING_THRESHOLD)
+				return new InputBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, size), null);
+			
+			final byte[][] arrayHolder = POOLED_ARRAY.get();
+			// the array is taken out of its holder while in use,
+			// in case another file is read before this one is closed
+			final byte[] array = arrayHolder[0] != null ? arrayHolder[0] : new byte[MAPPING_THRESHOLD];
+			arrayHolder[0] = null;
+			final ByteBuffer buffer = ByteBuffer.wrap(array, 0, (int) size);
+			try {
+				while (buffer.hasRemaining() && (channel.read(buffer) >= 0)) {
+					// read until the end of the file (or the size found above)
+				}
+			} catch (final IOException e) {
+				arrayHolder[0] = array;
+				throw e;
+			}
+			buffer.flip();
+			return new InputBuffer(buffer, array);
+		}
+	}
+	
+	/**
+	 * Wraps content that is already in memory
+	 * (such as a file read from a container).
+	 * 
+	 * @param content
+	 * the content;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a new {@link InputBuffer} with the content;
+	 * not {@code null}
+	 */
+	public static InputBuffer wrap(final byte[] content) {
+		return new InputBuffer(ByteBuffer.wrap(content), null);
+	}
+	
+	/**
+	 * Returns the content.
+	 * 
+	 * @return
+	 * a new {@link ByteBuffer} sharing the content of this instance,
+	 * positioned at the start of the content
+	 * and limited to its end;
+	 * only valid until this instance is closed;
+	 * not {@code null}
+	 */
+	public ByteBuffer getBuffer() {
+		return pBuffer.duplicate();
+	}
+	
+	/**
+	 * Returns the size of the content.
+	 * 
+	 * @return
+	 * the size of the content in bytes;
+	 * not negative
+	 */
+	public int size() {
+		return pBuffer.limit();
+	}
+	
+	/**
+	 * Opens an {@link InputStream} reading the content.
+	 * 
+	 * @return
+	 * a new {@link InputStream} positioned at the start of the content,
+	 * which does not need to be closed;
+	 * only valid until this instance is closed;
+	 * not {@code null}
+	 */
+	public InputStream newInputStream() {
+		return new ByteBufferInputStream(getBuffer());
+	}
+	
+	/**
+	 * Makes the array of a file read into memory
+	 * available for reuse.
+	 * Neither this instance nor any buffer or stream obtained from it
+	 * may be used after calling this method.
+	 */
+	@Override
+	public void close() {
+		if (pPooledArray != null)
+			POOLED_ARRAY.get()[0] = pPooledArray;
+	}
+	
+	private static class ByteBufferInputStream extends InputStream {
+		
+		private final ByteBuffer pBuffer;
+		
+		public ByteBufferInputStream(final ByteBuffer buffer) {
+			pBuffer = buffer;
+		}
+		
+		@Override
+		public int read() {
+			return pBuffer.hasRemaining() ? (pBuffer.get() & 0xFF) : -1;
+		}
+		
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0)
+				return 0;
+			if (!pBuffer.hasRemaining())
+				return -1;
+			final int n = Math.min(len, pBuffer.remaining());
+			pBuffer.get(b, off, n);
+			return n;
+		}
+		
+		@Override
+		public long skip(final long n) {
+			if (n <= 0)
+				return 0;
+			final int skipped = (int) Math.min(n, pBuffer.remaining());
+			pBuffer.position(pBuffer.position() + skipped);
+			return skipped;
+		}
+		
+		@Override
+		public int available() {
+			return pBuffer.remaining();
+		}
+		
+	}
+	
+}
@@ -7,35 +7,105 @@ package xmltotext.util;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.file.Files;
+import java.io.Reader;
 import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLFilter;
+import org.xml.sax.XMLReader;
 
 /**
  * Encapsulates the usual Java bureaucracy for loading XML files.
+ * <p>
+ * {@link DocumentBuilder} instances are not thread-safe,
+ * so this class keeps one instance per thread
+ * (and likewise for {@link XMLReader} and {@link XMLInputFactory} instances).
+ * All methods of this class may be called concurrently.
+ * </p>
+ * <p>
+ * External DTDs and other external entities are resolved
+ * by a {@link DtdCatalog}
+ * ({@link DtdCatalog#CACHING} unless another one is given),
+ * so the DTDs of TEI and XHTML are never fetched over the network.
+ * </p>
  */
 public class XmlHelper {
 	
-	private static final DocumentBuilder DOCUMENT_BUILDER;
+	private static final DocumentBuilderFactory DOCUMENT_BUILDER_FACTORY = DocumentBuilderFactory.newInstance();
 	
-	static {
-		final DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+	private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(XmlHelper::newDocumentBuilder);
+	
+	private static final SAXParserFactory SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+	
+	/**
+	 * Name of the SAX property for the
+	 * {@link org.xml.sax.ext.LexicalHandler},
+	 * which receives comments and CDATA sections.
+	 */
+	private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+	
+	private static final ThreadLocal<XMLReader> XML_READER = ThreadLocal.withInitial(XmlHelper::newXmlReader);
+	
+	/**
+	 * Name of the property of the JDK's built-in StAX implementation
+	 * to report CDATA sections as
+	 * {@link javax.xml.stream.XMLStreamConstants#CDATA CDATA}
+	 * events instead of character events.
+	 */
+	private static final String REPORT_CDATA_PROPERTY = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+	
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(XmlHelper::newInputFactory);
+	
+	private static XMLInputFactory newInputFactory() {
+		final XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		if (factory.isPropertySupported(REPORT_CDATA_PROPERTY))
+			factory.setProperty(REPORT_CDATA_PROPERTY, Boolean.TRUE);
+		factory.setXMLResolver(DtdCatalog.CACHING);
+		return factory;
+	}
+	
+	private static XMLReader newXmlReader() {
+		try {
+			synchronized (SAX_PARSER_FACTORY) {
+				return SAX_PARSER_FACTORY.newSAXParser().getXMLReader();
+			}
+		} catch (final ParserConfigurationException | SAXException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private static DocumentBuilder newDocumentBuilder() {
 		try {
-			DOCUMENT_BUILDER = dbf.newDocumentBuilder();
+			final DocumentBuilder builder;
+			synchronized (DOCUMENT_BUILDER_FACTORY) {
+				builder = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder();
+			}
+			builder.setEntityResolver(DtdCatalog.CACHING);
+			return builder;
 		} catch (final ParserConfigurationException e) {
 			throw new RuntimeException(e);
 		}
 	}
 	
 	/**
-	 * Loads an XML file into a DOM {@link Document}.
+	 * Loads an XML file into a DOM {@link Document}
+	 * using the {@link DocumentBuilder} of the current thread.
+	 * <p>
+	 * The file is read completely before it is parsed,
+	 * large files by mapping them into memory
+	 * (see {@link InputBuffer}).
+	 * </p>
 	 * 
 	 * @param xmlFile
 	 * (a {@link Path} locating) the XML file;
@@ -52,9 +122,249 @@ public class XmlHelper {
 	 * if any IO error occurs
 	 */
 	public static Document load(final Path xmlFile) throws SAXException, IOException {
-		try (final InputStream inputStream = Files.newInputStream(xmlFile, StandardOpenOption.READ)) {
-			return DOCUMENT_BUILDER.parse(inputStream);
+		try (final InputBuffer input = InputBuffer.read(xmlFile)) {
+			return load(input.newInputStream());
 		}
 	}
 	
+	/**
+	 * Loads XML from an {@link InputStream} into a DOM {@link Document}
+	 * using the {@link DocumentBuilder} of the current thread.
+	 * 
+	 * @param inputStream
+	 * the {@link InputStream} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link Document} representation of the XML;
+	 * not {@code null}
+	 * 
+	 * @throws SAXException
+	 * if any parse error occurs
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static Document load(final InputStream inputStream) throws SAXException, IOException {
+		return DOCUMENT_BUILDER.get().parse(inputStream);
+	}
+	
+	/**
+	 * Loads XML from a {@link Reader} into a DOM {@link Document}
+	 * using the {@link DocumentBuilder} of the current thread.
+	 * Any encoding given in the XML declaration is ignored.
+	 * 
+	 * @param reader
+	 * the {@link Reader} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link Document} representation of the XML;
+	 * not {@code null}
+	 * 
+	 * @throws SAXException
+	 * if any parse error occurs
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static Document load(final Reader reader) throws SAXException, IOException {
+		return DOCUMENT_BUILDER.get().parse(new InputSource(reader));
+	}
+	
+	/**
+	 * Loads XML from an {@link InputStream} into a DOM {@link Document},
+	 * passing the SAX events through an {@link XMLFilter}
+	 * (using the {@link XMLReader} of the current thread as its parent)
+	 * before the nodes are created
+	 * (see {@link DomBuilder}),
+	 * so that the filter can drop parts of the document
+	 * without ever building them.
+	 * All nodes are created while parsing
+	 * instead of when they are first accessed,
+	 * so that different subtrees of the document
+	 * can be read by different threads concurrently
+	 * (as long as the document is not modified).
+	 * 
+	 * @param inputStream
+	 * the {@link InputStream} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @param filter
+	 * the {@link XMLFilter} for a single document;
+	 * not {@code null}
+	 * 
+	 * @param catalog
+	 * the {@link DtdCatalog} to resolve external entities with;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link Document} representation of the filtered XML;
+	 * not {@code null}
+	 * 
+	 * @throws SAXException
+	 * if any parse error occurs
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static Document load(final InputStream inputStream, final XMLFilter filter, final DtdCatalog catalog) throws SAXException, IOException {
+		return load(new InputSource(inputStream), filter, catalog);
+	}
+	
+	/**
+	 * Loads XML from a {@link Reader} into a DOM {@link Document}
+	 * through an {@link XMLFilter}
+	 * like {@link #load(InputStream, XMLFilter, DtdCatalog)}.
+	 * Any encoding given in the XML declaration is ignored.
+	 * 
+	 * @param reader
+	 * the {@link Reader} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @param filter
+	 * the {@link XMLFilter} for a single document;
+	 * not {@code null}
+	 * 
+	 * @param catalog
+	 * the {@link DtdCatalog} to resolve external entities with;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * a {@link Document} representation of the filtered XML;
+	 * not {@code null}
+	 * 
+	 * @throws SAXException
+	 * if any parse error occurs
+	 * 
+	 * @throws IOException
+	 * if any IO error occurs
+	 */
+	public static Document load(final Reader reader, final XMLFilter filter, final DtdCatalog catalog) throws SAXException, IOException {
+		return load(new InputSource(reader), filter, catalog);
+	}
+	
+	private static Document load(final InputSource input, final XMLFilter filter, final DtdCatalog catalog) throws SAXException, IOException {
+		final XMLReader reader = XML_READER.get();
+		final DomBuilder builder = new DomBuilder(DOCUMENT_BUILDER.get().newDocument());
+		filter.setParent(reader);
+		filter.setContentHandler(builder);
+		filter.setEntityResolver(catalog);
+		filter.setProperty(LEXICAL_HANDLER_PROPERTY, builder);
+		try {
+			filter.parse(input);
+		} finally {
+			// do not keep the last document reachable from the thread
+			reader.setContentHandler(null);
+			reader.setDTDHandler(null);
+			reader.setEntityResolver(null);
+			reader.setErrorHandler(null);
+			reader.setProperty(LEXICAL_HANDLER_PROPERTY, null);
+		}
+		return builder.getDocument();
+	}
+	
+	/**
+	 * Creates an {@link XMLStreamReader} for reading XML
+	 * from an {@link InputStream}
+	 * using the {@link XMLInputFactory} of the current thread.
+	 * <p>
+	 * The reader reports CDATA sections as
+	 * {@link javax.xml.stream.XMLStreamConstants#CDATA CDATA}
+	 * events (if the StAX implementation supports this),
+	 * as needed by {@link xmltotext.StreamTextExtraction}.
+	 * Closing the reader does not close the {@link InputStream}.
+	 * </p>
+	 * 
+	 * @param inputStream
+	 * the {@link InputStream} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link XMLStreamReader}, positioned at the start of the document;
+	 * not {@code null}
+	 * 
+	 * @throws XMLStreamException
+	 * if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(final InputStream inputStream) throws XMLStreamException {
+		return createStreamReader(inputStream, DtdCatalog.CACHING);
+	}
+	
+	/**
+	 * Creates an {@link XMLStreamReader} for reading XML
+	 * from an {@link InputStream}
+	 * like {@link #createStreamReader(InputStream)},
+	 * resolving external entities with a {@link DtdCatalog}.
+	 * 
+	 * @param inputStream
+	 * the {@link InputStream} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @param catalog
+	 * the {@link DtdCatalog} to resolve external entities with;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link XMLStreamReader}, positioned at the start of the document;
+	 * not {@code null}
+	 * 
+	 * @throws XMLStreamException
+	 * if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(final InputStream inputStream, final DtdCatalog catalog) throws XMLStreamException {
+		final XMLInputFactory factory = INPUT_FACTORY.get();
+		// the reader takes a copy of the properties of the factory
+		factory.setXMLResolver(catalog);
+		return factory.createXMLStreamReader(inputStream);
+	}
+	
+	/**
+	 * Creates an {@link XMLStreamReader} for reading XML
+	 * from a {@link Reader}
+	 * in the same way as {@link #createStreamReader(InputStream)}.
+	 * Closing the stream reader does not close the {@link Reader}.
+	 * 
+	 * @param reader
+	 * the {@link Reader} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link XMLStreamReader}, positioned at the start of the document;
+	 * not {@code null}
+	 * 
+	 * @throws XMLStreamException
+	 * if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(final Reader reader) throws XMLStreamException {
+		return createStreamReader(reader, DtdCatalog.CACHING);
+	}
+	
+	/**
+	 * Creates an {@link XMLStreamReader} for reading XML
+	 * from a {@link Reader}
+	 * like {@link #createStreamReader(Reader)},
+	 * resolving external entities with a {@link DtdCatalog}.
+	 * 
+	 * @param reader
+	 * the {@link Reader} to read the XML from;
+	 * not {@code null}
+	 * 
+	 * @param catalog
+	 * the {@link DtdCatalog} to resolve external entities with;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link XMLStreamReader}, positioned at the start of the document;
+	 * not {@code null}
+	 * 
+	 * @throws XMLStreamException
+	 * if the reader cannot be created
+	 */
+	public static XMLStreamReader createStreamReader(final Reader reader, final DtdCatalog catalog) throws XMLStreamException {
+		final XMLInputFactory factory = INPUT_FACTORY.get();
+		factory.setXMLResolver(catalog);
+		return factory.createXMLStreamReader(reader);
+	}
+	
 }
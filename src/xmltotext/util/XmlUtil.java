@@ -5,9 +5,13 @@
  */
 package xmltotext.util;
 
+import javax.xml.stream.XMLStreamReader;
+
 import org.w3c.dom.NamedNodeMap;
 import org.w3c.dom.Node;
 
+import xmltotext.conversion.AttributeSource;
+
 /**
  * Contains some common operations in connection with XML and DOM.
  */
@@ -70,4 +74,157 @@ public class XmlUtil {
 		return (attribute != null) && attributeValue.equals(attribute.getNodeValue());
 	}
 	
+	/**
+	 * Checks whether an XML element has an attribute
+	 * with the specified name and value.
+	 * <p>
+	 * This method is the {@link AttributeSource} counterpart of
+	 * {@link #hasAttribute(Node, String, String)}.
+	 * </p>
+	 * 
+	 * @param attributes
+	 * the {@link AttributeSource} providing the attributes
+	 * of the element;
+	 * not {@code null}
+	 * 
+	 * @param attributeName
+	 * the name of the attribute to check for;
+	 * not {@code null}
+	 * 
+	 * @param attributeValue
+	 * the expected value of the attribute;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * {@code true} if the XML element has an attribute
+	 * with the specified name
+	 * and the value of that attribute is the specified value;
+	 * otherwise {@code false}
+	 */
+	public static boolean hasAttribute(final AttributeSource attributes, final String attributeName, final String attributeValue) {
+		return attributeValue.equals(attributes.getAttributeValue(attributeName));
+	}
+	
+	/**
+	 * Returns the value of an attribute of an XML node.
+	 * 
+	 * @param node
+	 * the {@link Node} whose attribute to look up;
+	 * not {@code null}
+	 * 
+	 * @param attributeName
+	 * the name of the attribute
+	 * (as found by {@link NamedNodeMap#getNamedItem(String)});
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the value of the attribute;
+	 * or {@code null} if the node does not have an attribute
+	 * with the specified name
+	 * (including the case that the node does not have
+	 * attributes at all)
+	 */
+	public static String getAttributeValue(final Node node, final String attributeName) {
+		final NamedNodeMap attributes = node.getAttributes();
+		if (attributes == null)
+			return null;
+		final Node attribute = attributes.getNamedItem(attributeName);
+		if (attribute == null)
+			return null;
+		return attribute.getNodeValue();
+	}
+	
+	/**
+	 * Returns an {@link AttributeSource} for the attributes
+	 * of an XML node.
+	 * 
+	 * @param node
+	 * the {@link Node} whose attributes to provide;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link AttributeSource} looking up attributes with
+	 * {@link #getAttributeValue(Node, String)};
+	 * not {@code null}
+	 */
+	public static AttributeSource attributes(final Node node) {
+		return attributeName -> getAttributeValue(node, attributeName);
+	}
+	
+	/**
+	 * Returns an {@link AttributeSource} for the attributes
+	 * of the element at the current position of an
+	 * {@link XMLStreamReader}.
+	 * <p>
+	 * Attribute names are compared with the qualified names
+	 * of the attributes (see {@link #qualifiedName(String, String)}),
+	 * in the same way as
+	 * {@link #getAttributeValue(Node, String)}
+	 * does for a DOM parsed without namespace awareness.
+	 * The returned {@link AttributeSource} is only valid
+	 * as long as the reader is positioned at the
+	 * {@link javax.xml.stream.XMLStreamConstants#START_ELEMENT START_ELEMENT}
+	 * event.
+	 * </p>
+	 * 
+	 * @param reader
+	 * the {@link XMLStreamReader},
+	 * positioned at a start element;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * an {@link AttributeSource} for the attributes of the element;
+	 * not {@code null}
+	 */
+	public static AttributeSource attributes(final XMLStreamReader reader) {
+		return attributeName -> {
+			final int n = reader.getAttributeCount();
+			for (int i = 0; i < n; i++)
+				if (attributeName.equals(qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i))))
+					return reader.getAttributeValue(i);
+			return null;
+		};
+	}
+	
+	/**
+	 * Returns the qualified name of the element at the current position
+	 * of an {@link XMLStreamReader}.
+	 * 
+	 * @param reader
+	 * the {@link XMLStreamReader},
+	 * positioned at a start or end element;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * the qualified name of the element
+	 * (see {@link #qualifiedName(String, String)});
+	 * not {@code null}
+	 */
+	public static String qualifiedName(final XMLStreamReader reader) {
+		return qualifiedName(reader.getPrefix(), reader.getLocalName());
+	}
+	
+	/**
+	 * Builds a qualified XML name from a prefix and a local name,
+	 * that is, the name as it appears in the XML representation.
+	 * 
+	 * @param prefix
+	 * the namespace prefix;
+	 * {@code null} or empty if there is none
+	 * 
+	 * @param localName
+	 * the local name;
+	 * not {@code null}
+	 * 
+	 * @return
+	 * {@code prefix:localName},
+	 * or {@code localName} if there is no prefix;
+	 * not {@code null}
+	 */
+	public static String qualifiedName(final String prefix, final String localName) {
+		if ((prefix == null) || prefix.isEmpty())
+			return localName;
+		return prefix + ":" + localName;
+	}
+	
 }